@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.os.Debug
+import android.view.View
+import androidx.databinding.Observable
+import androidx.lifecycle.MutableLiveData
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Rebinds one binding to many observables, like a recycled item binding, and checks with the
+ * runtime's allocation counter that its listeners are moved instead of allocated again.
+ */
+@RunWith(AndroidJUnit4::class)
+class ListenerAllocationTest {
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+
+    /** An Observable whose add and remove don't allocate, so only the binding is measured. */
+    private class RecordingObservable : Observable {
+        val callbacks = ArrayList<Observable.OnPropertyChangedCallback>(1)
+
+        override fun addOnPropertyChangedCallback(
+                callback: Observable.OnPropertyChangedCallback) {
+            callbacks.add(callback)
+        }
+
+        override fun removeOnPropertyChangedCallback(
+                callback: Observable.OnPropertyChangedCallback) {
+            callbacks.remove(callback)
+        }
+
+        fun notifyChange() {
+            ArrayList(callbacks).forEach { it.onPropertyChanged(this, 0) }
+        }
+    }
+
+    @Test
+    fun rebindingDoesNotAllocate() {
+        instrumentation.runOnMainSync {
+            val binding = TestBinding(View(instrumentation.targetContext))
+            val observables = Array(REBINDS) { RecordingObservable() }
+            // the first bind creates the listener, and schedules the one rebind that is pending
+            binding.observable = observables[0]
+            binding.executePendingBindings()
+
+            val allocated = countAllocations {
+                for (i in 1 until REBINDS) {
+                    binding.observable = observables[i]
+                    binding.executePendingBindings()
+                }
+            }
+            assertTrue("$allocated objects allocated for ${REBINDS - 1} rebinds",
+                    allocated < MAX_ALLOCATIONS)
+
+            // only the last observable is still observed
+            observables.dropLast(1).forEach { assertTrue(it.callbacks.isEmpty()) }
+            assertEquals(1, observables.last().callbacks.size)
+            binding.rebindRequests = 0
+            observables.first().notifyChange()
+            assertEquals(0, binding.rebindRequests)
+            observables.last().notifyChange()
+            assertEquals(1, binding.rebindRequests)
+        }
+    }
+
+    @Test
+    fun rebindingLiveDataMovesObserver() {
+        instrumentation.runOnMainSync {
+            val binding = TestBinding(View(instrumentation.targetContext))
+            val owner = ResumedLifecycleOwner()
+            binding.lifecycleOwner = owner
+            // LiveData.observe allocates its own wrapper, so only the observers are checked
+            val liveData = List(REBINDS) { MutableLiveData<Int>().apply { value = it } }
+            liveData.forEach {
+                binding.liveData = it
+                binding.executePendingBindings()
+            }
+            liveData.dropLast(1).forEach { assertFalse(it.hasObservers()) }
+            assertTrue(liveData.last().hasObservers())
+        }
+    }
+
+    @Suppress("DEPRECATION")
+    private inline fun countAllocations(body: () -> Unit): Int {
+        Debug.resetThreadAllocCount()
+        Debug.startAllocCounting()
+        try {
+            body()
+        } finally {
+            Debug.stopAllocCounting()
+        }
+        return Debug.getThreadAllocCount()
+    }
+
+    companion object {
+        private const val REBINDS = 1000
+
+        /**
+         * Allocations allowed for the whole rebind loop, for buffers that the scheduler grows
+         * once. Anything allocated per rebind exceeds it.
+         */
+        private const val MAX_ALLOCATIONS = REBINDS / 10
+    }
+}
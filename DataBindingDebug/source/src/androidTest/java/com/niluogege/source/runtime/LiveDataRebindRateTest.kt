@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.view.View
+import androidx.lifecycle.MutableLiveData
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Emits a LiveData value every millisecond for one simulated second, executing the binding
+ * every 16 ms like the frames would, and counts how often the binding asks to be rebound.
+ */
+@RunWith(AndroidJUnit4::class)
+class LiveDataRebindRateTest {
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+
+    @Test
+    fun everyValueRequestsRebindByDefault() {
+        val binding = emitAt1kHz(ViewDataBinding.LIVE_DATA_ALL) { it }
+        assertEquals(EMISSIONS, binding.rebindRequests)
+        assertEquals(0, binding.suppressedLiveDataChangeCount)
+    }
+
+    @Test
+    fun conflateRequestsOneRebindPerFrame() {
+        val binding = emitAt1kHz(ViewDataBinding.LIVE_DATA_CONFLATE) { it }
+        // the first value, then the first value after each frame
+        assertEquals(FRAMES + 1, binding.rebindRequests)
+        assertEquals(EMISSIONS - FRAMES - 1, binding.suppressedLiveDataChangeCount)
+    }
+
+    @Test
+    fun distinctRequestsRebindOnlyForNewValues() {
+        val binding = emitAt1kHz(ViewDataBinding.LIVE_DATA_DISTINCT) { it / 100 }
+        assertEquals(10, binding.rebindRequests)
+        assertEquals(EMISSIONS - 10, binding.suppressedLiveDataChangeCount)
+    }
+
+    @Test
+    fun modeOfLiveDataOverridesModeOfBinding() {
+        val binding = emitAt1kHz(ViewDataBinding.LIVE_DATA_ALL,
+                ViewDataBinding.LIVE_DATA_CONFLATE) { it }
+        assertEquals(FRAMES + 1, binding.rebindRequests)
+    }
+
+    private fun emitAt1kHz(bindingMode: Int, liveDataMode: Int? = null,
+            valueAt: (Int) -> Int): TestBinding {
+        lateinit var binding: TestBinding
+        instrumentation.runOnMainSync {
+            val liveData = MutableLiveData<Int>()
+            binding = TestBinding(View(instrumentation.targetContext))
+            binding.lifecycleOwner = ResumedLifecycleOwner()
+            binding.setLiveDataMode(bindingMode)
+            if (liveDataMode != null) {
+                binding.setLiveDataMode(liveData, liveDataMode)
+            }
+            binding.liveData = liveData
+            binding.executePendingBindings()
+            binding.rebindRequests = 0
+            for (millis in 0 until EMISSIONS) {
+                liveData.value = valueAt(millis)
+                if (millis % FRAME_MILLIS == FRAME_MILLIS - 1) {
+                    binding.executePendingBindings()
+                }
+            }
+        }
+        return binding
+    }
+
+    companion object {
+        private const val EMISSIONS = 1000
+        private const val FRAME_MILLIS = 16
+        private const val FRAMES = EMISSIONS / FRAME_MILLIS
+    }
+}
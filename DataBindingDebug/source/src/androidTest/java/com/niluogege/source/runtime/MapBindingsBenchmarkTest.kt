@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.view.View
+import android.view.ViewGroup
+import android.widget.LinearLayout
+import android.widget.TextView
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Maps the bound views of a 301-view layout, built the way the inflater would tag it, through
+ * the child index paths and through the tag walk.
+ */
+@RunWith(AndroidJUnit4::class)
+class MapBindingsBenchmarkTest {
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+
+    @Test
+    fun pathsAreFasterThanTagWalk() {
+        instrumentation.runOnMainSync {
+            val paths = ArrayList<IntArray>()
+            val root = createLayout(paths)
+            val viewPaths = paths.toTypedArray()
+
+            val byPath = ViewDataBinding.mapBindings(null, root, viewPaths.size, null, null,
+                    viewPaths)
+            val byWalk = ViewDataBinding.mapBindings(null, root, viewPaths.size, null, null)
+            assertArrayEquals(byWalk, byPath)
+            assertTrue(byPath.all { it != null })
+
+            val pathNanos = minNanos(ROUNDS, ITERATIONS) {
+                ViewDataBinding.mapBindings(null, root, viewPaths.size, null, null, viewPaths)
+            }
+            val walkNanos = minNanos(ROUNDS, ITERATIONS) {
+                ViewDataBinding.mapBindings(null, root, viewPaths.size, null, null)
+            }
+            assertTrue("paths: ${pathNanos / ITERATIONS} ns, " +
+                    "tag walk: ${walkNanos / ITERATIONS} ns per layout", pathNanos < walkNanos)
+        }
+    }
+
+    /**
+     * Creates a root with [GROUPS] groups of [VIEWS_PER_GROUP] text views. The root and every
+     * [BOUND_EVERY]th text view get a binding tag, and their paths are added to [paths] in tag
+     * order.
+     */
+    private fun createLayout(paths: MutableList<IntArray>): ViewGroup {
+        val context = instrumentation.targetContext
+        val root = LinearLayout(context)
+        root.tag = "layout/benchmark_0"
+        paths.add(IntArray(0))
+        for (group in 0 until GROUPS) {
+            val groupView = LinearLayout(context)
+            root.addView(groupView)
+            for (child in 0 until VIEWS_PER_GROUP) {
+                val view: View = TextView(context)
+                if ((group * VIEWS_PER_GROUP + child) % BOUND_EVERY == 0) {
+                    view.tag = "binding_${paths.size}"
+                    paths.add(intArrayOf(group, child))
+                }
+                groupView.addView(view)
+            }
+        }
+        return root
+    }
+
+    companion object {
+        private const val GROUPS = 30
+        private const val VIEWS_PER_GROUP = 9
+        private const val BOUND_EVERY = 5
+        private const val ROUNDS = 5
+        private const val ITERATIONS = 200
+    }
+}
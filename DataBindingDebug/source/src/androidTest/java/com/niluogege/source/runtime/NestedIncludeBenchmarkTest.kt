@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.view.View
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Rebinds one leaf of a tree of includes nested four levels deep, once with the includes
+ * registered through setContainedBinding and once without, which executes every include like
+ * before the dirty mask.
+ */
+@RunWith(AndroidJUnit4::class)
+class NestedIncludeBenchmarkTest {
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+
+    /**
+     * Stand-in for a generated binding with includes: it is pending while it or any include is
+     * dirty, and executes its includes through executeBindingsOn.
+     */
+    private class IncludingBinding(root: View, val includes: List<IncludingBinding>,
+            tracked: Boolean) : ViewDataBinding(null as Any?, root, 0) {
+        // dirty from the start, like a generated binding after invalidateAll
+        var dirty = true
+        var executions = 0
+
+        init {
+            if (tracked) {
+                includes.forEach { setContainedBinding(it) }
+            }
+        }
+
+        fun change() {
+            dirty = true
+            requestRebind()
+        }
+
+        override fun onFieldChange(localFieldId: Int, `object`: Any?, fieldId: Int) = false
+
+        override fun setVariable(variableId: Int, value: Any?) = false
+
+        override fun executeBindings() {
+            dirty = false
+            executions++
+            includes.forEach { executeBindingsOn(it) }
+        }
+
+        override fun invalidateAll() {
+            dirty = true
+            includes.forEach { it.invalidateAll() }
+            requestRebind()
+        }
+
+        override fun hasPendingBindings() = dirty || includes.any { it.hasPendingBindings() }
+    }
+
+    @Test
+    fun untouchedIncludesAreSkipped() {
+        instrumentation.runOnMainSync {
+            val tracked = createTree(DEPTH, true)
+            val untracked = createTree(DEPTH, false)
+            tracked.executePendingBindings()
+            untracked.executePendingBindings()
+
+            val trackedLeaf = lastLeaf(tracked)
+            val untrackedLeaf = lastLeaf(untracked)
+            trackedLeaf.change()
+            tracked.executePendingBindings()
+            untrackedLeaf.change()
+            untracked.executePendingBindings()
+            assertEquals(2, trackedLeaf.executions)
+            assertEquals(2, untrackedLeaf.executions)
+            // every include next to the changed path is skipped, one per level
+            assertEquals(FAN_OUT - 1, tracked.skippedChildExecutionCount)
+
+            val trackedNanos = minNanos(ROUNDS, ITERATIONS) {
+                trackedLeaf.change()
+                tracked.executePendingBindings()
+            }
+            val untrackedNanos = minNanos(ROUNDS, ITERATIONS) {
+                untrackedLeaf.change()
+                untracked.executePendingBindings()
+            }
+            assertTrue("dirty mask: ${trackedNanos / ITERATIONS} ns, " +
+                    "all includes: ${untrackedNanos / ITERATIONS} ns per rebind",
+                    trackedNanos < untrackedNanos)
+        }
+    }
+
+    private fun createTree(depth: Int, tracked: Boolean): IncludingBinding {
+        val includes = if (depth == 0) {
+            emptyList()
+        } else {
+            List(FAN_OUT) { createTree(depth - 1, tracked) }
+        }
+        return IncludingBinding(View(instrumentation.targetContext), includes, tracked)
+    }
+
+    private fun lastLeaf(root: IncludingBinding): IncludingBinding {
+        var binding = root
+        while (binding.includes.isNotEmpty()) {
+            binding = binding.includes.last()
+        }
+        return binding
+    }
+
+    companion object {
+        private const val DEPTH = 4
+        private const val FAN_OUT = 3
+        private const val ROUNDS = 5
+        private const val ITERATIONS = 200
+    }
+}
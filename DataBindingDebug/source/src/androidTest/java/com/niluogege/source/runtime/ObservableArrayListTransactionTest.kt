@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import androidx.databinding.ObservableList
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Transactions that only replace elements. See ObservableArrayListTest for the structural ones.
+ */
+@RunWith(AndroidJUnit4::class)
+class ObservableArrayListTransactionTest {
+    private val list = ObservableArrayList<String>()
+    private val changes = ArrayList<String>()
+
+    @Before
+    fun setUp() {
+        repeat(10) { list.add("item$it") }
+        list.addOnListChangedCallback(
+                object : ObservableList.OnListChangedCallback<ObservableList<String>>() {
+                    override fun onChanged(sender: ObservableList<String>) {
+                        changes.add("changed")
+                    }
+
+                    override fun onItemRangeChanged(sender: ObservableList<String>,
+                            positionStart: Int, itemCount: Int) {
+                        changes.add("changed $positionStart+$itemCount")
+                    }
+
+                    override fun onItemRangeInserted(sender: ObservableList<String>,
+                            positionStart: Int, itemCount: Int) {
+                        changes.add("inserted $positionStart+$itemCount")
+                    }
+
+                    override fun onItemRangeMoved(sender: ObservableList<String>,
+                            fromPosition: Int, toPosition: Int, itemCount: Int) {
+                        changes.add("moved $fromPosition->$toPosition+$itemCount")
+                    }
+
+                    override fun onItemRangeRemoved(sender: ObservableList<String>,
+                            positionStart: Int, itemCount: Int) {
+                        changes.add("removed $positionStart+$itemCount")
+                    }
+                })
+    }
+
+    @Test
+    fun onlyRealChangesAreReported() {
+        list.beginTransaction()
+        list[2] = "x"
+        list[3] = "y"
+        list[5] = "item5"
+        list[7] = "z"
+        list[7] = "item7"
+        list.commitTransaction()
+        assertEquals(listOf("changed 2+2"), changes)
+    }
+
+    @Test
+    fun separateRunsAreReportedInOrder() {
+        list.beginTransaction()
+        list[8] = "a"
+        list[1] = "b"
+        list[2] = "c"
+        list.commitTransaction()
+        assertEquals(listOf("changed 1+2", "changed 8+1"), changes)
+    }
+
+    @Test
+    fun setsBeforeStructuralChangeBecomePlainChanges() {
+        list.beginTransaction()
+        list[4] = "item4"
+        list.add("a")
+        list.commitTransaction()
+        assertEquals(listOf("changed 4+1", "inserted 10+1"), changes)
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.view.View
+import androidx.databinding.Observable
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleOwner
+import androidx.lifecycle.LifecycleRegistry
+import androidx.lifecycle.LiveData
+
+/**
+ * Hand-written stand-in for a generated binding, with a LiveData in field 0 and an Observable
+ * in field 1. Must be created and used on the main thread.
+ */
+internal class TestBinding(root: View) : ViewDataBinding(null as Any?, root, 2) {
+    var liveData: LiveData<*>? = null
+        set(value) {
+            field = value
+            invalidateAll()
+        }
+
+    var observable: Observable? = null
+        set(value) {
+            field = value
+            invalidateAll()
+        }
+
+    /** Calls to requestRebind, including those that find a rebind already pending. */
+    var rebindRequests = 0
+
+    private var mDirty = false
+
+    override fun onFieldChange(localFieldId: Int, `object`: Any?, fieldId: Int): Boolean {
+        mDirty = true
+        return true
+    }
+
+    override fun setVariable(variableId: Int, value: Any?) = false
+
+    override fun executeBindings() {
+        mDirty = false
+        updateLiveDataRegistration(0, liveData)
+        updateRegistration(1, observable)
+    }
+
+    override fun invalidateAll() {
+        mDirty = true
+        requestRebind()
+    }
+
+    override fun hasPendingBindings() = mDirty
+
+    override fun requestRebind() {
+        rebindRequests++
+        super.requestRebind()
+    }
+}
+
+/**
+ * A LifecycleOwner that is resumed as soon as it is created. Must be created on the main thread.
+ */
+internal class ResumedLifecycleOwner : LifecycleOwner {
+    private val mRegistry = LifecycleRegistry(this).apply {
+        handleLifecycleEvent(Lifecycle.Event.ON_RESUME)
+    }
+
+    override fun getLifecycle(): Lifecycle = mRegistry
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+/**
+ * Runs [body] [iterations] times per round and returns the fastest round in nanoseconds. The
+ * first round is a warm-up and is not counted.
+ */
+internal inline fun minNanos(rounds: Int, iterations: Int, body: () -> Unit): Long {
+    var best = Long.MAX_VALUE
+    for (round in 0..rounds) {
+        val start = System.nanoTime()
+        for (i in 0 until iterations) {
+            body()
+        }
+        val elapsed = System.nanoTime() - start
+        if (round > 0) {
+            best = minOf(best, elapsed)
+        }
+    }
+    return best
+}
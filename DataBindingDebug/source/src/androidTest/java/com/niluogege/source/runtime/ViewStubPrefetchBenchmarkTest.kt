@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.view.View
+import android.view.ViewStub
+import android.widget.FrameLayout
+import androidx.databinding.DataBindingComponent
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.niluogege.source.test.R
+import org.junit.After
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Measures how long it takes to show a ViewStub of 57 views, from ViewStub.inflate() until its
+ * binding has been executed, with and without prefetching the layout while the main thread is
+ * idle.
+ */
+@RunWith(AndroidJUnit4::class)
+class ViewStubPrefetchBenchmarkTest {
+    private val instrumentation = InstrumentationRegistry.getInstrumentation()
+    // the stub layout is a resource of the test APK
+    private val context = instrumentation.context
+    private lateinit var previousMapper: DataBinderMapper
+
+    private class StubBinding(root: View) : ViewDataBinding(null as Any?, root, 0) {
+        private var mDirty = true
+
+        init {
+            setRootTag(root)
+        }
+
+        override fun onFieldChange(localFieldId: Int, `object`: Any?, fieldId: Int) = false
+
+        override fun setVariable(variableId: Int, value: Any?) = false
+
+        override fun executeBindings() {
+            mDirty = false
+        }
+
+        override fun invalidateAll() {
+            mDirty = true
+            requestRebind()
+        }
+
+        override fun hasPendingBindings() = mDirty
+    }
+
+    /** Creates a [StubBinding] for the stub layout, as a generated mapper would. */
+    private val mapper = object : DataBinderMapper() {
+        override fun getDataBinder(bindingComponent: DataBindingComponent?, view: View,
+                layoutId: Int): ViewDataBinding? =
+                if (layoutId == R.layout.benchmark_stub) StubBinding(view) else null
+
+        override fun getDataBinder(bindingComponent: DataBindingComponent?, view: Array<View>,
+                layoutId: Int): ViewDataBinding? = null
+
+        override fun getLayoutId(tag: String?) = 0
+
+        override fun convertBrIdToString(id: Int): String? = null
+    }
+
+    @Before
+    fun useStubMapper() {
+        previousMapper = DataBindingUtil.swapMapper(mapper)
+    }
+
+    @After
+    fun restoreMapper() {
+        DataBindingUtil.swapMapper(previousMapper)
+    }
+
+    @Test
+    fun prefetchedStubShowsFaster() {
+        // the first round of each warms up
+        var inflatedNanos = Long.MAX_VALUE
+        var prefetchedNanos = Long.MAX_VALUE
+        for (round in 0..ROUNDS) {
+            val inflated = timeFirstShow(false)
+            val prefetched = timeFirstShow(true)
+            if (round > 0) {
+                inflatedNanos = minOf(inflatedNanos, inflated)
+                prefetchedNanos = minOf(prefetchedNanos, prefetched)
+            }
+        }
+        assertTrue("prefetched: ${prefetchedNanos / 1000} us, " +
+                "inflated on show: ${inflatedNanos / 1000} us", prefetchedNanos < inflatedNanos)
+    }
+
+    private fun timeFirstShow(prefetch: Boolean): Long {
+        lateinit var stub: ViewStub
+        lateinit var proxy: ViewStubProxy
+        instrumentation.runOnMainSync {
+            val parent = FrameLayout(context)
+            stub = ViewStub(context, R.layout.benchmark_stub)
+            parent.addView(stub)
+            proxy = ViewStubProxy(stub)
+            proxy.setContainingBinding(TestBinding(View(context)))
+            if (prefetch) {
+                proxy.prefetch()
+            }
+        }
+        if (prefetch) {
+            instrumentation.waitForIdleSync()
+            assertTrue(proxy.isPrefetched)
+        }
+        var nanos = 0L
+        instrumentation.runOnMainSync {
+            val start = System.nanoTime()
+            val root = stub.inflate()
+            nanos = System.nanoTime() - start
+            assertSame(root, proxy.root)
+            assertNotNull(proxy.binding)
+            assertFalse(proxy.binding.hasPendingBindings())
+        }
+        return nanos
+    }
+
+    companion object {
+        private const val ROUNDS = 10
+    }
+}
@@ -23,6 +23,8 @@ import android.databinding.tool.CompilerChef;
 import android.databinding.tool.Context;
 import android.databinding.tool.processing.Scope;
 import android.databinding.tool.processing.ScopedException;
+import android.databinding.tool.reflection.ClassFinderCache;
+import android.databinding.tool.reflection.ModelAnalyzer;
 import android.databinding.tool.store.GenClassInfoLog;
 import android.databinding.tool.util.L;
 import android.databinding.tool.util.Preconditions;
@@ -39,6 +41,7 @@ import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
 import javax.xml.bind.JAXBException;
 import java.util.Arrays;
 import java.util.List;
@@ -125,7 +128,13 @@ public class ProcessDataBinding extends AbstractProcessor {
                 step.onProcessingOver(roundEnv, processingEnv, mCompilerArgs);
             }
         }
+        ClassFinderCache classFinderCache = ModelAnalyzer.getInstance().getClassFinderCache();
+        classFinderCache.logStats();
         if (roundEnv.processingOver()) {
+            if (mCompilerArgs.getPrintMetrics()) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                        classFinderCache.stats().toMetrics());
+            }
             Scope.assertNoError();
         }
         return done;
@@ -24,6 +24,9 @@ import android.databinding.tool.processing.ScopedException;
 import android.databinding.tool.reflection.ModelAnalyzer;
 import android.databinding.tool.store.GenClassInfoLog;
 import android.databinding.tool.store.ResourceBundle;
+import android.databinding.tool.util.BinaryIntermediate;
+import android.databinding.tool.util.BinaryIntermediateReader;
+import android.databinding.tool.util.BinaryIntermediateWriter;
 import android.databinding.tool.util.GenerationalClassUtil;
 import android.databinding.tool.util.L;
 import android.databinding.tool.util.LoggedErrorException;
@@ -151,12 +154,22 @@ public class ProcessExpressions extends ProcessDataBinding.ProcessingStep {
             //noinspection ConstantConditions
             upgraded.add((IntermediateV2) updatedIntermediate);
         }
+        for (BinaryIntermediateReader reader : GenerationalClassUtil.get().loadBinary(
+                GenerationalClassUtil.ExtensionFilter.LAYOUT_BINARY)) {
+            try {
+                upgraded.add(IntermediateV2.fromBinary(reader));
+            } catch (IOException e) {
+                L.e(e, "Could not read layout infos from %s", reader.getFile());
+            }
+        }
         return upgraded;
     }
 
     private void saveIntermediate(CompilerArguments args, IntermediateV2 intermediate) {
         GenerationalClassUtil.get().write(args.getModulePackage(),
                 GenerationalClassUtil.ExtensionFilter.LAYOUT, intermediate);
+        GenerationalClassUtil.get().writeBinary(args.getModulePackage(),
+                GenerationalClassUtil.ExtensionFilter.LAYOUT_BINARY, intermediate.toBinary());
     }
 
     @Override
@@ -349,6 +362,8 @@ public class ProcessExpressions extends ProcessDataBinding.ProcessingStep {
         // specify so that we can define updates ourselves.
         private static final long serialVersionUID = 2L;
 
+        private static final String LAYOUT_INFO_SECTION = "layoutInfo";
+
         @Override
         public void appendTo(ResourceBundle resourceBundle, boolean fromSource) throws JAXBException {
             for (Map.Entry<String, String> entry : mLayoutInfoMap.entrySet()) {
@@ -390,5 +405,25 @@ public class ProcessExpressions extends ProcessDataBinding.ProcessingStep {
                 }
             }
         }
+
+        /**
+         * Encodes the layout infos as a binary intermediate.
+         */
+        public BinaryIntermediateWriter toBinary() {
+            final BinaryIntermediateWriter writer = new BinaryIntermediateWriter(
+                    BinaryIntermediate.KIND_LAYOUT_INFO);
+            writer.putStringMap(LAYOUT_INFO_SECTION, mLayoutInfoMap);
+            return writer;
+        }
+
+        public static IntermediateV2 fromBinary(BinaryIntermediateReader reader)
+                throws IOException {
+            Preconditions.check(reader.getKind() == BinaryIntermediate.KIND_LAYOUT_INFO,
+                    "%s does not contain layout infos", reader.getFile());
+            final IntermediateV2 intermediate = new IntermediateV2();
+            intermediate.mLayoutInfoMap = new HashMap<>(
+                    reader.getStringMap(LAYOUT_INFO_SECTION));
+            return intermediate;
+        }
     }
 }
@@ -28,47 +28,54 @@ class LibTypes(val useAndroidX: Boolean) {
         "android.databinding"
     }
 
-    private val typeRewriter by lazy(LazyThreadSafetyMode.NONE) {
+    private val typeRewriter by lazy(LazyThreadSafetyMode.PUBLICATION) {
         val config =
             ConfigParser.loadDefaultConfig()
                 ?: throw IllegalStateException("Cannot load AndroidX conversion file.")
         TypeRewriter(config = config, useFallback = true)
     }
 
-    val viewStubProxy by lazy(LazyThreadSafetyMode.NONE) {
+    val viewStubProxy by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.ViewStubProxy")
     }
 
 
-    val observable by lazy(LazyThreadSafetyMode.NONE) {
+    val observable by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.Observable")
     }
 
-    val observableList by lazy(LazyThreadSafetyMode.NONE) {
+    val observableList by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.ObservableList")
     }
 
-    val observableMap by lazy(LazyThreadSafetyMode.NONE) {
+    val observableMap by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.ObservableMap")
     }
 
-    val liveData by lazy(LazyThreadSafetyMode.NONE) {
+    val liveData by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.arch.lifecycle.LiveData")
     }
 
-    val mutableLiveData by lazy(LazyThreadSafetyMode.NONE) {
+    val mutableLiveData by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.arch.lifecycle.MutableLiveData")
     }
 
-    val dataBindingComponent by lazy(LazyThreadSafetyMode.NONE) {
+    // kotlinx types are the same for support and androidx, so they are not converted
+    val stateFlow = "kotlinx.coroutines.flow.StateFlow"
+
+    val mutableStateFlow = "kotlinx.coroutines.flow.MutableStateFlow"
+
+    val viewDataBindingKtx = "$bindingPackage.ViewDataBindingKtx"
+
+    val dataBindingComponent by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.DataBindingComponent")
     }
 
-    val dataBinderMapper by lazy(LazyThreadSafetyMode.NONE) {
+    val dataBinderMapper by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.DataBinderMapper")
     }
 
-    val observableFields by lazy(LazyThreadSafetyMode.NONE) {
+    val observableFields by lazy(LazyThreadSafetyMode.PUBLICATION) {
         arrayOf(
                 "android.databinding.ObservableBoolean",
                 "android.databinding.ObservableByte",
@@ -82,11 +89,11 @@ class LibTypes(val useAndroidX: Boolean) {
                 "android.databinding.ObservableParcelable").map { convert(it) }
     }
 
-    val viewDataBinding by lazy(LazyThreadSafetyMode.NONE) {
+    val viewDataBinding by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.ViewDataBinding")
     }
 
-    val listClassNames by lazy(LazyThreadSafetyMode.NONE) {
+    val listClassNames by lazy(LazyThreadSafetyMode.PUBLICATION) {
         arrayOf("java.util.List",
                 "android.util.SparseArray",
                 "android.util.SparseBooleanArray",
@@ -96,33 +103,43 @@ class LibTypes(val useAndroidX: Boolean) {
                 "android.support.v4.util.LongSparseArray").map { convert(it) }
     }
 
-    val inverseBindingListener by lazy(LazyThreadSafetyMode.NONE) {
+    /**
+     * Lists that store their elements unboxed. Bracket expressions on them resolve to the
+     * primitive type and use the unboxed getFromList/setTo overloads in ViewDataBinding.
+     */
+    val primitiveListClassNames by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        arrayOf("android.databinding.ObservableIntArray",
+                "android.databinding.ObservableLongArray",
+                "android.databinding.ObservableFloatArray").map { convert(it) }
+    }
+
+    val inverseBindingListener by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.InverseBindingListener")
     }
 
-    val propertyChangedInverseListener by lazy(LazyThreadSafetyMode.NONE) {
+    val propertyChangedInverseListener by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.ViewDataBinding.PropertyChangedInverseListener")
     }
 
-    val bindable by lazy(LazyThreadSafetyMode.NONE) { convert("android.databinding.Bindable") }
+    val bindable by lazy(LazyThreadSafetyMode.PUBLICATION) { convert("android.databinding.Bindable") }
 
-    val bindingAdapter by lazy(LazyThreadSafetyMode.NONE) {
+    val bindingAdapter by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.BindingAdapter")
     }
 
-    val dataBindingUtil by lazy(LazyThreadSafetyMode.NONE) {
+    val dataBindingUtil by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.databinding.DataBindingUtil")
     }
 
-    val nonNull by lazy(LazyThreadSafetyMode.NONE) {
+    val nonNull by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.support.annotation.NonNull")
     }
 
-    val nullable by lazy(LazyThreadSafetyMode.NONE) {
+    val nullable by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.support.annotation.Nullable")
     }
 
-    val lifecycleOwner by lazy(LazyThreadSafetyMode.NONE) {
+    val lifecycleOwner by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.arch.lifecycle.LifecycleOwner")
     }
 
@@ -167,7 +184,7 @@ class LibTypes(val useAndroidX: Boolean) {
         else -> android.databinding.Untaggable::class.java
     }
 
-    val appCompatResources by lazy(LazyThreadSafetyMode.NONE) {
+    val appCompatResources by lazy(LazyThreadSafetyMode.PUBLICATION) {
         convert("android.support.v7.content.res.AppCompatResources")
     }
 
@@ -31,6 +31,7 @@ class KCode (private val s : String? = null){
     companion object {
         private val cachedIndentations = BitSet()
         private val indentCache = arrayListOf<String>()
+        @Synchronized
         fun indent(n: Int): String {
             if (cachedIndentations.get(n)) {
                 return indentCache[n]
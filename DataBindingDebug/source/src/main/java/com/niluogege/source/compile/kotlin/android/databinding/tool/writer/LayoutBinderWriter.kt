@@ -53,22 +53,37 @@ enum class Scope {
     CONSTRUCTOR_PARAM,
     CALLBACK;
     companion object {
-        var currentScope = GLOBAL;
-        private val scopeStack = arrayListOf<Scope>()
+        // per thread, so that binders can be written in parallel
+        private val state = ThreadLocal.withInitial { ScopeState() }
+
+        var currentScope: Scope
+            get() = state.get().current
+            set(value) {
+                state.get().current = value
+            }
+
         fun enter(scope : Scope) {
-            scopeStack.add(currentScope)
-            currentScope = scope
+            val s = state.get()
+            s.stack.add(s.current)
+            s.current = scope
         }
 
         fun exit() {
-            currentScope = scopeStack.removeAt(scopeStack.size - 1)
+            val s = state.get()
+            s.current = s.stack.removeAt(s.stack.size - 1)
         }
 
         fun reset() {
-            scopeStack.clear()
-            currentScope = GLOBAL
+            val s = state.get()
+            s.stack.clear()
+            s.current = GLOBAL
         }
     }
+
+    private class ScopeState {
+        var current = GLOBAL
+        val stack = arrayListOf<Scope>()
+    }
 }
 
 class ExprModelExt {
@@ -377,8 +392,11 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
                 nl(declareHasPendingBindings())
                 nl(declareSetVariable())
                 nl(variableSettersAndGetters())
+                nl(declareClearVariables())
+                nl(declareDirtyFlagCount())
                 nl(declareSetLifecycleOwnerOverride())
                 nl(onFieldChange())
+                nl(declareObservedPropertyIds())
                 try {
                     Scope.enter(Scope.GLOBAL)
                     nl(executePendingBindings())
@@ -440,6 +458,8 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
         nl("private static final ${libTypes.viewDataBinding}.IncludedLayouts sIncludes;")
         nl("@Nullable")
         nl("private static final android.util.SparseIntArray sViewsWithIds;")
+        nl("@Nullable")
+        nl("private static final int[][] sViewPaths;")
         nl("static {") {
             val hasBinders = layoutBinder.bindingTargets.firstOrNull { it.isUsed && it.isBinder } != null
             if (!hasBinders) {
@@ -496,6 +516,17 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
                     tab("sViewsWithIds.put(${it.androidId}, ${indices[it]});")
                 }
             }
+            // child index paths let mapBindings jump straight to the bound views
+            val usedTargets = layoutBinder.bindingTargets.filter { it.isUsed }
+            val viewPaths = usedTargets.associate { it to it.viewPath }
+            if (hasBinders || usedTargets.isEmpty() || viewPaths.values.any { it == null }) {
+                tab("sViewPaths = null;")
+            } else {
+                tab("sViewPaths = new int[${maxIndex() + 1}][];")
+                usedTargets.sortedBy { indices[it] }.forEach {
+                    tab("sViewPaths[${indices[it]}] = new int[] {${viewPaths[it]!!.joinToString(", ")}};")
+                }
+            }
         }
         nl("}")
     }
@@ -524,7 +555,7 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
         if (hasBaseBinder) {
             nl("")
             nl("public $className(@Nullable ${libTypes.dataBindingComponent} bindingComponent, @NonNull $parameterType root) {") {
-                tab("this(bindingComponent, root, mapBindings(bindingComponent, root, $bindingCount, sIncludes, sViewsWithIds));")
+                tab("this(bindingComponent, root, mapBindings(bindingComponent, root, $bindingCount, sIncludes, sViewsWithIds, sViewPaths));")
             }
             nl("}")
             nl("private $className(${libTypes.dataBindingComponent} bindingComponent, $parameterType root, Object[] bindings) {") {
@@ -538,7 +569,7 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
         } else {
             nl("public $baseClassName(@NonNull ${libTypes.dataBindingComponent} bindingComponent, @NonNull $parameterType root) {") {
                 tab("super(bindingComponent, $superParam, ${model.observables.size});")
-                tab("final Object[] bindings = mapBindings(bindingComponent, root, $bindingCount, sIncludes, sViewsWithIds);")
+                tab("final Object[] bindings = mapBindings(bindingComponent, root, $bindingCount, sIncludes, sViewsWithIds, sViewPaths);")
             }
         }
         if (layoutBinder.requiredComponent != null) {
@@ -740,7 +771,7 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
                 block("public void ${it.setterName}(${if (it.resolvedType.isPrimitive) "" else "@Nullable "}$argType ${it.readableName})") {
                     val used = it.isIsUsedInCallback || it.isUsed
                     if (used && it.isObservable) {
-                        nl("${it.updateRegistrationCall}(${it.id}, ${it.readableName});");
+                        nl("${it.getUpdateRegistrationCall(it.readableName)};")
                     }
                     nl("this.${it.fieldName} = ${it.readableName};")
                     if (used) {
@@ -770,6 +801,28 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
         }
     }
 
+    fun declareClearVariables() = kcode("") {
+        val userVariables = variables.filter { it.userDefinedType != null }
+        val includes = includedBinders.filter { it.isUsed }
+        if (userVariables.isNotEmpty() || includes.isNotEmpty()) {
+            nl("@Override")
+            block("protected void clearVariables()") {
+                userVariables.forEach {
+                    val type = it.resolvedType
+                    val value = when {
+                        type.isBoolean -> "false"
+                        type.isPrimitive -> "(${type.toJavaCode()}) 0"
+                        else -> "null"
+                    }
+                    nl("${it.setterName}($value);")
+                }
+                includes.forEach { binder ->
+                    nl("resetIncludedBinding(${binder.fieldName});")
+                }
+            }
+        }
+    }
+
     fun declareSetLifecycleOwnerOverride() = kcode("") {
         val includes = includedBinders.filter { it.isUsed }
         if (includes.isNotEmpty()) {
@@ -844,6 +897,28 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
         }
     }
 
+    fun declareObservedPropertyIds() = kcode("") {
+        if (model.observables.isNotEmpty()) {
+            // must match the fieldId checks in onFieldChange
+            nl("private static final int[][] sObservedPropertyIds = new int[][] {") {
+                model.observables.forEach {
+                    val ids = listOf("".br()) + it.parents
+                            .filterIsInstance(FieldAccessExpr::class.java)
+                            .filter { it.isUsed && it.hasBindableAnnotations() }
+                            .flatMap { expr -> expr.dirtyingProperties.asList() }
+                            .distinct()
+                    tab("{${ids.joinToString(", ")}},")
+                }
+            }
+            nl("};")
+            nl("")
+            nl("@Override")
+            block("protected int[] getObservedPropertyIds(int localFieldId)") {
+                nl("return sObservedPropertyIds[localFieldId];")
+            }
+        }
+    }
+
     fun declareViews() = kcode("// views") {
         layoutBinder.sortedTargets.filter {it.isUsed && (!hasBaseBinder || it.id == null)}.forEach {
             val access = if (!hasBaseBinder && it.id != null) {
@@ -935,6 +1010,20 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
         }
     }
 
+    fun declareDirtyFlagCount() = kcode("") {
+        if (mDirtyFlags.buckets.isNotEmpty()) {
+            nl("@Override")
+            block("protected int getDirtyFlagCount()") {
+                block("synchronized(this)") {
+                    val count = mDirtyFlags.buckets.indices.joinToString(" + ") {
+                        "Long.bitCount(${mDirtyFlags.localValue(it)})"
+                    }
+                    nl("return $count;")
+                }
+            }
+        }
+    }
+
     fun declareDirtyFlags() = kcode("// dirty flag") {
         model.ext.localizedFlags.forEach { flag ->
             flag.notEmpty { suffix, value ->
@@ -1084,7 +1173,7 @@ class LayoutBinderWriter(val layoutBinder : LayoutBinder, val libTypes: LibTypes
                             app("", assignment)
                         }
                         it.value.filter { it.isObservable }.forEach { expr: Expr ->
-                            tab("${expr.updateRegistrationCall}(${expr.id}, ${expr.executePendingLocalName});")
+                            tab("${expr.getUpdateRegistrationCall(expr.executePendingLocalName)};")
                         }
                     }
 
@@ -268,8 +268,8 @@ public class Binding implements LocationScopeProvider {
         @Override
         protected String toJavaInternal(String componentExpression, String viewExpression,
                 String converted) {
-            return "if (" + viewExpression + ".isInflated()) " + viewExpression +
-                    ".getBinding().setVariable(BR." + mName + ", " + converted + ")";
+            // the proxy keeps the value until the stub is inflated
+            return viewExpression + ".setVariable(BR." + mName + ", " + converted + ")";
         }
 
         @Override
@@ -302,7 +302,7 @@ public class Binding implements LocationScopeProvider {
 
         @Override
         public String getDescription() {
-            return "ViewDataBinding.setVariable(BR." + mName + ", value)";
+            return "ViewStubProxy.setVariable(BR." + mName + ", value)";
         }
     }
 
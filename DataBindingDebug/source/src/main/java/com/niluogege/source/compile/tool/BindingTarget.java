@@ -127,6 +127,27 @@ public class BindingTarget implements LocationScopeProvider {
         return mBundle.isBinder();
     }
 
+    /**
+     * @return The child indices that lead from the layout root to this view or null if they
+     * are not known.
+     */
+    @Nullable
+    public int[] getViewPath() {
+        final String path = mBundle.getViewPath();
+        if (path == null) {
+            return null;
+        }
+        if (path.isEmpty()) {
+            return new int[0];
+        }
+        final String[] parts = path.split(",");
+        final int[] indices = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            indices[i] = Integer.parseInt(parts[i]);
+        }
+        return indices;
+    }
+
     public boolean supportsTag() {
         return !SetterStore.get()
                 .isUntaggable(mBundle.getFullClassName());
@@ -70,7 +70,13 @@ data class CompilerArguments constructor(
     // comma separated list of package names for direct dependencies that are directly accessible in this compilation.
     // only passed by bazel to be able to distinguish which mappers in the classpath can be accessed
     // in generated code. Gradle removes such classes from classpath hence they are not necessary.
-    val directDependencyPackages : String? = null
+    val directDependencyPackages : String? = null,
+    // whether the JSON and serialized intermediates are written next to the binary ones, for
+    // consumers built with data binding versions that can't read the binary format
+    val writeLegacyIntermediates: Boolean = false,
+    // whether the compiler metrics, e.g. the class finder cache statistics, are reported as a
+    // NOTE at the end of processing
+    val printMetrics: Boolean = false
 ) {
     init {
         Preconditions.check(
@@ -149,6 +155,8 @@ data class CompilerArguments constructor(
         if (directDependencyPackages != null) {
             args[PARAM_DIRECT_DEPENDENCY_PKGS] = directDependencyPackages
         }
+        args[PARAM_WRITE_LEGACY_INTERMEDIATES] = booleanToString(writeLegacyIntermediates)
+        args[PARAM_PRINT_METRICS] = booleanToString(printMetrics)
         return args
     }
 
@@ -191,6 +199,8 @@ data class CompilerArguments constructor(
         // it looks like [pkg1, pkg2]. Java does not distinguish between empty string vs null (absent) so we are
         // using [] as a wrapper around to easily distinguish between unspecified vs empty list
         private const val PARAM_DIRECT_DEPENDENCY_PKGS = PREFIX + "directDependencyPkgs"
+        private const val PARAM_WRITE_LEGACY_INTERMEDIATES = PREFIX + "writeLegacyIntermediates"
+        private const val PARAM_PRINT_METRICS = PREFIX + "printMetrics"
 
         @JvmField
         val ALL_PARAMS: Set<String> = Sets.newHashSet(
@@ -211,7 +221,9 @@ data class CompilerArguments constructor(
             PARAM_IS_TEST_VARIANT,
             PARAM_ENABLE_FOR_TESTS,
             PARAM_ENABLE_V2,
-            PARAM_DIRECT_DEPENDENCY_PKGS
+            PARAM_DIRECT_DEPENDENCY_PKGS,
+            PARAM_WRITE_LEGACY_INTERMEDIATES,
+            PARAM_PRINT_METRICS
         )
 
         @JvmStatic
@@ -246,7 +258,10 @@ data class CompilerArguments constructor(
                 isEnabledForTests = stringToBoolean(options[PARAM_ENABLE_FOR_TESTS]),
                 isEnableV2 = stringToBoolean(options[PARAM_ENABLE_V2]),
                 // if specified, rely on it even if it is empty
-                directDependencyPackages = options[PARAM_DIRECT_DEPENDENCY_PKGS]
+                directDependencyPackages = options[PARAM_DIRECT_DEPENDENCY_PKGS],
+                writeLegacyIntermediates =
+                stringToBoolean(options[PARAM_WRITE_LEGACY_INTERMEDIATES]),
+                printMetrics = stringToBoolean(options[PARAM_PRINT_METRICS])
             )
         }
 
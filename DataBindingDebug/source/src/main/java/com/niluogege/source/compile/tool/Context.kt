@@ -42,6 +42,8 @@ object Context {
         L.setClient(logger)
         val hasAndroidXBinding = discoverAndroidX(processingEnvironment)
         libTypes = LibTypes(hasAndroidXBinding)
+        // the setter store of the previous round is replaced below, so are its intermediates
+        generationalClassUtil?.releaseBinaryIntermediates()
         generationalClassUtil = GenerationalClassUtil.create(args)
         modelAnalyzer = AnnotationAnalyzer(processingEnvironment, libTypes)
         typeUtil = modelAnalyzer!!.createTypeUtil()
@@ -66,9 +68,11 @@ object Context {
     }
 
     @JvmStatic
-    fun initForTests(modelAnayzer: ModelAnalyzer, sdkUtil: SdkUtil) {
+    fun initForTests(modelAnayzer: ModelAnalyzer, sdkUtil: SdkUtil,
+            setterStore: SetterStore? = null) {
         this.modelAnalyzer = modelAnayzer
         this.sdkUtil = sdkUtil
+        this.setterStore = setterStore
         typeUtil = modelAnalyzer!!.createTypeUtil()
     }
 
@@ -101,6 +105,7 @@ object Context {
         logger.flushMessages(processingEnvironment)
         modelAnalyzer = null
         setterStore = null
+        generationalClassUtil?.releaseBinaryIntermediates()
         generationalClassUtil = null
         typeUtil = null
         sdkUtil = null
@@ -33,11 +33,24 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The main class that handles parsing files and generating classes.
  */
 public class DataBinder {
+    /**
+     * System property with the number of threads used to seal the layout models and to write
+     * the binders. Defaults to 1, which does all the work on the calling thread.
+     */
+    public static final String PARALLELISM_PROPERTY = "android.databinding.parallelism";
+
+    private static final int PARALLELISM =
+            Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, 1));
+
     List<LayoutBinder> mLayoutBinders = new ArrayList<LayoutBinder>();
     private final String mComponentClass;
 
@@ -46,6 +59,7 @@ public class DataBinder {
     Set<String> mClassesToBeStripped = new HashSet<String>();
     private final boolean mEnableV2;
     private final LibTypes mLibTypes;
+    private int mParallelism = PARALLELISM;
 
     public DataBinder(ResourceBundle resourceBundle, boolean enableV2, LibTypes libTypes) {
         L.d("reading resource bundle into data binder.enable V2: %s, layout cnt:%d",
@@ -83,10 +97,37 @@ public class DataBinder {
         return mLayoutBinders;
     }
 
+    /**
+     * @return The number of threads used to seal models and write binders.
+     */
+    public static int getParallelism() {
+        return PARALLELISM;
+    }
+
+    /**
+     * Overrides {@link #PARALLELISM_PROPERTY} for this binder. The analyzer should be created
+     * with the same parallelism, see
+     * {@link android.databinding.tool.reflection.annotation.AnnotationAnalyzer}.
+     */
+    void setParallelism(int parallelism) {
+        Preconditions.check(parallelism > 0, "parallelism must be positive: %d", parallelism);
+        mParallelism = parallelism;
+    }
+
     public void sealModels() {
-        for (LayoutBinder layoutBinder : mLayoutBinders) {
-            layoutBinder.sealModel();
+        if (mParallelism == 1 || mLayoutBinders.size() < 2) {
+            for (LayoutBinder layoutBinder : mLayoutBinders) {
+                layoutBinder.sealModel();
+            }
+            return;
         }
+        forEachLayoutInParallel(new LayoutTask<Void>() {
+            @Override
+            public Void run(LayoutBinder layoutBinder) {
+                layoutBinder.sealModel();
+                return null;
+            }
+        });
     }
 
     public void writerBaseClasses(boolean isLibrary) {
@@ -130,6 +171,10 @@ public class DataBinder {
 
     public void writeBinders(int minSdk) {
         writeCallbackWrappers(minSdk);
+        if (mParallelism > 1 && mLayoutBinders.size() > 1) {
+            writeBindersInParallel(minSdk);
+            return;
+        }
         for (LayoutBinder layoutBinder : mLayoutBinders) {
             try {
                 Scope.enter(layoutBinder);
@@ -153,6 +198,121 @@ public class DataBinder {
         }
     }
 
+    /**
+     * Renders the binders on the pool and then writes them on this thread, in the same order
+     * as the serial path, so the output doesn't depend on the number of threads.
+     */
+    private void writeBindersInParallel(final int minSdk) {
+        final List<String> sources = forEachLayoutInParallel(new LayoutTask<String>() {
+            @Override
+            public String run(LayoutBinder layoutBinder) {
+                try {
+                    Scope.enter(layoutBinder);
+                    return layoutBinder.writeViewBinder(minSdk);
+                } catch (ScopedException ex) {
+                    Scope.defer(ex);
+                } catch (Throwable t) {
+                    L.e(t, ErrorMessages.UNEXPECTED_ERROR_IN_LAYOUT, layoutBinder.getLayoutname());
+                } finally {
+                    Scope.exit();
+                }
+                return null;
+            }
+        });
+        for (int i = 0; i < mLayoutBinders.size(); i++) {
+            final LayoutBinder layoutBinder = mLayoutBinders.get(i);
+            String canonicalName = layoutBinder.getPackage() + "."
+                    + layoutBinder.getImplementationName();
+            L.d("writing data binder %s", canonicalName);
+            if (!mEnableV2) {
+                mClassesToBeStripped.add(canonicalName);
+            }
+            final String source = sources.get(i);
+            if (source != null) {
+                mFileWriter.writeToFile(canonicalName, source);
+            }
+        }
+    }
+
+    interface ParallelTask<I, T> {
+        T run(I item);
+    }
+
+    private interface LayoutTask<T> extends ParallelTask<LayoutBinder, T> {
+    }
+
+    private <T> List<T> forEachLayoutInParallel(final LayoutTask<T> task) {
+        return forEachInParallel(mLayoutBinders, mParallelism, task);
+    }
+
+    /**
+     * Runs <code>task</code> for every item on a fork-join pool. Exceptions deferred by a task
+     * are added to {@link Scope} in item order once all tasks are done, and the first task that
+     * failed, in item order, has its exception rethrown, as if the items had been handled one
+     * after the other.
+     *
+     * @return The results of the tasks, in item order.
+     */
+    static <I, T> List<T> forEachInParallel(List<I> items, int parallelism,
+            final ParallelTask<I, T> task) {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            final List<Future<TaskResult<T>>> futures =
+                    new ArrayList<Future<TaskResult<T>>>(items.size());
+            for (final I item : items) {
+                futures.add(pool.submit(new Callable<TaskResult<T>>() {
+                    @Override
+                    public TaskResult<T> call() {
+                        final TaskResult<T> result = new TaskResult<T>();
+                        Scope.startCapture();
+                        try {
+                            result.value = task.run(item);
+                        } catch (Throwable t) {
+                            result.error = t;
+                        } finally {
+                            result.deferred = Scope.endCapture();
+                        }
+                        return result;
+                    }
+                }));
+            }
+            final List<T> values = new ArrayList<T>(futures.size());
+            Throwable firstError = null;
+            for (Future<TaskResult<T>> future : futures) {
+                final TaskResult<T> result;
+                try {
+                    result = future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted while processing layouts", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                Scope.deferAll(result.deferred);
+                if (result.error != null && firstError == null) {
+                    firstError = result.error;
+                }
+                values.add(result.value);
+            }
+            if (firstError instanceof RuntimeException) {
+                throw (RuntimeException) firstError;
+            } else if (firstError instanceof Error) {
+                throw (Error) firstError;
+            } else if (firstError != null) {
+                throw new IllegalStateException(firstError);
+            }
+            return values;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class TaskResult<T> {
+        T value;
+        Throwable error;
+        List<ScopedException> deferred;
+    }
+
     private void writeCallbackWrappers(int minSdk) {
         Map<String, CallbackWrapper> uniqueWrappers = new HashMap<String, CallbackWrapper>();
         Set<String> classNames = new HashSet<String>();
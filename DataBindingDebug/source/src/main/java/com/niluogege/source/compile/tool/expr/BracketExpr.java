@@ -57,6 +57,10 @@ public class BracketExpr extends Expr {
                     "or array. Type detected: " + targetType.toJavaCode());
             L.e(exception, "Failed to resolve Bracked Expr %s, target: %s", this, targetType);
         }
+        if (targetType.isPrimitiveList()) {
+            // read through the unboxed getFromList overload
+            return targetType.getComponentType().unbox();
+        }
         return targetType.getComponentType();
     }
 
@@ -173,7 +177,7 @@ public class BracketExpr extends Expr {
                 ? model.castExpr("int", model.castExpr("Integer", arg))
                 : arg;
         ModelClass targetType = getTarget().getResolvedType();
-        if ((targetType.isList() || targetType.isMap()) &&
+        if ((targetType.isList() || targetType.isMap()) && !targetType.isPrimitiveList() &&
                 value.getResolvedType().isPrimitive()) {
             ModelClass boxed = value.getResolvedType().box();
             value = model.castExpr(boxed.toJavaCode(), value);
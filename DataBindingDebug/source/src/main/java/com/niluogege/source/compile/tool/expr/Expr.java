@@ -198,9 +198,27 @@ abstract public class Expr implements VersionProvider, LocationScopeProvider {
         if (getResolvedType().isLiveData()) {
             return "updateLiveDataRegistration";
         }
+        if (getResolvedType().isStateFlow()) {
+            return ModelAnalyzer.getInstance().libTypes.getViewDataBindingKtx()
+                    + ".updateStateFlowRegistration";
+        }
         return "updateRegistration";
     }
 
+    /**
+     * @param value The code of the value to observe.
+     * @return The call, including its arguments, that moves the registration of this
+     * expression to <code>value</code>.
+     */
+    public String getUpdateRegistrationCall(String value) {
+        if (getResolvedType().isStateFlow()) {
+            // StateFlow support lives outside ViewDataBinding so that it doesn't depend on
+            // kotlinx, so the binding is passed in explicitly.
+            return getUpdateRegistrationCall() + "(this, " + getId() + ", " + value + ")";
+        }
+        return getUpdateRegistrationCall() + "(" + getId() + ", " + value + ")";
+    }
+
     public void setUnwrapObservableFields(boolean unwrapObservableFields) {
         mUnwrapObservableFields = unwrapObservableFields;
     }
@@ -37,6 +37,8 @@ public class Scope {
 
     private static ThreadLocal<ScopeEntry> sScopeItems = new ThreadLocal<ScopeEntry>();
     static List<ScopedException> sDeferredExceptions = new ArrayList<ScopedException>();
+    private static ThreadLocal<List<ScopedException>> sCapturedExceptions =
+            new ThreadLocal<List<ScopedException>>();
 
     public static void enter(final Location location) {
         enter(new LocationScopeProvider() {
@@ -59,7 +61,40 @@ public class Scope {
     }
 
     public static void defer(ScopedException exception) {
-        sDeferredExceptions.add(exception);
+        List<ScopedException> captured = sCapturedExceptions.get();
+        if (captured != null) {
+            captured.add(exception);
+            return;
+        }
+        synchronized (Scope.class) {
+            sDeferredExceptions.add(exception);
+        }
+    }
+
+    /**
+     * Starts collecting the exceptions deferred on this thread instead of adding them to the
+     * global list. Used by work that runs on other threads, so that its errors can be added in
+     * a deterministic order with {@link #deferAll(List)}.
+     */
+    public static void startCapture() {
+        sCapturedExceptions.set(new ArrayList<ScopedException>());
+    }
+
+    /**
+     * Stops collecting deferred exceptions on this thread.
+     *
+     * @return The exceptions deferred since {@link #startCapture()}.
+     */
+    public static List<ScopedException> endCapture() {
+        List<ScopedException> captured = sCapturedExceptions.get();
+        sCapturedExceptions.remove();
+        return captured == null ? Collections.<ScopedException>emptyList() : captured;
+    }
+
+    public static void deferAll(List<ScopedException> exceptions) {
+        for (ScopedException exception : exceptions) {
+            defer(exception);
+        }
     }
 
     private static void registerErrorInternal(String msg, int scopeIndex,
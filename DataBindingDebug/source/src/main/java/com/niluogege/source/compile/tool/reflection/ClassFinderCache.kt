@@ -17,53 +17,124 @@
 package android.databinding.tool.reflection
 
 import android.databinding.tool.util.L
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * A cache object that can index classes based on when it is found and its imports.
+ *
+ * Results are kept in one map per import bag, so a lookup only needs the class name as a key
+ * and doesn't copy the imports. Classes that cannot be found are cached as well, as the same
+ * unresolved names are looked up over and over, e.g. by SetterStore. The maps are concurrent
+ * so that binders can be sealed on several threads.
  */
 class ClassFinderCache(
         private val doFind : ((className : String, imports : ImportBag?) -> ModelClass?)
 ) {
-    private val cache = mutableMapOf<CacheKey, ModelClass>()
-    private val importCache = mutableMapOf<ImportBag, ImmutableImportBag>()
-    private var hit = 0
-    private var miss = 0
-    private var missForNull = 0
+    // results for lookups without imports
+    private val noImportCache = ConcurrentHashMap<String, Any>()
+    // keyed by immutable copies, but looked up with the caller's bag as bags compare by content
+    private val importCache = ConcurrentHashMap<ImportBag, ConcurrentHashMap<String, Any>>()
+    private val hit = AtomicLong()
+    private val negativeHit = AtomicLong()
+    private val miss = AtomicLong()
+    private val missForNull = AtomicLong()
+
     fun find(className : String, imports: ImportBag?) : ModelClass? {
-        val immutableImports = if(imports == null) {
-            null
-        } else {
-            importCache.getOrPut(imports) {
-                imports.toImmutable()
+        val cache = cacheFor(imports)
+        val existing = cache[className]
+        if (existing != null) {
+            if (existing === NOT_FOUND) {
+                negativeHit.incrementAndGet()
+                return null
             }
+            hit.incrementAndGet()
+            return existing as ModelClass
         }
-        val key = CacheKey(className = className, imports = immutableImports)
-        val existing = cache[key]
-        if (existing == null) {
-            miss ++
-            val found = doFind(className, imports)
-            if (found == null) {
-                missForNull ++
-            } else {
-                cache[key] = found
-                return found
-            }
-            return found
-        } else {
-            hit++
+        miss.incrementAndGet()
+        // not computeIfAbsent: doFind may look up other classes, e.g. type arguments
+        val found = doFind(className, imports)
+        if (found == null) {
+            missForNull.incrementAndGet()
+        }
+        val previous = cache.putIfAbsent(className, found ?: NOT_FOUND) ?: return found
+        if (previous !== NOT_FOUND) {
+            return previous as ModelClass
+        }
+        // another thread couldn't find it, e.g. before the class was injected, so the negative
+        // entry is stale now
+        if (found != null && !cache.replace(className, NOT_FOUND, found)) {
+            return cache[className] as? ModelClass ?: found
+        }
+        return found
+    }
+
+    private fun cacheFor(imports: ImportBag?): ConcurrentHashMap<String, Any> {
+        if (imports == null) {
+            return noImportCache
+        }
+        val existing = importCache[imports]
+        if (existing != null) {
             return existing
         }
+        val created = ConcurrentHashMap<String, Any>()
+        return importCache.putIfAbsent(imports.toImmutable(), created) ?: created
+    }
+
+    /**
+     * Drops the cached results for [className], e.g. because a class with that name was
+     * injected after it was looked up.
+     */
+    fun invalidate(className: String) {
+        noImportCache.remove(className)
+        importCache.values.forEach { it.remove(className) }
+    }
+
+    /**
+     * @return a snapshot of the cache statistics.
+     */
+    fun stats() : Stats {
+        return Stats(
+                hits = hit.get(),
+                negativeHits = negativeHit.get(),
+                misses = miss.get(),
+                missesForNull = missForNull.get(),
+                importBags = importCache.size,
+                entries = noImportCache.size + importCache.values.sumBy { it.size })
     }
 
     fun logStats() {
-        val ratio = (miss * 1f) / (miss + hit)
-        val nonNullMiss = miss - missForNull
-        val nonNullRatio = (nonNullMiss * 1f) / (nonNullMiss + hit)
-        L.w("class finder cache: miss: $miss, hit: $hit, ratio : $ratio, ratio w/o nulls: $nonNullRatio")
+        L.d("%s", stats().toMetrics())
     }
 
-    private data class CacheKey(
-            val className: String,
-            val imports: ImmutableImportBag?
-    )
-}
\ No newline at end of file
+    data class Stats(
+            val hits: Long,
+            val negativeHits: Long,
+            val misses: Long,
+            val missesForNull: Long,
+            val importBags: Int,
+            val entries: Int
+    ) {
+        val hitRatio: Float
+            get() {
+                val lookups = hits + negativeHits + misses
+                return if (lookups == 0L) 0f else (hits + negativeHits) * 1f / lookups
+            }
+
+        /**
+         * @return the statistics as a single line of key=value pairs, so that build tooling can
+         * parse them from the log.
+         */
+        fun toMetrics(): String {
+            return String.format(Locale.US, "databinding.metrics classFinderCache hits=%d" +
+                    " negativeHits=%d misses=%d missesForNull=%d importBags=%d entries=%d" +
+                    " hitRatio=%.3f", hits, negativeHits, misses, missesForNull, importBags,
+                    entries, hitRatio)
+        }
+    }
+
+    companion object {
+        private val NOT_FOUND = Any()
+    }
+}
@@ -68,15 +68,15 @@ class InjectedClass(private val mClassName: String, private val mSuperClass: Str
 
     override val isVoid = false
 
-    override val isObservable by lazy(LazyThreadSafetyMode.NONE) {
+    override val isObservable by lazy(LazyThreadSafetyMode.PUBLICATION) {
         superclass.isObservable
     }
 
-    override val superclass by lazy(LazyThreadSafetyMode.NONE) {
+    override val superclass by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().findClass(mSuperClass, null)!!
     }
 
-    override val jniDescription: String by lazy(LazyThreadSafetyMode.NONE) {
+    override val jniDescription: String by lazy(LazyThreadSafetyMode.PUBLICATION) {
         TypeUtil.getInstance().getDescription(this)
     }
 
@@ -92,7 +92,7 @@ class InjectedClass(private val mClassName: String, private val mSuperClass: Str
             return superclass.allMethods + mMethods
         }
 
-    override val typeName: TypeName by lazy(LazyThreadSafetyMode.NONE) {
+    override val typeName: TypeName by lazy(LazyThreadSafetyMode.PUBLICATION) {
         val instance = ModelAnalyzer.getInstance()
         mClassName.toTypeName(instance.libTypes)
     }
@@ -19,6 +19,7 @@ import android.databinding.tool.Context
 import android.databinding.tool.LibTypes
 import android.databinding.tool.util.Preconditions
 import java.util.*
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * This is the base class for several implementations of something that
@@ -27,68 +28,80 @@ import java.util.*
  */
 abstract class ModelAnalyzer protected constructor(@JvmField val libTypes: LibTypes) {
 
-    val mapType by lazy(LazyThreadSafetyMode.NONE) {
+    val mapType by lazy(LazyThreadSafetyMode.PUBLICATION) {
         loadClassErasure(MAP_CLASS_NAME)!!
     }
 
-    val stringType by lazy(LazyThreadSafetyMode.NONE) {
+    val stringType by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findClass(STRING_CLASS_NAME, null)!!
     }
-    val objectType  by lazy(LazyThreadSafetyMode.NONE) {
+    val objectType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findClass(OBJECT_CLASS_NAME, null)!!
     }
 
-    val observableType by lazy(LazyThreadSafetyMode.NONE) {
+    val observableType by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findClass(libTypes.observable, null)!!
     }
-    val observableListType  by lazy(LazyThreadSafetyMode.NONE) {
+    val observableListType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         loadClassErasure(libTypes.observableList)!!
     }
-    val observableMapType  by lazy(LazyThreadSafetyMode.NONE) {
+    val observableMapType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         loadClassErasure(libTypes.observableMap)!!
     }
-    val liveDataType  by lazy(LazyThreadSafetyMode.NONE) {
+    val liveDataType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         loadClassErasure(libTypes.liveData)
     }
-    val mutableLiveDataType  by lazy(LazyThreadSafetyMode.NONE) {
+    val mutableLiveDataType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         loadClassErasure(libTypes.mutableLiveData)
     }
-    val viewDataBindingType  by lazy(LazyThreadSafetyMode.NONE) {
+    val stateFlowType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        loadClassErasure(libTypes.stateFlow)
+    }
+    val mutableStateFlowType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        loadClassErasure(libTypes.mutableStateFlow)
+    }
+    val viewDataBindingType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         val klass = findClass(libTypes.viewDataBinding, null)
         Preconditions.checkNotNull(klass, "Cannot find %s class." +
                 "Something is wrong in the classpath,  please submit a bug" +
                 " report", libTypes.viewDataBinding)
         klass
     }
-    val viewStubType  by lazy(LazyThreadSafetyMode.NONE) {
+    val viewStubType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findClass(VIEW_STUB_CLASS_NAME, null)
     }
-    val viewStubProxyType  by lazy(LazyThreadSafetyMode.NONE) {
+    val viewStubProxyType  by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findClass(libTypes.viewStubProxy, null)
     }
 
     /**
      * If present, rely on it for fetching resources when possible.
      */
-    val appCompatResourcesType by lazy(LazyThreadSafetyMode.NONE) {
+    val appCompatResourcesType by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findClass(libTypes.appCompatResources, null)
     }
 
     /**
      * If it is present, we annotate generated classes with @Generated.
      */
-    val hasGeneratedAnnotation by lazy(LazyThreadSafetyMode.NONE) {
+    val hasGeneratedAnnotation by lazy(LazyThreadSafetyMode.PUBLICATION) {
         findGeneratedAnnotation()
     }
 
-    private val mInjectedClasses = HashMap<String, InjectedClass>()
+    // read from the threads that seal and write layouts in parallel
+    private val mInjectedClasses = ConcurrentHashMap<String, InjectedClass>()
 
-    val listTypes by lazy(LazyThreadSafetyMode.NONE) {
+    val listTypes by lazy(LazyThreadSafetyMode.PUBLICATION) {
         libTypes.listClassNames
                 .mapNotNull(this::loadClassErasure)
     }
 
-    val observableFieldTypes by lazy(LazyThreadSafetyMode.NONE) {
+    val primitiveListTypes by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        libTypes.primitiveListClassNames
+                .mapNotNull(this::loadClassErasure)
+    }
+
+    val observableFieldTypes by lazy(LazyThreadSafetyMode.PUBLICATION) {
         libTypes.observableFields
                 .mapNotNull(this::loadClassErasure)
     }
@@ -145,6 +158,8 @@ abstract class ModelAnalyzer protected constructor(@JvmField val libTypes: LibTy
 
     fun injectClass(injectedClass: InjectedClass): ModelClass {
         mInjectedClasses[injectedClass.canonicalName] = injectedClass
+        // an earlier lookup may have cached that the class doesn't exist
+        classFinderCache.invalidate(injectedClass.canonicalName)
         return injectedClass
     }
 
@@ -47,23 +47,33 @@ abstract class ModelClass {
      * @return Whether or not this ModelClass can be treated as a List. This means
      * it is a java.util.List, or one of the Sparse*Array classes.
      */
-    val isList by lazy(LazyThreadSafetyMode.NONE) {
+    val isList by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().listTypes.any {
             it.isAssignableFrom(this)
         }
     }
 
+    /**
+     * @return Whether or not this ModelClass is a List that stores its elements unboxed, such
+     * as ObservableIntArray.
+     */
+    val isPrimitiveList by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        ModelAnalyzer.getInstance().primitiveListTypes.any {
+            it.isAssignableFrom(this)
+        }
+    }
+
     /**
      * @return whether or not this ModelClass can be considered a Map or not.
      */
-    val isMap by lazy(LazyThreadSafetyMode.NONE) {
+    val isMap by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().mapType.isAssignableFrom(erasure())
     }
 
     /**
      * @return whether or not this ModelClass is a java.lang.String.
      */
-    val isString by lazy(LazyThreadSafetyMode.NONE) {
+    val isString by lazy(LazyThreadSafetyMode.PUBLICATION) {
         "java.lang.String" == typeName.toString()
     }
     /**
@@ -142,7 +152,7 @@ abstract class ModelClass {
     /**
      * @return whether or not this ModelClass is java.lang.Object and not a primitive or subclass.
      */
-    val isObject by lazy(LazyThreadSafetyMode.NONE) {
+    val isObject by lazy(LazyThreadSafetyMode.PUBLICATION) {
         "java.lang.Object" == typeName.toString()
     }
 
@@ -154,13 +164,13 @@ abstract class ModelClass {
     /**
      * @return whether or not his is a ViewDataBinding subclass.
      */
-    val isViewDataBinding by lazy(LazyThreadSafetyMode.NONE) {
+    val isViewDataBinding by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().viewDataBindingType!!.isAssignableFrom(this)
     }
 
     /**
      * @return whether or not this is an Observable type such as ObservableMap, ObservableList,
-     * or Observable.
+     * Observable, LiveData or StateFlow.
      */
     // open for injected
     open val isObservable: Boolean
@@ -169,14 +179,15 @@ abstract class ModelClass {
             return modelAnalyzer.observableType.isAssignableFrom(this) ||
                     modelAnalyzer.observableListType.isAssignableFrom(this) ||
                     modelAnalyzer.observableMapType.isAssignableFrom(this) ||
-                    (modelAnalyzer.liveDataType?.isAssignableFrom(this) ?: false)
+                    (modelAnalyzer.liveDataType?.isAssignableFrom(this) ?: false) ||
+                    (modelAnalyzer.stateFlowType?.isAssignableFrom(this) ?: false)
         }
 
     /**
      * @return whether or not this is an ObservableField, or any of the primitive versions
      * such as ObservableBoolean and ObservableInt
      */
-    val isObservableField by lazy(LazyThreadSafetyMode.NONE) {
+    val isObservableField by lazy(LazyThreadSafetyMode.PUBLICATION) {
         val erasure = erasure()
         ModelAnalyzer.getInstance().observableFieldTypes.any {
             it.isAssignableFrom(erasure)
@@ -186,7 +197,7 @@ abstract class ModelClass {
     /**
      * @return whether or not this is a LiveData
      */
-    val isLiveData by lazy(LazyThreadSafetyMode.NONE) {
+    val isLiveData by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().liveDataType?.isAssignableFrom(erasure()) ?: false
     }
 
@@ -194,29 +205,46 @@ abstract class ModelClass {
      * @return whether or not this is a MutableLiveData
      */
     @Suppress("MemberVisibilityCanBePrivate")
-    val isMutableLiveData by lazy(LazyThreadSafetyMode.NONE) {
+    val isMutableLiveData by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().mutableLiveDataType?.isAssignableFrom(erasure()) ?: false
     }
 
     /**
-     * @return the name of the simple getter method when this is an ObservableField or LiveData or
-     * `null` for any other type
+     * @return whether or not this is a kotlinx.coroutines StateFlow
+     */
+    val isStateFlow by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        ModelAnalyzer.getInstance().stateFlowType?.isAssignableFrom(erasure()) ?: false
+    }
+
+    /**
+     * @return whether or not this is a kotlinx.coroutines MutableStateFlow
+     */
+    @Suppress("MemberVisibilityCanBePrivate")
+    val isMutableStateFlow by lazy(LazyThreadSafetyMode.PUBLICATION) {
+        ModelAnalyzer.getInstance().mutableStateFlowType?.isAssignableFrom(erasure()) ?: false
+    }
+
+    /**
+     * @return the name of the simple getter method when this is an ObservableField, LiveData or
+     * StateFlow or `null` for any other type
      */
     val observableGetterName: String?
         get() = when {
             isObservableField -> "get"
             isLiveData -> "getValue"
+            isStateFlow -> "getValue"
             else -> null
         }
 
     /**
-     * @return the name of the simple setter method when this is an ObservableField or
-     * MutableLiveData or `null` for any other type.
+     * @return the name of the simple setter method when this is an ObservableField,
+     * MutableLiveData or MutableStateFlow or `null` for any other type.
      */
     val observableSetterName: String?
         get() = when {
             isObservableField -> "set"
             isMutableLiveData -> "setValue"
+            isMutableStateFlow -> "setValue"
             else -> null
         }
 
@@ -239,7 +267,7 @@ abstract class ModelClass {
      * @return A String representation of the class or interface that this represents, not
      * including any type arguments.
      */
-    open val canonicalName: String by lazy(LazyThreadSafetyMode.NONE) {
+    open val canonicalName: String by lazy(LazyThreadSafetyMode.PUBLICATION) {
         erasure().toJavaCode()
     }
 
@@ -247,7 +275,7 @@ abstract class ModelClass {
      * @return The class or interface name of this type or the primitive type if it isn't a
      * reference type.
      */
-    val simpleName: String by lazy(LazyThreadSafetyMode.NONE) {
+    val simpleName: String by lazy(LazyThreadSafetyMode.PUBLICATION) {
         canonicalName.substringAfterLast('.')
     }
 
@@ -258,7 +286,7 @@ abstract class ModelClass {
      * @return The SDK_INT where this method was added. If it is not a framework method, should
      * return 1.
      */
-    open val minApi: Int by lazy(LazyThreadSafetyMode.NONE) {
+    open val minApi: Int by lazy(LazyThreadSafetyMode.PUBLICATION) {
         SdkUtil.get().getMinApi(this)
     }
 
@@ -271,7 +299,7 @@ abstract class ModelClass {
     /**
      * Returns a list of all abstract methods in the type.
      */
-    val abstractMethods: List<ModelMethod> by lazy(LazyThreadSafetyMode.NONE) {
+    val abstractMethods: List<ModelMethod> by lazy(LazyThreadSafetyMode.PUBLICATION) {
         allMethods.filter {
             it.isAbstract
         }
@@ -307,7 +335,7 @@ abstract class ModelClass {
     open val typeName: TypeName
         get() = toJavaCode().toTypeName(false)
 
-    val isKotlinUnit by lazy(LazyThreadSafetyMode.NONE) {
+    val isKotlinUnit by lazy(LazyThreadSafetyMode.PUBLICATION) {
         "kotlin.Unit" == typeName.toString()
     }
 
@@ -332,7 +360,7 @@ abstract class ModelClass {
     /**
      * @return whether or not this ModelClass type extends ViewStub.
      */
-    val extendsViewStub by lazy(LazyThreadSafetyMode.NONE) {
+    val extendsViewStub by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ModelAnalyzer.getInstance().viewStubType!!.isAssignableFrom(this)
     }
 
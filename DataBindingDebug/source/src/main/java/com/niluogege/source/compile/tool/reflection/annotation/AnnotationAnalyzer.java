@@ -15,6 +15,7 @@
  */
 package android.databinding.tool.reflection.annotation;
 
+import android.databinding.tool.DataBinder;
 import android.databinding.tool.LibTypes;
 import android.databinding.tool.reflection.ImportBag;
 import android.databinding.tool.reflection.ModelAnalyzer;
@@ -30,6 +31,10 @@ import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -51,9 +56,50 @@ public class AnnotationAnalyzer extends ModelAnalyzer {
 
     public final ProcessingEnvironment mProcessingEnv;
 
+    private final Types mTypeUtils;
+
+    private final Elements mElementUtils;
+
     public AnnotationAnalyzer(ProcessingEnvironment processingEnvironment, LibTypes libTypes) {
+        this(processingEnvironment, libTypes, DataBinder.getParallelism());
+    }
+
+    /**
+     * @param parallelism The number of threads that will use the analyzer at the same time.
+     */
+    public AnnotationAnalyzer(ProcessingEnvironment processingEnvironment, LibTypes libTypes,
+            int parallelism) {
         super(libTypes);
         mProcessingEnv = processingEnvironment;
+        if (parallelism > 1) {
+            // javac's Types and Elements aren't thread safe, so binders sealed and written in
+            // parallel share one lock for them.
+            final Object lock = new Object();
+            mTypeUtils = synchronizedProxy(Types.class, processingEnvironment.getTypeUtils(),
+                    lock);
+            mElementUtils = synchronizedProxy(Elements.class,
+                    processingEnvironment.getElementUtils(), lock);
+        } else {
+            mTypeUtils = processingEnvironment.getTypeUtils();
+            mElementUtils = processingEnvironment.getElementUtils();
+        }
+    }
+
+    private static <T> T synchronizedProxy(Class<T> type, final T delegate, final Object lock) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        synchronized (lock) {
+                            try {
+                                return method.invoke(delegate, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        }
+                    }
+                }));
     }
 
     public static AnnotationAnalyzer get() {
@@ -207,11 +253,11 @@ public class AnnotationAnalyzer extends ModelAnalyzer {
     }
 
     public Types getTypeUtils() {
-        return mProcessingEnv.getTypeUtils();
+        return mTypeUtils;
     }
 
     public Elements getElementUtils() {
-        return mProcessingEnv.getElementUtils();
+        return mElementUtils;
     }
 
     public ProcessingEnvironment getProcessingEnv() {
@@ -37,10 +37,10 @@ class AnnotationClass(
 ) : ModelClass() {
 
     private val typeUtils: Types
-        get() = AnnotationAnalyzer.get().mProcessingEnv.typeUtils
+        get() = AnnotationAnalyzer.get().typeUtils
 
     private val elementUtils: Elements
-        get() = AnnotationAnalyzer.get().mProcessingEnv.elementUtils
+        get() = AnnotationAnalyzer.get().elementUtils
 
     override fun toJavaCode(): String {
         return if (isIncomplete) {
@@ -50,7 +50,7 @@ class AnnotationClass(
         }
     }
 
-    override val componentType by lazy(LazyThreadSafetyMode.NONE) {
+    override val componentType by lazy(LazyThreadSafetyMode.PUBLICATION) {
         computeComponentType() as ModelClass?
     }
 
@@ -157,12 +157,12 @@ class AnnotationClass(
 
     override val isVoid = typeMirror.kind == TypeKind.VOID
 
-    override val isInterface by lazy(LazyThreadSafetyMode.NONE) {
+    override val isInterface by lazy(LazyThreadSafetyMode.PUBLICATION) {
         typeMirror.kind == TypeKind.DECLARED &&
                 (typeMirror as DeclaredType).asElement().kind == ElementKind.INTERFACE
     }
 
-    override val isGeneric by lazy(LazyThreadSafetyMode.NONE) {
+    override val isGeneric by lazy(LazyThreadSafetyMode.PUBLICATION) {
         typeMirror.kind == TypeKind.DECLARED &&
             (typeMirror as DeclaredType)
                     .typeArguments
@@ -188,11 +188,11 @@ class AnnotationClass(
         return null
     }
 
-    override val minApi by lazy(LazyThreadSafetyMode.NONE) {
+    override val minApi by lazy(LazyThreadSafetyMode.PUBLICATION) {
         extractTargetApi() ?: super.minApi
     }
 
-    override val typeArguments by lazy(LazyThreadSafetyMode.NONE) {
+    override val typeArguments by lazy(LazyThreadSafetyMode.PUBLICATION) {
         if (typeMirror.kind == TypeKind.DECLARED) {
             (typeMirror as? DeclaredType)?.typeArguments?.map {
                 AnnotationClass(it)
@@ -208,7 +208,7 @@ class AnnotationClass(
         }
     }
 
-    private val computedUnbox by lazy(LazyThreadSafetyMode.NONE) {
+    private val computedUnbox by lazy(LazyThreadSafetyMode.PUBLICATION) {
         if (!isNullable) {
             this
         } else {
@@ -223,7 +223,7 @@ class AnnotationClass(
 
     override fun unbox() = computedUnbox
 
-    private val computedBox by lazy(LazyThreadSafetyMode.NONE) {
+    private val computedBox by lazy(LazyThreadSafetyMode.PUBLICATION) {
         if (!isPrimitive) {
             this
         } else {
@@ -248,7 +248,7 @@ class AnnotationClass(
         return typeUtils.isAssignable(thatAnnotationClass.typeMirror, this.typeMirror)
     }
 
-    override val allMethods by lazy(LazyThreadSafetyMode.NONE) {
+    override val allMethods by lazy(LazyThreadSafetyMode.PUBLICATION) {
         if (typeMirror.kind == TypeKind.DECLARED) {
             val declaredType = typeMirror as DeclaredType
             val elementUtils = elementUtils
@@ -262,7 +262,7 @@ class AnnotationClass(
         }
     }
 
-    override val superclass by lazy(LazyThreadSafetyMode.NONE) {
+    override val superclass by lazy(LazyThreadSafetyMode.PUBLICATION) {
         val superClass = if (typeMirror.kind == TypeKind.DECLARED) {
             ((typeMirror as DeclaredType).asElement() as? TypeElement)?.superclass
         } else {
@@ -275,14 +275,14 @@ class AnnotationClass(
         }
     }
 
-    private val computedCanonicalName by lazy(LazyThreadSafetyMode.NONE) {
+    private val computedCanonicalName by lazy(LazyThreadSafetyMode.PUBLICATION) {
         // see b/144300600 for the fallback to typeMirror itself
         AnnotationTypeUtil.getInstance().toJava(typeUtils.erasure(typeMirror) ?: typeMirror)
     }
 
     override val canonicalName: String = computedCanonicalName
 
-    private val computedErasure by lazy(LazyThreadSafetyMode.NONE) {
+    private val computedErasure by lazy(LazyThreadSafetyMode.PUBLICATION) {
         val erasure = typeUtils.erasure(typeMirror)
         if (erasure === typeMirror) {
             this
@@ -293,14 +293,14 @@ class AnnotationClass(
 
     override fun erasure(): ModelClass = computedErasure
 
-    private val computedJniDescription by lazy(LazyThreadSafetyMode.NONE) {
+    private val computedJniDescription by lazy(LazyThreadSafetyMode.PUBLICATION) {
         TypeUtil.getInstance().getDescription(this)
     }
 
     override val jniDescription: String
         get() = computedJniDescription
 
-    override val allFields by lazy(LazyThreadSafetyMode.NONE) {
+    override val allFields by lazy(LazyThreadSafetyMode.PUBLICATION) {
         if (typeMirror.kind == TypeKind.DECLARED) {
             val declaredType = typeMirror as DeclaredType
             val elementUtils = elementUtils
@@ -314,13 +314,13 @@ class AnnotationClass(
         }
     }
 
-    private val javaCodeRepresentation by lazy(LazyThreadSafetyMode.NONE) {
+    private val javaCodeRepresentation by lazy(LazyThreadSafetyMode.PUBLICATION) {
         AnnotationTypeUtil.getInstance().toJava(typeMirror)
     }
 
     override fun toString() = javaCodeRepresentation
 
-    private val computedTypeName by lazy(LazyThreadSafetyMode.NONE) {
+    private val computedTypeName by lazy(LazyThreadSafetyMode.PUBLICATION) {
         ClassName.get(typeMirror)
     }
 
@@ -169,11 +169,11 @@ class AnnotationMethod extends ModelMethod {
     }
 
     private static Types getTypeUtils() {
-        return AnnotationAnalyzer.get().mProcessingEnv.getTypeUtils();
+        return AnnotationAnalyzer.get().getTypeUtils();
     }
 
     private static Elements getElementUtils() {
-        return AnnotationAnalyzer.get().mProcessingEnv.getElementUtils();
+        return AnnotationAnalyzer.get().getElementUtils();
     }
 
     @Override
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.databinding.tool.store
+
+import android.databinding.tool.store.SetterStore.AccessorKey
+import android.databinding.tool.store.SetterStore.InverseDescription
+import android.databinding.tool.store.SetterStore.InverseMethodDescription
+import android.databinding.tool.store.SetterStore.MethodDescription
+import android.databinding.tool.store.SetterStore.MultiValueAdapterKey
+import android.databinding.tool.util.BinaryIntermediate
+import android.databinding.tool.util.BinaryIntermediateReader
+import android.databinding.tool.util.BinaryIntermediateWriter
+import java.io.DataOutputStream
+import java.io.IOException
+import java.nio.ByteBuffer
+
+/**
+ * A [BindingAdapterStore] of a dependency, read from a memory-mapped binary intermediate.
+ *
+ * Binding adapters and inverse binding adapters are indexed by attribute and only decoded when
+ * their attribute is looked up. The events of inverse adapters and the non-static adapters are
+ * also listed in separate sections, with their attribute and key, so that the inverse events and
+ * the instance adapters can be collected without decoding every attribute. Everything else is
+ * small and is decoded when the store is merged.
+ */
+internal class BinaryBindingAdapterStore(private val reader: BinaryIntermediateReader) {
+    init {
+        if (reader.kind != BinaryIntermediate.KIND_SETTER_STORE) {
+            throw IOException("${reader.file} is not a binding adapter store")
+        }
+    }
+
+    private val adapterIndex = readIndex(ADAPTER_INDEX)
+    private val inverseAdapterIndex = readIndex(INVERSE_ADAPTER_INDEX)
+
+    val adapterAttributes: Set<String>
+        get() = adapterIndex.keys
+
+    val inverseAdapterAttributes: Set<String>
+        get() = inverseAdapterIndex.keys
+
+    fun forEachAdapter(attribute: String, func: (AccessorKey, MethodDescription) -> Unit) {
+        val section = sectionAt(ADAPTERS, adapterIndex[attribute] ?: return)
+        repeat(section.int) {
+            func(section.readAccessorKey(), section.readMethodDescription())
+        }
+    }
+
+    fun forEachInverseAdapter(attribute: String, func: (AccessorKey, InverseDescription) -> Unit) {
+        val section = sectionAt(INVERSE_ADAPTERS, inverseAdapterIndex[attribute] ?: return)
+        repeat(section.int) {
+            func(section.readAccessorKey(), section.readInverseDescription())
+        }
+    }
+
+    /**
+     * Runs the given function with the attribute, key, declaring class and event of every inverse
+     * adapter.
+     *
+     * @return false if the store was written without the list of events.
+     */
+    fun forEachInverseAdapterEvent(func: (String, AccessorKey, String, String) -> Unit): Boolean {
+        val section = reader.section(INVERSE_ADAPTER_EVENTS) ?: return false
+        repeat(section.int) {
+            func(section.readString(), section.readAccessorKey(), section.readString(),
+                    section.readString())
+        }
+        return true
+    }
+
+    /**
+     * Runs the given function with whether it is an inverse adapter, the attribute, the key and
+     * the declaring class of every non-static binding adapter and inverse binding adapter.
+     *
+     * @return false if the store was written without the list of instance adapters.
+     */
+    fun forEachInstanceAdapter(func: (Boolean, String, AccessorKey, String) -> Unit): Boolean {
+        val section = reader.section(INSTANCE_ADAPTERS) ?: return false
+        repeat(section.int) {
+            val inverse = section.get() != 0.toByte()
+            func(inverse, section.readString(), section.readAccessorKey(), section.readString())
+        }
+        return true
+    }
+
+    fun forEachRenamedMethod(func: (String, String, MethodDescription) -> Unit) {
+        readNested(RENAMED_METHODS) { attribute, section ->
+            func(attribute, section.readString(), section.readMethodDescription())
+        }
+    }
+
+    fun forEachConversionMethod(func: (String, String, MethodDescription) -> Unit) {
+        readNested(CONVERSION_METHODS) { fromType, section ->
+            func(fromType, section.readString(), section.readMethodDescription())
+        }
+    }
+
+    fun forEachInverseMethod(func: (String, String, InverseDescription) -> Unit) {
+        readNested(INVERSE_METHODS) { attribute, section ->
+            func(attribute, section.readString(), section.readInverseDescription())
+        }
+    }
+
+    fun forEachUntaggableType(func: (String, String) -> Unit) {
+        val section = reader.section(UNTAGGABLE_TYPES) ?: return
+        repeat(section.int) {
+            func(section.readString(), section.readString())
+        }
+    }
+
+    fun forEachMultiValueAdapter(func: (MultiValueAdapterKey, MethodDescription) -> Unit) {
+        val section = reader.section(MULTI_VALUE_ADAPTERS) ?: return
+        repeat(section.int) {
+            val viewType = section.readString()
+            val attributes = section.readStringArray()
+            val parameterTypes = section.readStringArray()
+            val requireAll = section.get() != 0.toByte()
+            func(MultiValueAdapterKey(viewType, attributes, parameterTypes, requireAll),
+                    section.readMethodDescription())
+        }
+    }
+
+    fun forEachTwoWayMethod(func: (InverseMethodDescription, String) -> Unit) {
+        val section = reader.section(TWO_WAY_METHODS) ?: return
+        repeat(section.int) {
+            val isStatic = section.get() != 0.toByte()
+            val returnType = section.readString()
+            val method = section.readString()
+            val parameterTypes = section.readStringArray()
+            val type = section.readString()
+            func(InverseMethodDescription(isStatic, returnType, method, parameterTypes, type),
+                    section.readString())
+        }
+    }
+
+    private fun readIndex(name: String): Map<String, Int> {
+        val section = reader.section(name) ?: return emptyMap()
+        val size = section.int
+        val index = HashMap<String, Int>(size * 2)
+        repeat(size) {
+            index[section.readString()] = section.int
+        }
+        return index
+    }
+
+    private fun sectionAt(name: String, offset: Int): ByteBuffer {
+        val section = reader.section(name)
+                ?: throw IOException("${reader.file} has no $name section")
+        section.position(offset)
+        return section
+    }
+
+    private inline fun readNested(name: String, func: (String, ByteBuffer) -> Unit) {
+        val section = reader.section(name) ?: return
+        repeat(section.int) {
+            val key = section.readString()
+            repeat(section.int) {
+                func(key, section)
+            }
+        }
+    }
+
+    private fun ByteBuffer.readString() = reader.string(int)!!
+
+    private fun ByteBuffer.readStringArray() = Array(int) { readString() }
+
+    private fun ByteBuffer.readAccessorKey() = AccessorKey(readString(), readString())
+
+    private fun ByteBuffer.readMethodDescription(): MethodDescription {
+        val type = readString()
+        val method = readString()
+        val flags = get().toInt()
+        return MethodDescription(type, method, flags and FLAG_REQUIRES_OLD_VALUE != 0,
+                flags and FLAG_STATIC != 0, reader.string(int))
+    }
+
+    private fun ByteBuffer.readInverseDescription(): InverseDescription {
+        val type = readString()
+        val method = readString()
+        val flags = get().toInt()
+        return InverseDescription(type, method, flags and FLAG_REQUIRES_OLD_VALUE != 0,
+                flags and FLAG_STATIC != 0, reader.string(int), reader.string(int))
+    }
+
+    companion object {
+        private const val ADAPTERS = "adapterMethods"
+        private const val ADAPTER_INDEX = "adapterMethodIndex"
+        private const val INVERSE_ADAPTERS = "inverseAdapters"
+        private const val INVERSE_ADAPTER_INDEX = "inverseAdapterIndex"
+        private const val INVERSE_ADAPTER_EVENTS = "inverseAdapterEventIndex"
+        private const val INSTANCE_ADAPTERS = "instanceAdapterIndex"
+        private const val RENAMED_METHODS = "renamedMethods"
+        private const val CONVERSION_METHODS = "conversionMethods"
+        private const val UNTAGGABLE_TYPES = "untaggableTypes"
+        private const val MULTI_VALUE_ADAPTERS = "multiValueAdapters"
+        private const val INVERSE_METHODS = "inverseMethods"
+        private const val TWO_WAY_METHODS = "twoWayMethods"
+
+        private const val FLAG_REQUIRES_OLD_VALUE = 1
+        private const val FLAG_STATIC = 2
+
+        fun write(
+                adapterMethods: Map<String, Map<AccessorKey, MethodDescription>>,
+                renamedMethods: Map<String, Map<String, MethodDescription>>,
+                conversionMethods: Map<String, Map<String, MethodDescription>>,
+                untaggableTypes: Map<String, String>,
+                multiValueAdapters: Map<MultiValueAdapterKey, MethodDescription>,
+                inverseAdapters: Map<String, Map<AccessorKey, InverseDescription>>,
+                inverseMethods: Map<String, Map<String, InverseDescription>>,
+                twoWayMethods: Map<InverseMethodDescription, String>
+        ): BinaryIntermediateWriter {
+            val writer = BinaryIntermediateWriter(BinaryIntermediate.KIND_SETTER_STORE)
+            writer.writeIndexed(ADAPTERS, ADAPTER_INDEX, adapterMethods) { out, key, desc ->
+                writeAccessorKey(out, key)
+                writeMethodDescription(out, desc)
+            }
+            writer.writeIndexed(INVERSE_ADAPTERS, INVERSE_ADAPTER_INDEX,
+                    inverseAdapters) { out, key, desc ->
+                writeAccessorKey(out, key)
+                writeInverseDescription(out, desc)
+            }
+            writer.section(INVERSE_ADAPTER_EVENTS, sectionBody { out ->
+                out.writeInt(inverseAdapters.values.sumBy { it.size })
+                inverseAdapters.forEach { (attribute, adapters) ->
+                    adapters.forEach { (key, desc) ->
+                        out.writeInt(writer.string(attribute))
+                        writer.writeAccessorKey(out, key)
+                        out.writeInt(writer.string(desc.type))
+                        out.writeInt(writer.string(desc.event))
+                    }
+                }
+            })
+            writer.section(INSTANCE_ADAPTERS, sectionBody { out ->
+                val count = adapterMethods.values.sumBy { adapters ->
+                    adapters.values.count { !it.isStatic }
+                } + inverseAdapters.values.sumBy { adapters ->
+                    adapters.values.count { !it.isStatic }
+                }
+                out.writeInt(count)
+                writer.writeInstanceAdapters(out, false, adapterMethods)
+                writer.writeInstanceAdapters(out, true, inverseAdapters)
+            })
+            writer.writeNested(RENAMED_METHODS, renamedMethods) { out, declaringClass, desc ->
+                out.writeInt(writer.string(declaringClass))
+                writeMethodDescription(out, desc)
+            }
+            writer.writeNested(CONVERSION_METHODS, conversionMethods) { out, toType, desc ->
+                out.writeInt(writer.string(toType))
+                writeMethodDescription(out, desc)
+            }
+            writer.writeNested(INVERSE_METHODS, inverseMethods) { out, declaringClass, desc ->
+                out.writeInt(writer.string(declaringClass))
+                writeInverseDescription(out, desc)
+            }
+            writer.section(UNTAGGABLE_TYPES, sectionBody { out ->
+                out.writeInt(untaggableTypes.size)
+                untaggableTypes.forEach { (type, declaredType) ->
+                    out.writeInt(writer.string(type))
+                    out.writeInt(writer.string(declaredType))
+                }
+            })
+            writer.section(MULTI_VALUE_ADAPTERS, sectionBody { out ->
+                out.writeInt(multiValueAdapters.size)
+                multiValueAdapters.forEach { (key, desc) ->
+                    out.writeInt(writer.string(key.viewType))
+                    writer.writeStringArray(out, key.attributes)
+                    writer.writeStringArray(out, key.parameterTypes)
+                    out.writeBoolean(key.requireAll)
+                    writer.writeMethodDescription(out, desc)
+                }
+            })
+            writer.section(TWO_WAY_METHODS, sectionBody { out ->
+                out.writeInt(twoWayMethods.size)
+                twoWayMethods.forEach { (desc, inverse) ->
+                    out.writeBoolean(desc.isStatic)
+                    out.writeInt(writer.string(desc.returnType))
+                    out.writeInt(writer.string(desc.method))
+                    writer.writeStringArray(out, desc.parameterTypes)
+                    out.writeInt(writer.string(desc.type))
+                    out.writeInt(writer.string(inverse))
+                }
+            })
+            return writer
+        }
+
+        private inline fun sectionBody(crossinline body: (DataOutputStream) -> Unit) =
+                object : BinaryIntermediateWriter.SectionBody {
+                    override fun write(out: DataOutputStream) {
+                        body(out)
+                    }
+                }
+
+        /**
+         * Writes a map of maps as a data section of (size, entries) blocks and an index section
+         * with the offset of the block of each key.
+         */
+        private inline fun <K, V> BinaryIntermediateWriter.writeIndexed(
+                name: String,
+                indexName: String,
+                map: Map<String, Map<K, V>>,
+                crossinline writeEntry: BinaryIntermediateWriter.(DataOutputStream, K, V) -> Unit
+        ) {
+            val offsets = LinkedHashMap<String, Int>()
+            section(name, sectionBody { out ->
+                map.forEach { (key, entries) ->
+                    offsets[key] = out.size()
+                    out.writeInt(entries.size)
+                    entries.forEach { (entryKey, value) ->
+                        this@writeIndexed.writeEntry(out, entryKey, value)
+                    }
+                }
+            })
+            section(indexName, sectionBody { out ->
+                out.writeInt(offsets.size)
+                offsets.forEach { (key, offset) ->
+                    out.writeInt(string(key))
+                    out.writeInt(offset)
+                }
+            })
+        }
+
+        private inline fun <K, V> BinaryIntermediateWriter.writeNested(
+                name: String,
+                map: Map<String, Map<K, V>>,
+                crossinline writeEntry: BinaryIntermediateWriter.(DataOutputStream, K, V) -> Unit
+        ) {
+            section(name, sectionBody { out ->
+                out.writeInt(map.size)
+                map.forEach { (key, entries) ->
+                    out.writeInt(string(key))
+                    out.writeInt(entries.size)
+                    entries.forEach { (entryKey, value) ->
+                        this@writeNested.writeEntry(out, entryKey, value)
+                    }
+                }
+            })
+        }
+
+        private fun BinaryIntermediateWriter.writeInstanceAdapters(
+                out: DataOutputStream,
+                inverse: Boolean,
+                adapters: Map<String, Map<AccessorKey, MethodDescription>>
+        ) {
+            adapters.forEach { (attribute, entries) ->
+                entries.forEach { (key, desc) ->
+                    if (!desc.isStatic) {
+                        out.writeBoolean(inverse)
+                        out.writeInt(string(attribute))
+                        writeAccessorKey(out, key)
+                        out.writeInt(string(desc.type))
+                    }
+                }
+            }
+        }
+
+        private fun BinaryIntermediateWriter.writeStringArray(
+                out: DataOutputStream,
+                values: Array<String>
+        ) {
+            out.writeInt(values.size)
+            values.forEach {
+                out.writeInt(string(it))
+            }
+        }
+
+        private fun BinaryIntermediateWriter.writeAccessorKey(
+                out: DataOutputStream,
+                key: AccessorKey
+        ) {
+            out.writeInt(string(key.viewType))
+            out.writeInt(string(key.valueType))
+        }
+
+        private fun BinaryIntermediateWriter.writeMethodDescription(
+                out: DataOutputStream,
+                desc: MethodDescription
+        ) {
+            out.writeInt(string(desc.type))
+            out.writeInt(string(desc.method))
+            var flags = 0
+            if (desc.requiresOldValue) {
+                flags = flags or FLAG_REQUIRES_OLD_VALUE
+            }
+            if (desc.isStatic) {
+                flags = flags or FLAG_STATIC
+            }
+            out.writeByte(flags)
+            out.writeInt(string(desc.componentClass))
+        }
+
+        private fun BinaryIntermediateWriter.writeInverseDescription(
+                out: DataOutputStream,
+                desc: InverseDescription
+        ) {
+            writeMethodDescription(out, desc)
+            out.writeInt(string(desc.event))
+        }
+    }
+}
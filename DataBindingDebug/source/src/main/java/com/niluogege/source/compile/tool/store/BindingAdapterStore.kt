@@ -22,6 +22,7 @@ import android.databinding.tool.store.SetterStore.InverseMethodDescription
 import android.databinding.tool.store.SetterStore.MethodDescription
 import android.databinding.tool.store.SetterStore.MultiAttributeSetter
 import android.databinding.tool.store.SetterStore.MultiValueAdapterKey
+import android.databinding.tool.util.BinaryIntermediateWriter
 import android.databinding.tool.util.L
 import com.google.gson.annotations.SerializedName
 import java.io.IOException
@@ -80,9 +81,27 @@ internal class BindingAdapterStore : Intermediate {
     private var currentModuleStore: BindingAdapterStore? = null
     private val useAndroidX: Boolean
 
+    /**
+     * Binary stores of dependencies. Their binding adapters and inverse binding adapters are
+     * merged one attribute at a time, when the attribute is first used.
+     */
+    @field:Transient
+    private var binaryStores: List<BinaryBindingAdapterStore> = emptyList()
+    @field:Transient
+    private var mergedAdapterAttributes: MutableSet<String> = HashSet()
+    @field:Transient
+    private var mergedInverseAdapterAttributes: MutableSet<String> = HashSet()
+    /**
+     * Classes passed to [clear]. Their binding adapters are dropped from attributes that are
+     * merged later.
+     */
+    @field:Transient
+    private var clearedClasses: MutableSet<String> = HashSet()
+
     constructor(
             stores: MutableList<Intermediate>,
             previousStores: List<BindingAdapterStore>,
+            binaryStores: List<BinaryBindingAdapterStore>,
             useAndroidX: Boolean
     ) : this(useAndroidX) {
         previousStores.forEach {
@@ -91,6 +110,10 @@ internal class BindingAdapterStore : Intermediate {
         stores.forEach {
             merge(it.upgrade() as BindingAdapterStore)
         }
+        binaryStores.forEach {
+            merge(it)
+        }
+        this.binaryStores = binaryStores
     }
 
 
@@ -166,12 +189,164 @@ internal class BindingAdapterStore : Intermediate {
         twoWayMethods.putAll(other.twoWayMethods.filterOutAndroidSupportFromMapByKeys())
     }
 
+    private fun merge(other: BinaryBindingAdapterStore) {
+        other.forEachRenamedMethod { attribute, declaringClass, desc ->
+            if (!isFilteredOut(desc)) {
+                renamedMethods.getOrPut(attribute) { TreeMap() }.putIfAbsent(declaringClass, desc)
+            }
+        }
+        other.forEachConversionMethod { fromType, toType, desc ->
+            if (!isFilteredOut(desc)) {
+                conversionMethods.getOrPut(fromType) { TreeMap() }.putIfAbsent(toType, desc)
+            }
+        }
+        other.forEachMultiValueAdapter { key, desc ->
+            if (!isFilteredOut(desc)) {
+                multiValueAdapters.put(key, desc)
+            }
+        }
+        other.forEachUntaggableType { type, declaredType ->
+            if (!useAndroidX ||
+                    !(type.androidSupportArtifact() || declaredType.androidSupportArtifact())) {
+                untaggableTypes.put(type, declaredType)
+            }
+        }
+        other.forEachInverseMethod { attribute, declaringClass, desc ->
+            if (!isFilteredOut(desc)) {
+                inverseMethods.getOrPut(attribute) { TreeMap() }.putIfAbsent(declaringClass, desc)
+            }
+        }
+        other.forEachTwoWayMethod { desc, inverse ->
+            if (!useAndroidX || !desc.type.androidSupportArtifact()) {
+                twoWayMethods.put(desc, inverse)
+            }
+        }
+    }
+
+    /**
+     * The number of attributes whose binding adapters or inverse binding adapters were decoded
+     * from the binary stores.
+     */
+    internal val mergedAttributeCount: Int
+        @Synchronized get() = mergedAdapterAttributes.size + mergedInverseAdapterAttributes.size
+
+    private fun isFilteredOut(desc: MethodDescription) =
+            useAndroidX && desc.type.androidSupportArtifact()
+
+    /**
+     * Returns the binding adapters of the attribute after merging in those of the binary stores.
+     * Entries that are already in the map were added by earlier stores or by this module, so
+     * they win over the binary ones. Binary entries of classes passed to [clear] are dropped.
+     */
+    private fun adapterMethodsOf(attribute: String): TreeMap<AccessorKey, MethodDescription>? {
+        if (binaryStores.isNotEmpty() && mergedAdapterAttributes.add(attribute)) {
+            val merged = TreeMap<AccessorKey, MethodDescription>()
+            binaryStores.forEach {
+                it.forEachAdapter(attribute) { key, desc ->
+                    if (!isFilteredOut(desc)) {
+                        merged.putIfAbsent(key, desc)
+                    }
+                }
+            }
+            if (clearedClasses.isNotEmpty()) {
+                merged.values.removeIf { clearedClasses.contains(it.type) }
+            }
+            if (merged.isNotEmpty()) {
+                adapterMethods[attribute]?.let { merged.putAll(it) }
+                adapterMethods[attribute] = merged
+            }
+        }
+        return adapterMethods[attribute]
+    }
+
+    private fun inverseAdaptersOf(attribute: String): TreeMap<AccessorKey, InverseDescription>? {
+        if (binaryStores.isNotEmpty() && mergedInverseAdapterAttributes.add(attribute)) {
+            val merged = TreeMap<AccessorKey, InverseDescription>()
+            binaryStores.forEach {
+                it.forEachInverseAdapter(attribute) { key, desc ->
+                    if (!isFilteredOut(desc)) {
+                        merged.putIfAbsent(key, desc)
+                    }
+                }
+            }
+            if (merged.isNotEmpty()) {
+                inverseAdapters[attribute]?.let { merged.putAll(it) }
+                inverseAdapters[attribute] = merged
+            }
+        }
+        return inverseAdapters[attribute]
+    }
+
+    /**
+     * Merges the binding adapters and inverse binding adapters of all attributes of the binary
+     * stores. Only needed to write everything out.
+     */
+    private fun mergeAllAdapters() {
+        binaryStores.forEach { binaryStore ->
+            binaryStore.adapterAttributes.forEach { adapterMethodsOf(it) }
+            binaryStore.inverseAdapterAttributes.forEach { inverseAdaptersOf(it) }
+        }
+    }
+
+    /**
+     * Returns true if an entry listed by the binary store at `storeIndex` is kept when its
+     * attribute is merged, which can mostly be decided without decoding the attribute. Entries
+     * of attributes that are merged already are in the maps and are not reported here. When an
+     * earlier binary store has adapters for the same attribute, the attribute is merged instead
+     * and false is returned, so callers must go through the maps afterwards.
+     */
+    private fun <D : MethodDescription> keepsBinaryEntry(
+            storeIndex: Int,
+            attribute: String,
+            key: AccessorKey,
+            type: String,
+            mergedAttributes: Set<String>,
+            adapters: Map<String, Map<AccessorKey, D>>,
+            dropsClearedClasses: Boolean,
+            attributesOf: (BinaryBindingAdapterStore) -> Set<String>,
+            mergeAttribute: (String) -> Unit
+    ): Boolean {
+        if (mergedAttributes.contains(attribute) ||
+                (useAndroidX && type.androidSupportArtifact())) {
+            return false
+        }
+        if (adapters[attribute]?.containsKey(key) == true) {
+            return false // shadowed by this module or by a non-binary store
+        }
+        for (i in 0 until storeIndex) {
+            if (attributesOf(binaryStores[i]).contains(attribute)) {
+                mergeAttribute(attribute)
+                return false
+            }
+        }
+        return !dropsClearedClasses || !clearedClasses.contains(type)
+    }
+
+    private fun keepsBinaryInverseAdapter(
+            storeIndex: Int,
+            attribute: String,
+            key: AccessorKey,
+            type: String
+    ) = keepsBinaryEntry(storeIndex, attribute, key, type, mergedInverseAdapterAttributes,
+            inverseAdapters, false, { it.inverseAdapterAttributes }, { inverseAdaptersOf(it) })
+
     /**
      * Returns all event attributes from inverse descriptions (from inverse adapters and inverse
      * methods)
      */
+    @Synchronized
     fun collectInverseEvents(): MutableSet<String> {
         val result = mutableSetOf<String>()
+        binaryStores.forEachIndexed { index, binaryStore ->
+            val listed = binaryStore.forEachInverseAdapterEvent { attribute, key, type, event ->
+                if (keepsBinaryInverseAdapter(index, attribute, key, type)) {
+                    result.add(event)
+                }
+            }
+            if (!listed) {
+                binaryStore.inverseAdapterAttributes.forEach { inverseAdaptersOf(it) }
+            }
+        }
         inverseAdapters
                 .values
                 .forEach {
@@ -232,12 +407,14 @@ internal class BindingAdapterStore : Intermediate {
         currentModuleStore?.addInverseMethod(from, to)
     }
 
+    @Synchronized
     fun addBindingAdapter(
             attribute: String,
             key: AccessorKey,
             desc: MethodDescription) {
-        adapterMethods
-                .getOrPut(attribute) { TreeMap() }
+        (adapterMethodsOf(attribute) ?: TreeMap<AccessorKey, MethodDescription>().also {
+            adapterMethods[attribute] = it
+        })
                 .also {
                     it[key]?.let { existing ->
                         if (existing != desc) {
@@ -250,12 +427,14 @@ internal class BindingAdapterStore : Intermediate {
         currentModuleStore?.addBindingAdapter(attribute, key, desc)
     }
 
+    @Synchronized
     fun addInverseBindingAdapter(
             attribute: String,
             key: AccessorKey,
             desc: InverseDescription) {
-        inverseAdapters
-                .getOrPut(attribute) { TreeMap() }
+        (inverseAdaptersOf(attribute) ?: TreeMap<AccessorKey, InverseDescription>().also {
+            inverseAdapters[attribute] = it
+        })
                 .also {
                     it[key]?.let { existing ->
                         if (existing != desc) {
@@ -302,7 +481,17 @@ internal class BindingAdapterStore : Intermediate {
 
     fun getCurrentModuleStore() = currentModuleStore
 
+    @Synchronized
     fun clear(classes: Set<String>) {
+        if (binaryStores.isNotEmpty()) {
+            // An entry removed from an attribute that isn't merged yet may shadow a binary entry,
+            // which must not show up once the attribute is merged. Merge those attributes now,
+            // the others drop the classes when they are merged.
+            adapterMethods.filterValues { adapters ->
+                adapters.values.any { classes.contains(it.type) }
+            }.keys.forEach { adapterMethodsOf(it) }
+            clearedClasses.addAll(classes)
+        }
         val removedAccessorKeys = ArrayList<AccessorKey>()
         for (adapters in adapterMethods.values) {
             for (key in adapters.keys) {
@@ -414,11 +603,12 @@ internal class BindingAdapterStore : Intermediate {
     /**
      * Runs the given function on all adapter methods that has the given attribute.
      */
+    @Synchronized
     fun forEachAdapterMethod(
             attribute: String,
             func: (AccessorKey, MethodDescription) -> Unit?
     ) {
-        adapterMethods[attribute]?.forEach {
+        adapterMethodsOf(attribute)?.forEach {
             func(it.key, it.value)
         }
     }
@@ -426,11 +616,12 @@ internal class BindingAdapterStore : Intermediate {
     /**
      * Runs the given function on all inverse adapters that has the given attribute.
      */
+    @Synchronized
     fun forEachInverseAdapterMethod(
             attribute: String,
             func: (AccessorKey, InverseDescription) -> Unit?
     ) {
-        inverseAdapters[attribute]?.forEach {
+        inverseAdaptersOf(attribute)?.forEach {
             func(it.key, it.value)
         }
     }
@@ -442,8 +633,27 @@ internal class BindingAdapterStore : Intermediate {
         keys.clear()
     }
 
+    @Synchronized
     fun createInstanceAdapters(): HashMap<String, MutableList<String>> {
         val adapters = HashSet<String>()
+        binaryStores.forEachIndexed { index, binaryStore ->
+            val listed = binaryStore.forEachInstanceAdapter { inverse, attribute, key, type ->
+                val kept = if (inverse) {
+                    keepsBinaryInverseAdapter(index, attribute, key, type)
+                } else {
+                    keepsBinaryEntry(index, attribute, key, type, mergedAdapterAttributes,
+                            adapterMethods, true, { it.adapterAttributes },
+                            { adapterMethodsOf(it) })
+                }
+                if (kept) {
+                    adapters.add(type)
+                }
+            }
+            if (!listed) {
+                binaryStore.adapterAttributes.forEach { adapterMethodsOf(it) }
+                binaryStore.inverseAdapterAttributes.forEach { inverseAdaptersOf(it) }
+            }
+        }
         for (methods in adapterMethods.values) {
             for (method in methods.values) {
                 if (!method.isStatic) {
@@ -481,6 +691,23 @@ internal class BindingAdapterStore : Intermediate {
         return result
     }
 
+    /**
+     * Encodes this store as a binary intermediate.
+     */
+    @Synchronized
+    fun toBinary(): BinaryIntermediateWriter {
+        mergeAllAdapters()
+        return BinaryBindingAdapterStore.write(
+                adapterMethods = adapterMethods,
+                renamedMethods = renamedMethods,
+                conversionMethods = conversionMethods,
+                untaggableTypes = untaggableTypes,
+                multiValueAdapters = multiValueAdapters,
+                inverseAdapters = inverseAdapters,
+                inverseMethods = inverseMethods,
+                twoWayMethods = twoWayMethods)
+    }
+
     @Throws(IOException::class)
     private fun writeObject(@Suppress("UNUSED_PARAMETER") oos: ObjectOutputStream) {
         throw UnsupportedOperationException("use gson to serialize this")
@@ -492,6 +719,17 @@ internal class BindingAdapterStore : Intermediate {
     }
 
     companion object {
+        /**
+         * Encodes a store read from one of the older intermediate formats as a binary
+         * intermediate.
+         */
+        fun toBinary(intermediate: Any): BinaryIntermediateWriter {
+            // gson and java serialization skip our constructors, merge into a store that was
+            // created normally
+            return BindingAdapterStore(mutableListOf(intermediate as Intermediate), emptyList(),
+                    emptyList(), false).toBinary()
+        }
+
         @JvmStatic
         fun simpleName(className: String): String {
             val dotIndex = className.lastIndexOf('.')
@@ -229,6 +229,7 @@ public final class LayoutFileParser {
             }
         });
 
+        final Map<XMLParser.ElementContext, String> viewPaths = computeViewPaths(rootView, isMerge);
         final HashMap<XMLParser.ElementContext, String> nodeTagMap = new HashMap<>();
         L.d("number of binding nodes %d", bindingElements.size());
         int tagNumber = 0;
@@ -283,6 +284,7 @@ public final class LayoutFileParser {
                             new Location(parent));
             nodeTagMap.put(parent, tag);
             bindingTargetBundle.setIncludedLayout(includedLayoutName);
+            bindingTargetBundle.setViewPath(viewPaths.get(parent));
 
             for (XMLParser.AttributeContext attr : XmlEditor.expressionAttributes(parent)) {
                 String value = escapeQuotes(attr.attrValue.getText(), true);
@@ -312,7 +314,45 @@ public final class LayoutFileParser {
         for (XMLParser.ElementContext elm : otherElementsWithIds) {
             final String id = attributeMap(elm).get("android:id");
             final String className = getViewName(elm);
-            bundle.createBindingTarget(id, className, true, null, null, new Location(elm));
+            bundle.createBindingTarget(id, className, true, null, null, new Location(elm))
+                    .setViewPath(viewPaths.get(elm));
+        }
+    }
+
+    /**
+     * Computes the child indices that lead from the layout root to each element that becomes a
+     * View, so that generated code can find bound views without walking the whole hierarchy.
+     * <p>
+     * An include may expand into any number of views, so neither the include nor the siblings
+     * after it get a path. The runtime verifies every path and falls back to the tag walk when
+     * the inflated hierarchy doesn't match, e.g. because a custom view rearranged its children.
+     */
+    private static Map<XMLParser.ElementContext, String> computeViewPaths(
+            XMLParser.ElementContext rootView, boolean isMerge) {
+        final Map<XMLParser.ElementContext, String> paths = new HashMap<>();
+        if (!isMerge) {
+            paths.put(rootView, "");
+        }
+        addChildViewPaths(rootView, "", paths);
+        return paths;
+    }
+
+    private static void addChildViewPaths(XMLParser.ElementContext parent, String parentPath,
+            Map<XMLParser.ElementContext, String> paths) {
+        int index = 0;
+        for (XMLParser.ElementContext child : XmlEditor.elements(parent)) {
+            final String name = child.elmName.getText();
+            if ("requestFocus".equals(name) || "tag".equals(name)) {
+                continue; // these don't create views
+            }
+            if ("include".equals(name) || "merge".equals(name)) {
+                return; // following siblings can't be addressed anymore
+            }
+            final String path = parentPath.isEmpty()
+                    ? String.valueOf(index) : parentPath + ',' + index;
+            paths.put(child, path);
+            addChildViewPaths(child, path, paths);
+            index++;
         }
     }
 
@@ -982,6 +982,9 @@ public class ResourceBundle implements Serializable {
         public String mIncludedLayout;
         @XmlElement(name = "location")
         public Location mLocation;
+        // child indices from the layout root to this view, e.g. "0,2,1"
+        @XmlAttribute(name = "viewPath")
+        public String mViewPath;
         private String mInterfaceType;
         private String mModulePackage;
 
@@ -1009,6 +1012,24 @@ public class ResourceBundle implements Serializable {
             mIncludedLayout = includedLayout;
         }
 
+        /**
+         * Sets the child indices that lead from the layout root to this view, separated by
+         * commas. For merge layouts, the first index selects the root. The root of a non-merge
+         * layout has an empty path.
+         */
+        public void setViewPath(@Nullable String viewPath) {
+            mViewPath = viewPath;
+        }
+
+        /**
+         * @return The child indices from the layout root to this view or null if the position
+         * of the view in the inflated hierarchy cannot be known at compile time.
+         */
+        @Nullable
+        public String getViewPath() {
+            return mViewPath;
+        }
+
         public String getIncludedLayout() {
             return mIncludedLayout;
         }
@@ -21,6 +21,7 @@ import android.databinding.tool.reflection.ModelAnalyzer;
 import android.databinding.tool.reflection.ModelClass;
 import android.databinding.tool.reflection.ModelMethod;
 import android.databinding.tool.reflection.annotation.AnnotationTypeUtil;
+import android.databinding.tool.util.BinaryIntermediateReader;
 import android.databinding.tool.util.GenerationalClassUtil;
 import android.databinding.tool.util.L;
 import android.databinding.tool.util.Preconditions;
@@ -52,15 +53,37 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class SetterStore {
     private static final int ASSIGNABLE_CONVERSION = 1;
     private final BindingAdapterStore mStore;
     private final ModelAnalyzer mClassAnalyzer;
-    private HashMap<String, List<String>> mInstanceAdapters;
+    // Read by the binders that are written in parallel; built under the lock of mStore.
+    private volatile HashMap<String, List<String>> mInstanceAdapters;
     private final Set<String> mInverseEventAttributes;
 
+    // Adapters with resolved types, by attribute. Filled on first lookup, dropped on changes.
+    private final ConcurrentHashMap<String, AttributeAdapters<MethodDescription>>
+            mSetterAdapters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AttributeAdapters<InverseDescription>>
+            mGetterAdapters = new ConcurrentHashMap<>();
+    private volatile List<ResolvedMultiAdapter> mMultiAdapters;
+
+    // Results of getSetterCall, getGetterCall and getMultiAttributeSetterCalls
+    private final ConcurrentHashMap<LookupKey, Object> mSetterCalls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LookupKey, Object> mGetterCalls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LookupKey, List<MultiAttributeSetter>> mMultiAttributeCalls =
+            new ConcurrentHashMap<>();
+    private static final Object NO_CALL = new Object();
+
+    // Conversion methods with resolved classes and the conversions found between two classes
+    private volatile List<ResolvedConversion> mConversionGraph;
+    private final ConcurrentHashMap<LookupKey, Object> mConversionCalls = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<LookupKey, Integer> mConversionPriorities =
+            new ConcurrentHashMap<>();
+
     private Comparator<MultiAttributeSetter> COMPARE_MULTI_ATTRIBUTE_SETTERS =
             new Comparator<MultiAttributeSetter>() {
                 @Override
@@ -175,13 +198,23 @@ public class SetterStore {
         List<BindingAdapterStore> gsonIntermediates = generationalClassUtil
                 .load(GenerationalClassUtil.ExtensionFilter.SETTER_STORE_JSON,
                         BindingAdapterStore.class);
+        List<BinaryBindingAdapterStore> binaryIntermediates = new ArrayList<>();
+        for (BinaryIntermediateReader reader : generationalClassUtil
+                .loadBinary(GenerationalClassUtil.ExtensionFilter.SETTER_STORE_BINARY)) {
+            try {
+                binaryIntermediates.add(new BinaryBindingAdapterStore(reader));
+            } catch (IOException e) {
+                L.e(e, "Could not read binding adapters from %s", reader.getFile());
+            }
+        }
         BindingAdapterStore store = new BindingAdapterStore(previousStores, gsonIntermediates,
-                modelAnalyzer.libTypes.getUseAndroidX());
+                binaryIntermediates, modelAnalyzer.libTypes.getUseAndroidX());
         return new SetterStore(modelAnalyzer, store);
     }
 
     public void addRenamedMethod(String attribute, String declaringClass, String method,
             TypeElement declaredOn) {
+        invalidateLookups();
         attribute = stripNamespace(attribute);
         MethodDescription methodDescription = new MethodDescription(
                 declaredOn.getQualifiedName().toString(), method);
@@ -190,6 +223,7 @@ public class SetterStore {
 
     public void addInverseBindingMethod(String attribute, String event, String declaringClass,
             String method, TypeElement declaredOn) {
+        invalidateLookups();
         attribute = stripNamespace(attribute);
         event = stripNamespace(event);
         InverseDescription methodDescription = new InverseDescription(
@@ -199,6 +233,7 @@ public class SetterStore {
 
     public void addInverseMethod(ProcessingEnvironment processingEnvironment,
             ExecutableElement method, ExecutableElement inverse) {
+        invalidateLookups();
         InverseMethodDescription from = new InverseMethodDescription(processingEnvironment, method);
         InverseMethodDescription to = new InverseMethodDescription(processingEnvironment, inverse);
         mStore.addInverseMethod(from, to);
@@ -206,6 +241,7 @@ public class SetterStore {
 
     public void addBindingAdapter(ProcessingEnvironment processingEnv, String attribute,
             ExecutableElement bindingMethod, boolean takesComponent) {
+        invalidateLookups();
         attribute = stripNamespace(attribute);
         L.d("STORE addBindingAdapter %s %s", attribute, bindingMethod);
 
@@ -224,6 +260,7 @@ public class SetterStore {
 
     public void addInverseAdapter(ProcessingEnvironment processingEnv, String attribute,
             String event, ExecutableElement bindingMethod, boolean takesComponent) {
+        invalidateLookups();
         attribute = stripNamespace(attribute);
         event = stripNamespace(event);
         L.d("STORE addInverseAdapter %s %s", attribute, bindingMethod);
@@ -301,6 +338,7 @@ public class SetterStore {
 
     public void addBindingAdapter(ProcessingEnvironment processingEnv, String[] attributes,
             ExecutableElement bindingMethod, boolean takesComponent, boolean requireAll) {
+        invalidateLookups();
         L.d("STORE add multi-value BindingAdapter %d %s", attributes.length, bindingMethod);
         MultiValueAdapterKey key = new MultiValueAdapterKey(processingEnv, bindingMethod,
                 attributes, takesComponent, requireAll);
@@ -371,6 +409,7 @@ public class SetterStore {
     }
 
     public void addConversionMethod(ExecutableElement conversionMethod) {
+        invalidateLookups();
         L.d("STORE addConversionMethod %s", conversionMethod);
         List<? extends VariableElement> parameters = conversionMethod.getParameters();
         String fromType = getQualifiedName(parameters.get(0).asType());
@@ -380,9 +419,65 @@ public class SetterStore {
     }
 
     public void clear(Set<String> classes) {
+        invalidateLookups();
         mStore.clear(classes);
     }
 
+    /**
+     * Drops the resolved adapters and memoized lookups. Must be called whenever mStore changes.
+     */
+    private void invalidateLookups() {
+        mSetterAdapters.clear();
+        mGetterAdapters.clear();
+        mMultiAdapters = null;
+        mSetterCalls.clear();
+        mGetterCalls.clear();
+        mMultiAttributeCalls.clear();
+        mConversionGraph = null;
+        mConversionCalls.clear();
+        mConversionPriorities.clear();
+    }
+
+    private AttributeAdapters<MethodDescription> getSetterAdapters(String attribute) {
+        AttributeAdapters<MethodDescription> adapters = mSetterAdapters.get(attribute);
+        if (adapters == null) {
+            final AttributeAdapters<MethodDescription> created = new AttributeAdapters<>();
+            mStore.forEachAdapterMethod(attribute, (key, adapter) -> {
+                created.add(key, adapter, resolveAdapterClass(adapter.type));
+                return null;
+            });
+            adapters = mSetterAdapters.putIfAbsent(attribute, created);
+            if (adapters == null) {
+                adapters = created;
+            }
+        }
+        return adapters;
+    }
+
+    private AttributeAdapters<InverseDescription> getGetterAdapters(String attribute) {
+        AttributeAdapters<InverseDescription> adapters = mGetterAdapters.get(attribute);
+        if (adapters == null) {
+            final AttributeAdapters<InverseDescription> created = new AttributeAdapters<>();
+            mStore.forEachInverseAdapterMethod(attribute, (key, inverseDescription) -> {
+                created.add(key, inverseDescription, true);
+                return null;
+            });
+            adapters = mGetterAdapters.putIfAbsent(attribute, created);
+            if (adapters == null) {
+                adapters = created;
+            }
+        }
+        return adapters;
+    }
+
+    private boolean resolveAdapterClass(String adapterType) {
+        try {
+            return mClassAnalyzer.findClass(adapterType, null) != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
     public void write(String projectPackage)
             throws IOException {
         Preconditions.checkNotNull(mStore.getCurrentModuleStore(),
@@ -391,6 +486,10 @@ public class SetterStore {
                 projectPackage,
                 GenerationalClassUtil.ExtensionFilter.SETTER_STORE_JSON,
                 mStore.getCurrentModuleStore());
+        GenerationalClassUtil.get().writeBinary(
+                projectPackage,
+                GenerationalClassUtil.ExtensionFilter.SETTER_STORE_BINARY,
+                mStore.getCurrentModuleStore().toBinary());
     }
 
     private static String stripNamespace(String attribute) {
@@ -418,6 +517,11 @@ public class SetterStore {
             }
             viewType = viewType.erasure();
         }
+        final LookupKey lookupKey = new LookupKey(attributes, viewType, valueType);
+        final List<MultiAttributeSetter> cached = mMultiAttributeCalls.get(lookupKey);
+        if (cached != null) {
+            return new ArrayList<MultiAttributeSetter>(cached);
+        }
         ArrayList<MultiAttributeSetter> matching = getMatchingMultiAttributeSetters(attributes,
                 viewType, valueType);
         Collections.sort(matching, COMPARE_MULTI_ATTRIBUTE_SETTERS);
@@ -426,19 +530,19 @@ public class SetterStore {
             calls.add(bestMatch);
             removeConsumedAttributes(matching, bestMatch.attributes);
         }
+        mMultiAttributeCalls.putIfAbsent(lookupKey.copy(),
+                new ArrayList<MultiAttributeSetter>(calls));
         return calls;
     }
 
 
     public Map<String, List<String>> getComponentBindingAdapters() {
-        ensureInstanceAdapters();
-        return mInstanceAdapters;
+        return ensureInstanceAdapters();
     }
 
     private String getBindingAdapterCall(String className) {
-        ensureInstanceAdapters();
         final String simpleName = BindingAdapterStore.simpleName(className);
-        List<String> adapters = mInstanceAdapters.get(simpleName);
+        List<String> adapters = ensureInstanceAdapters().get(simpleName);
         if (adapters.size() == 1) {
             return "get" + simpleName + "()";
         } else {
@@ -447,10 +551,19 @@ public class SetterStore {
         }
     }
 
-    private void ensureInstanceAdapters() {
-        if (mInstanceAdapters == null) {
-            mInstanceAdapters = mStore.createInstanceAdapters();
+    private HashMap<String, List<String>> ensureInstanceAdapters() {
+        HashMap<String, List<String>> instanceAdapters = mInstanceAdapters;
+        if (instanceAdapters == null) {
+            // createInstanceAdapters synchronizes on mStore as well
+            synchronized (mStore) {
+                instanceAdapters = mInstanceAdapters;
+                if (instanceAdapters == null) {
+                    instanceAdapters = mStore.createInstanceAdapters();
+                    mInstanceAdapters = instanceAdapters;
+                }
+            }
         }
+        return instanceAdapters;
     }
 
     // Removes all MultiAttributeSetters that require any of the values in attributes
@@ -483,26 +596,54 @@ public class SetterStore {
 
     private ArrayList<MultiAttributeSetter> getMatchingMultiAttributeSetters(String[] attributes,
             ModelClass viewType, ModelClass[] valueType) {
-        return mStore.findMultiValueAdapters((adapter, method) -> {
+        final ArrayList<MultiAttributeSetter> matched = new ArrayList<MultiAttributeSetter>();
+        for (ResolvedMultiAdapter resolved : getMultiAdapters()) {
+            final MultiValueAdapterKey adapter = resolved.key;
             if (adapter.requireAll && adapter.attributes.length > attributes.length) {
-                return null;
+                continue;
             }
-            ModelClass viewClass = mClassAnalyzer.findClass(adapter.viewType, null);
-            if (viewClass == null) {
-                return null;
+            if (resolved.viewType == null || !resolved.viewType.isAssignableFrom(viewType)) {
+                continue;
             }
-            if (viewClass.isGeneric()) {
-                viewClass = viewClass.erasure();
+            MultiAttributeSetter setter = createMultiAttributeSetter(resolved.method, attributes,
+                    valueType, adapter, resolved.parameterTypes);
+            if (setter != null) {
+                matched.add(setter);
             }
-            if (!viewClass.isAssignableFrom(viewType)) {
+        }
+        return matched;
+    }
+
+    private List<ResolvedMultiAdapter> getMultiAdapters() {
+        List<ResolvedMultiAdapter> adapters = mMultiAdapters;
+        if (adapters == null) {
+            final List<ResolvedMultiAdapter> resolved = new ArrayList<ResolvedMultiAdapter>();
+            mStore.findMultiValueAdapters((adapter, method) -> {
+                ModelClass viewClass = mClassAnalyzer.findClass(adapter.viewType, null);
+                if (viewClass != null && viewClass.isGeneric()) {
+                    viewClass = viewClass.erasure();
+                }
+                ModelClass[] parameterTypes = new ModelClass[adapter.parameterTypes.length];
+                if (viewClass != null) {
+                    for (int i = 0; i < parameterTypes.length; i++) {
+                        ModelClass paramClass = mClassAnalyzer
+                                .findClass(adapter.parameterTypes[i], null);
+                        parameterTypes[i] = paramClass == null ? null : eraseType(paramClass);
+                    }
+                }
+                resolved.add(new ResolvedMultiAdapter(adapter, method, viewClass,
+                        parameterTypes));
                 return null;
-            }
-            return createMultiAttributeSetter(method, attributes, valueType, adapter);
-        });
+            });
+            adapters = resolved;
+            mMultiAdapters = adapters;
+        }
+        return adapters;
     }
 
     private MultiAttributeSetter createMultiAttributeSetter(MethodDescription method,
-            String[] allAttributes, ModelClass[] attributeValues, MultiValueAdapterKey adapter) {
+            String[] allAttributes, ModelClass[] attributeValues, MultiValueAdapterKey adapter,
+            ModelClass[] parameterTypes) {
         int matchingAttributes = 0;
         String[] casts = new String[adapter.attributes.length];
         MethodDescription[] conversions = new MethodDescription[adapter.attributes.length];
@@ -514,11 +655,10 @@ public class SetterStore {
                 supplied[index] = true;
                 matchingAttributes++;
                 final String parameterTypeStr = adapter.parameterTypes[index];
-                ModelClass paramClass = mClassAnalyzer.findClass(parameterTypeStr, null);
-                if (paramClass == null) {
+                final ModelClass parameterType = parameterTypes[index];
+                if (parameterType == null) {
                     return null;
                 }
-                final ModelClass parameterType = eraseType(paramClass);
                 final ModelClass attributeType = attributeValues[i];
                 if (!parameterType.isAssignableFrom(attributeType)) {
                     if (ModelMethod.isBoxingConversion(parameterType, attributeType)) {
@@ -529,7 +669,7 @@ public class SetterStore {
                         continue;
                     }
                     // Look for a converter
-                    conversions[index] = getConversionMethod(attributeType, parameterType, null);
+                    conversions[index] = getConversionMethod(attributeType, parameterType);
                     if (conversions[index] == null) {
                         if (attributeType.isObject()) {
                             // Cast is allowed also
@@ -556,6 +696,20 @@ public class SetterStore {
         if (viewType == null) {
             return null;
         }
+        viewType = viewType.erasure();
+        attribute = stripNamespace(attribute);
+        final LookupKey lookupKey = new LookupKey(attribute, viewType, valueType, imports);
+        final Object cached = mSetterCalls.get(lookupKey);
+        if (cached != null) {
+            return cached == NO_CALL ? null : (SetterCall) cached;
+        }
+        final SetterCall setterCall = findSetterCall(attribute, viewType, valueType, imports);
+        mSetterCalls.putIfAbsent(lookupKey.copy(), setterCall == null ? NO_CALL : setterCall);
+        return setterCall;
+    }
+
+    private SetterCall findSetterCall(String attribute, ModelClass viewType,
+            ModelClass valueType, ImportBag imports) {
         @SuppressWarnings("WeakerAccess")
         class BestSetter {
             @Nullable
@@ -566,8 +720,6 @@ public class SetterStore {
             SetterCall setterCall = null;
         }
 
-        viewType = viewType.erasure();
-        attribute = stripNamespace(attribute);
         final BestSetter bestSetter = new BestSetter();
         ModelMethod bestSetterMethod = getBestSetter(viewType, valueType, attribute, imports);
         if (bestSetterMethod != null) {
@@ -576,50 +728,44 @@ public class SetterStore {
             bestSetter.setterCall = new ModelMethodSetter(bestSetterMethod);
         }
 
-        ModelClass finalViewType = viewType;
-        mStore.forEachAdapterMethod(attribute, (key, adapter) -> {
+        final AttributeAdapters<MethodDescription> adapters = getSetterAdapters(attribute);
+        adapters.reportUnresolvedViewType();
+        for (ResolvedAdapter<MethodDescription> resolved : adapters.candidatesFor(viewType)) {
+            final AccessorKey key = resolved.key;
+            final MethodDescription adapter = resolved.method;
             try {
-                ModelClass adapterViewType =
-                        mClassAnalyzer.findClass(key.viewType, imports).erasure();
-                if (adapterViewType != null && adapterViewType.isAssignableFrom(finalViewType)) {
-                    try {
-                        L.d("setter parameter type is %s", key.valueType);
-                        final ModelClass adapterValueType = eraseType(mClassAnalyzer
-                                .findClass(key.valueType, imports));
-                        L.d("setter %s takes type %s, compared to %s",
-                                adapter.method, adapterValueType.toJavaCode(),
-                                valueType.toJavaCode());
-                        if (isBetterParameter(valueType, adapterViewType, adapterValueType,
-                                bestSetter.viewType, bestSetter.valueType, imports)) {
-                            final ModelClass adapterClass = mClassAnalyzer
-                                    .findClass(adapter.type, imports);
-                            if (adapterClass == null) {
-                                // adapter is not in compile classpath, probably in runtime
-                                // classpath hence we should ignore it.
-                                L.d("ignoring adapter %s because it is not in the" +
-                                        " compile classpath.", adapter.type);
-                                return null;
-                            }
-                            bestSetter.viewType = adapterViewType;
-                            bestSetter.valueType = adapterValueType;
-                            bestSetter.setterCall = new AdapterSetter(adapter, adapterValueType);
-                        }
-                    } catch (Exception e) {
-                        L.e(e, "Unknown class: %s", key.valueType);
+                if (resolved.valueTypeError != null) {
+                    throw resolved.valueTypeError;
+                }
+                final ModelClass adapterViewType = resolved.viewType;
+                final ModelClass adapterValueType = resolved.valueType;
+                L.d("setter %s takes type %s, compared to %s",
+                        adapter.method, adapterValueType.toJavaCode(),
+                        valueType.toJavaCode());
+                if (isBetterParameter(valueType, adapterViewType, adapterValueType,
+                        bestSetter.viewType, bestSetter.valueType)) {
+                    if (!resolved.adapterClassFound) {
+                        // adapter is not in compile classpath, probably in runtime
+                        // classpath hence we should ignore it.
+                        L.d("ignoring adapter %s because it is not in the" +
+                                " compile classpath.", adapter.type);
+                        continue;
                     }
+                    bestSetter.viewType = adapterViewType;
+                    bestSetter.valueType = adapterValueType;
+                    bestSetter.setterCall = new AdapterSetter(adapter, adapterValueType);
                 }
             } catch (Exception e) {
-                L.e(e, "Unknown class: %s", key.viewType);
+                L.e(e, "Unknown class: %s", key.valueType);
             }
-            return null;
-        });
+        }
 
         if (bestSetter.setterCall != null) {
             if (valueType.isObject() && bestSetter.valueType.isNullable()) {
                 bestSetter.setterCall.setCast(bestSetter.valueType);
             }
             MethodDescription conversionMethod =
-                    getConversionMethod(valueType, bestSetter.valueType, imports);
+                    getConversionMethod(valueType, bestSetter.valueType);
             bestSetter.setterCall.setConverter(conversionMethod);
         }
 
@@ -649,59 +795,67 @@ public class SetterStore {
         attribute = stripNamespace(attribute);
         viewType = viewType.erasure();
 
+        final LookupKey lookupKey = new LookupKey(attribute, viewType, valueType, imports);
+        final Object cached = mGetterCalls.get(lookupKey);
+        if (cached != null) {
+            return cached == NO_CALL ? null : (BindingGetterCall) cached;
+        }
+        final BindingGetterCall getterCall = findGetterCall(attribute, viewType, valueType,
+                imports);
+        mGetterCalls.putIfAbsent(lookupKey.copy(), getterCall == null ? NO_CALL : getterCall);
+        return getterCall;
+    }
+
+    private BindingGetterCall findGetterCall(String attribute, ModelClass viewType,
+            ModelClass valueType, ImportBag imports) {
         InverseMethod bestMethod = getBestGetter(viewType, valueType, attribute, imports);
-        ModelClass finalViewType = viewType;
-        mStore.forEachInverseAdapterMethod(attribute, (key, inverseDescription) -> {
+        final AttributeAdapters<InverseDescription> adapters = getGetterAdapters(attribute);
+        adapters.reportUnresolvedViewType();
+        for (ResolvedAdapter<InverseDescription> resolved : adapters.candidatesFor(viewType)) {
+            final AccessorKey key = resolved.key;
+            final InverseDescription inverseDescription = resolved.method;
             try {
-                ModelClass adapterViewType = mClassAnalyzer
-                        .findClass(key.viewType, imports).erasure();
-                if (adapterViewType != null && adapterViewType.isAssignableFrom(finalViewType)) {
-                    try {
-                        L.d("getter return type is %s", key.valueType);
-                        final ModelClass adapterValueType = eraseType(mClassAnalyzer
-                                .findClass(key.valueType, imports));
-                        L.d("getter %s returns type %s, compared to %s",
-                                inverseDescription.method, adapterValueType.toJavaCode(),
-                                valueType);
-                        if (valueType == null ||
-                                isBetterReturn(valueType, adapterViewType, adapterValueType,
-                                        bestMethod.viewType, bestMethod.returnType, imports)) {
-                            bestMethod.viewType = adapterViewType;
-                            bestMethod.returnType = adapterValueType;
-                            ModelAnalyzer modelAnalyzer = ModelAnalyzer.getInstance();
-                            ModelClass listenerType = modelAnalyzer.findClass(
-                                    modelAnalyzer.libTypes.getInverseBindingListener(),
-                                    ImportBag.EMPTY);
-                            BindingSetterCall eventCall = getSetterCall(
-                                    inverseDescription.event, finalViewType, listenerType, imports);
-                            if (eventCall == null) {
-                                List<MultiAttributeSetter> setters =
-                                        getMultiAttributeSetterCalls(
-                                                new String[]{inverseDescription.event},
-                                                finalViewType, new ModelClass[] {listenerType});
-                                if (setters.size() != 1) {
-                                    L.e("Could not find event '%s' on View type '%s'",
-                                            inverseDescription.event,
-                                            finalViewType.getCanonicalName());
-                                } else {
-                                    bestMethod.call = new AdapterGetter(inverseDescription,
-                                            setters.get(0), key.valueType);
-                                }
-                            } else {
-                                bestMethod.call = new AdapterGetter(inverseDescription,
-                                        eventCall, key.valueType);
-                            }
+                if (resolved.valueTypeError != null) {
+                    throw resolved.valueTypeError;
+                }
+                final ModelClass adapterViewType = resolved.viewType;
+                final ModelClass adapterValueType = resolved.valueType;
+                L.d("getter %s returns type %s, compared to %s",
+                        inverseDescription.method, adapterValueType.toJavaCode(),
+                        valueType);
+                if (valueType == null ||
+                        isBetterReturn(valueType, adapterViewType, adapterValueType,
+                                bestMethod.viewType, bestMethod.returnType)) {
+                    bestMethod.viewType = adapterViewType;
+                    bestMethod.returnType = adapterValueType;
+                    ModelAnalyzer modelAnalyzer = ModelAnalyzer.getInstance();
+                    ModelClass listenerType = modelAnalyzer.findClass(
+                            modelAnalyzer.libTypes.getInverseBindingListener(),
+                            ImportBag.EMPTY);
+                    BindingSetterCall eventCall = getSetterCall(
+                            inverseDescription.event, viewType, listenerType, imports);
+                    if (eventCall == null) {
+                        List<MultiAttributeSetter> setters =
+                                getMultiAttributeSetterCalls(
+                                        new String[]{inverseDescription.event},
+                                        viewType, new ModelClass[] {listenerType});
+                        if (setters.size() != 1) {
+                            L.e("Could not find event '%s' on View type '%s'",
+                                    inverseDescription.event,
+                                    viewType.getCanonicalName());
+                        } else {
+                            bestMethod.call = new AdapterGetter(inverseDescription,
+                                    setters.get(0), key.valueType);
                         }
-
-                    } catch (Exception e) {
-                        L.e(e, "Unknown class: %s", key.valueType);
+                    } else {
+                        bestMethod.call = new AdapterGetter(inverseDescription,
+                                eventCall, key.valueType);
                     }
                 }
             } catch (Exception e) {
-                L.e(e, "Unknown class: %s", key.viewType);
+                L.e(e, "Unknown class: %s", key.valueType);
             }
-            return null;
-        });
+        }
         return bestMethod.call;
     }
 
@@ -748,7 +902,7 @@ public class SetterStore {
                 ModelClass param = parameterTypes[0];
                 ModelClass previousViewType = bestParameterType == null ? null : viewType;
                 if (method.isVoid() && isBetterParameter(argumentType, viewType, param,
-                        previousViewType, bestParameterType, imports)) {
+                        previousViewType, bestParameterType)) {
                     bestParameterType = param;
                     bestMethod = method;
                 }
@@ -791,7 +945,7 @@ public class SetterStore {
                     ModelClass returnType = method.getReturnType(null); // no parameters
                     if (finalValueType == null || bestSetter.returnType == null ||
                             isBetterReturn(finalValueType, methodViewType, returnType,
-                                    bestSetter.viewType, bestSetter.returnType, imports)) {
+                                    bestSetter.viewType, bestSetter.returnType)) {
                         bestSetter.description = inverseDescription;
                         bestSetter.returnType = returnType;
                         bestSetter.viewType = methodViewType;
@@ -867,7 +1021,7 @@ public class SetterStore {
      * another for an argument. It is assumed that both view types match the targeted view.
      * <p>
      * Note that this has different priorities than
-     * {@link #isBetterReturn(ModelClass, ModelClass, ModelClass, ModelClass, ModelClass, ImportBag)}
+     * {@link #isBetterReturn(ModelClass, ModelClass, ModelClass, ModelClass, ModelClass)}
      *
      * @param argument The argument type being passed to the setter.
      * @param newViewType The type of the view in the BindingAdapter or setter method.
@@ -876,21 +1030,19 @@ public class SetterStore {
      *                   method.
      * @param oldParameter The parameter type of the value in the previous matching BindingAdapter
      *                    or setter method.
-     * @param imports Import in the binding layout file.
      * @return {@code true} when the new BindingAdapter or setter method is a better fit than the
      * previous one or {@code false} if {@code argument} and {@code newParameter} aren't a match
      * or are a worse match.
      */
     private boolean isBetterParameter(@NonNull ModelClass argument,
             @NonNull ModelClass newViewType, @NonNull ModelClass newParameter,
-            @Nullable ModelClass oldViewType, @Nullable ModelClass oldParameter,
-            @Nullable ImportBag imports) {
+            @Nullable ModelClass oldViewType, @Nullable ModelClass oldParameter) {
         if (oldParameter == null) {
             // just validate that it can be converted
-            return calculateConversionPriority(argument, newParameter, imports) >= 0;
+            return calculateConversionPriority(argument, newParameter) >= 0;
         }
 
-        int newConversion = calculateConversionPriority(argument, newParameter, imports);
+        int newConversion = calculateConversionPriority(argument, newParameter);
         if (newConversion < 0) {
             return false; // Doesn't convert
         }
@@ -898,7 +1050,7 @@ public class SetterStore {
         boolean isSameViewType = oldViewType.equals(newViewType);
         boolean isBetterViewType = oldViewType.isAssignableFrom(newViewType);
 
-        int oldConversion = calculateConversionPriority(argument, oldParameter, imports);
+        int oldConversion = calculateConversionPriority(argument, oldParameter);
         if (oldConversion == ASSIGNABLE_CONVERSION && newConversion == ASSIGNABLE_CONVERSION) {
             if (isSameViewType) {
                 // more specific getter is better
@@ -924,7 +1076,7 @@ public class SetterStore {
      * than another for a method call. It is assumed that both view types match the targeted view.
      * <p>
      * Note that this has different priorities than
-     * {@link #isBetterParameter(ModelClass, ModelClass, ModelClass, ModelClass, ModelClass, ImportBag)}
+     * {@link #isBetterParameter(ModelClass, ModelClass, ModelClass, ModelClass, ModelClass)}
      *
      * @param expected The type that is expected from the getter.
      * @param newViewType The type of the view in the InverseBindingAdapter or getter method.
@@ -934,21 +1086,19 @@ public class SetterStore {
      *                    getter method.
      * @param oldReturnType The return type of the value in the previous matching
      *                     InverseBindingAdapter or getter method.
-     * @param imports Import in the binding layout file.
      * @return {@code true} when the new InverseBindingAdapter or getter method is a better fit
      * than the previous one or {@code false} if {@code expected} and {@code newReturnType} aren't
      * a match or are a worse match.
      */
     private boolean isBetterReturn(@NonNull ModelClass expected,
             @NonNull ModelClass newViewType, @NonNull ModelClass newReturnType,
-            @Nullable ModelClass oldViewType, @Nullable ModelClass oldReturnType,
-            @Nullable ImportBag imports) {
+            @Nullable ModelClass oldViewType, @Nullable ModelClass oldReturnType) {
         if (oldReturnType == null) {
             // just validate that it can be converted
-            return calculateConversionPriority(newReturnType, expected, imports) >= 0;
+            return calculateConversionPriority(newReturnType, expected) >= 0;
         }
 
-        int newConversion = calculateConversionPriority(newReturnType, expected, imports);
+        int newConversion = calculateConversionPriority(newReturnType, expected);
         if (newConversion < 0) {
             return false; // Doesn't convert
         }
@@ -956,7 +1106,7 @@ public class SetterStore {
         boolean isSameViewType = oldViewType.equals(newViewType);
         boolean isBetterViewType = oldViewType.isAssignableFrom(newViewType);
 
-        int oldConversion = calculateConversionPriority(oldReturnType, expected, imports);
+        int oldConversion = calculateConversionPriority(oldReturnType, expected);
         if (oldConversion == ASSIGNABLE_CONVERSION && newConversion == ASSIGNABLE_CONVERSION) {
             if (isSameViewType) {
                 // more generic getter is better (fairly arbitrary, but consistent)
@@ -986,12 +1136,20 @@ public class SetterStore {
      *
      * @param from The class or interface to attempt to convert from
      * @param to The class or interface to attempt to convert to
-     * @param imports The imports used in this binding file
      * @return {@code -1} for no match or greater than or equal to {@code 0} for a possible match,
      * where {@code 0} is an exact match and greater numbers are progressively worse matches.
      */
-    private int calculateConversionPriority(@NonNull ModelClass from, @NonNull ModelClass to,
-            @Nullable ImportBag imports) {
+    private int calculateConversionPriority(@NonNull ModelClass from, @NonNull ModelClass to) {
+        final LookupKey lookupKey = new LookupKey(from, to);
+        Integer priority = mConversionPriorities.get(lookupKey);
+        if (priority == null) {
+            priority = computeConversionPriority(from, to);
+            mConversionPriorities.putIfAbsent(lookupKey, priority);
+        }
+        return priority;
+    }
+
+    private int computeConversionPriority(@NonNull ModelClass from, @NonNull ModelClass to) {
         if (to.equals(from)) {
             return 0; // exact match
         }
@@ -1005,7 +1163,7 @@ public class SetterStore {
             // this should be 3 - 9
             return 3 + ModelMethod.getImplicitConversionLevel(to);
         }
-        if (getConversionMethod(from, to, imports) != null) {
+        if (getConversionMethod(from, to) != null) {
             return 10;
         }
         if (from.isObject() && !to.isPrimitive()) {
@@ -1014,36 +1172,64 @@ public class SetterStore {
         return -1;
     }
 
-    private MethodDescription getConversionMethod(ModelClass from, ModelClass to,
-            ImportBag imports) {
+    private MethodDescription getConversionMethod(ModelClass from, ModelClass to) {
         if (from != null && to != null) {
             if (to.isObject()) {
                 return null;
             }
-            return mStore.findFirstConversionMethod((fromClassName, conversion) -> {
-                try {
-                    ModelClass convertFrom = mClassAnalyzer.findClass(fromClassName, imports);
-                    if (convertFrom != null && canUseForConversion(from, convertFrom)) {
-                        for (String toClassName : conversion.keySet()) {
-                            try {
-                                ModelClass convertTo = mClassAnalyzer
-                                        .findClass(toClassName, imports);
-                                if (convertTo != null
-                                        && canUseForConversion(convertTo, to)) {
-                                    return conversion.get(toClassName);
-                                }
-                            } catch (Exception e) {
-                                L.d(e, "Unknown class: %s", toClassName);
-                            }
-                        }
+            final LookupKey lookupKey = new LookupKey(from, to);
+            Object conversion = mConversionCalls.get(lookupKey);
+            if (conversion == null) {
+                conversion = NO_CALL;
+                for (ResolvedConversion candidate : getConversionGraph()) {
+                    if (canUseForConversion(from, candidate.from)
+                            && canUseForConversion(candidate.to, to)) {
+                        conversion = candidate.method;
+                        break;
                     }
+                }
+                mConversionCalls.putIfAbsent(lookupKey, conversion);
+            }
+            return conversion == NO_CALL ? null : (MethodDescription) conversion;
+        }
+        return null;
+    }
+
+    /**
+     * @return All conversion methods with their classes resolved, in the order of the store.
+     */
+    private List<ResolvedConversion> getConversionGraph() {
+        List<ResolvedConversion> conversions = mConversionGraph;
+        if (conversions == null) {
+            final List<ResolvedConversion> resolved = new ArrayList<>();
+            mStore.findFirstConversionMethod((fromClassName, conversion) -> {
+                final ModelClass convertFrom;
+                try {
+                    convertFrom = mClassAnalyzer.findClass(fromClassName, null);
                 } catch (Exception e) {
                     L.d(e, "Unknown class: %s", fromClassName);
+                    return null;
+                }
+                if (convertFrom == null) {
+                    return null;
+                }
+                for (Map.Entry<String, MethodDescription> entry : conversion.entrySet()) {
+                    try {
+                        ModelClass convertTo = mClassAnalyzer.findClass(entry.getKey(), null);
+                        if (convertTo != null) {
+                            resolved.add(new ResolvedConversion(convertFrom, convertTo,
+                                    entry.getValue()));
+                        }
+                    } catch (Exception e) {
+                        L.d(e, "Unknown class: %s", entry.getKey());
+                    }
                 }
                 return null;
             });
+            conversions = resolved;
+            mConversionGraph = conversions;
         }
-        return null;
+        return conversions;
     }
 
     private boolean canUseForConversion(ModelClass from, ModelClass to) {
@@ -1113,6 +1299,17 @@ public class SetterStore {
             }
         }
 
+        MultiValueAdapterKey(String viewType, String[] attributes, String[] parameterTypes,
+                boolean requireAll) {
+            this.viewType = viewType;
+            this.attributes = attributes;
+            this.parameterTypes = parameterTypes;
+            this.requireAll = requireAll;
+            for (int i = 0; i < attributes.length; i++) {
+                attributeIndices.put(attributes[i], i);
+            }
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (!(obj instanceof MultiValueAdapterKey)) {
@@ -1247,6 +1444,15 @@ public class SetterStore {
             L.d("BINARY created method desc 1 %s %s", type, method );
         }
 
+        MethodDescription(String type, String method, boolean requiresOldValue,
+                boolean isStatic, String componentClass) {
+            this.type = type;
+            this.method = method;
+            this.requiresOldValue = requiresOldValue;
+            this.isStatic = isStatic;
+            this.componentClass = componentClass;
+        }
+
         public MethodDescription(ExecutableElement method, int numAttributes,
                 boolean takesComponent) {
             TypeElement enclosingClass = (TypeElement) method.getEnclosingElement();
@@ -1327,6 +1533,12 @@ public class SetterStore {
             this.event = event;
         }
 
+        InverseDescription(String type, String method, boolean requiresOldValue,
+                boolean isStatic, String componentClass, String event) {
+            super(type, method, requiresOldValue, isStatic, componentClass);
+            this.event = event;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) {
@@ -1451,6 +1663,15 @@ public class SetterStore {
             }
         }
 
+        InverseMethodDescription(boolean isStatic, String returnType, String method,
+                String[] parameterTypes, String type) {
+            this.isStatic = isStatic;
+            this.returnType = returnType;
+            this.method = method;
+            this.parameterTypes = parameterTypes;
+            this.type = type;
+        }
+
         @Override
         public int hashCode() {
             return mergedHashCode(type, isStatic, returnType, method,
@@ -2090,6 +2311,189 @@ public class SetterStore {
         }
     }
 
+    /**
+     * The binding adapters of one attribute with their types resolved, in the order of the
+     * store. Adapters are grouped by view type so that a lookup checks each distinct view type
+     * only once.
+     */
+    private class AttributeAdapters<D extends MethodDescription> {
+        private final List<ResolvedAdapter<D>> mAdapters = new ArrayList<>();
+        private final Map<String, ViewTypeGroup> mViewTypes = new HashMap<>();
+        private final List<ViewTypeGroup> mGroups = new ArrayList<>();
+
+        void add(AccessorKey key, D method, boolean adapterClassFound) {
+            ViewTypeGroup group = mViewTypes.get(key.viewType);
+            if (group == null) {
+                group = new ViewTypeGroup(mGroups.size(), key.viewType);
+                mViewTypes.put(key.viewType, group);
+                mGroups.add(group);
+            }
+            ModelClass valueType = null;
+            Exception valueTypeError = null;
+            if (group.viewType != null) {
+                try {
+                    valueType = eraseType(mClassAnalyzer.findClass(key.valueType, null));
+                } catch (Exception e) {
+                    valueTypeError = e;
+                }
+            }
+            mAdapters.add(new ResolvedAdapter<>(key, method, group, valueType, valueTypeError,
+                    adapterClassFound));
+        }
+
+        void reportUnresolvedViewType() {
+            for (ViewTypeGroup group : mGroups) {
+                if (group.viewTypeError != null) {
+                    L.e(group.viewTypeError, "Unknown class: %s", group.viewTypeName);
+                }
+            }
+        }
+
+        /**
+         * @return The adapters whose view type is assignable from viewType, in store order.
+         */
+        List<ResolvedAdapter<D>> candidatesFor(ModelClass viewType) {
+            if (mAdapters.isEmpty()) {
+                return Collections.emptyList();
+            }
+            final boolean[] matches = new boolean[mGroups.size()];
+            boolean any = false;
+            for (ViewTypeGroup group : mGroups) {
+                if (group.viewType != null && group.viewType.isAssignableFrom(viewType)) {
+                    matches[group.index] = true;
+                    any = true;
+                }
+            }
+            if (!any) {
+                return Collections.emptyList();
+            }
+            final List<ResolvedAdapter<D>> candidates = new ArrayList<>();
+            for (ResolvedAdapter<D> adapter : mAdapters) {
+                if (matches[adapter.group.index]) {
+                    candidates.add(adapter);
+                }
+            }
+            return candidates;
+        }
+    }
+
+    private class ViewTypeGroup {
+        final int index;
+        final String viewTypeName;
+        final ModelClass viewType;
+        final Exception viewTypeError;
+
+        ViewTypeGroup(int index, String viewTypeName) {
+            this.index = index;
+            this.viewTypeName = viewTypeName;
+            ModelClass resolved = null;
+            Exception error = null;
+            try {
+                resolved = mClassAnalyzer.findClass(viewTypeName, null).erasure();
+            } catch (Exception e) {
+                error = e;
+            }
+            this.viewType = resolved;
+            this.viewTypeError = error;
+        }
+    }
+
+    private static class ResolvedAdapter<D extends MethodDescription> {
+        final AccessorKey key;
+        final D method;
+        final ViewTypeGroup group;
+        final ModelClass viewType;
+        final ModelClass valueType;
+        final Exception valueTypeError;
+        final boolean adapterClassFound;
+
+        ResolvedAdapter(AccessorKey key, D method, ViewTypeGroup group, ModelClass valueType,
+                Exception valueTypeError, boolean adapterClassFound) {
+            this.key = key;
+            this.method = method;
+            this.group = group;
+            this.viewType = group.viewType;
+            this.valueType = valueType;
+            this.valueTypeError = valueTypeError;
+            this.adapterClassFound = adapterClassFound;
+        }
+    }
+
+    private static class ResolvedConversion {
+        final ModelClass from;
+        final ModelClass to;
+        final MethodDescription method;
+
+        ResolvedConversion(ModelClass from, ModelClass to, MethodDescription method) {
+            this.from = from;
+            this.to = to;
+            this.method = method;
+        }
+    }
+
+    private static class ResolvedMultiAdapter {
+        final MultiValueAdapterKey key;
+        final MethodDescription method;
+        final ModelClass viewType;
+        final ModelClass[] parameterTypes;
+
+        ResolvedMultiAdapter(MultiValueAdapterKey key, MethodDescription method,
+                ModelClass viewType, ModelClass[] parameterTypes) {
+            this.key = key;
+            this.method = method;
+            this.viewType = viewType;
+            this.parameterTypes = parameterTypes;
+        }
+    }
+
+    /**
+     * Key of a memoized lookup. Arrays are compared by content.
+     */
+    private static class LookupKey {
+        private final Object[] mParts;
+        private final int mHashCode;
+
+        LookupKey(Object... parts) {
+            mParts = parts;
+            mHashCode = Arrays.deepHashCode(parts);
+        }
+
+        /**
+         * @return A key that is safe to keep: arrays are copied and imports made immutable.
+         */
+        LookupKey copy() {
+            final Object[] parts = new Object[mParts.length];
+            for (int i = 0; i < parts.length; i++) {
+                final Object part = mParts[i];
+                if (part instanceof Object[]) {
+                    parts[i] = ((Object[]) part).clone();
+                } else if (part instanceof ImportBag) {
+                    parts[i] = ((ImportBag) part).toImmutable();
+                } else {
+                    parts[i] = part;
+                }
+            }
+            return new LookupKey(parts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+            final LookupKey other = (LookupKey) o;
+            return mHashCode == other.mHashCode && Arrays.deepEquals(mParts, other.mParts);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
     private static class InverseMethod {
         public BindingGetterCall call;
         public ModelClass returnType;
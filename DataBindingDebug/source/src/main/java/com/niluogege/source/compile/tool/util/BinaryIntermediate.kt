@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.databinding.tool.util
+
+import java.io.ByteArrayOutputStream
+import java.io.Closeable
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Binary format of the intermediates data binding passes between modules.
+ *
+ * A file starts with a header and a section table, followed by a string table and the sections.
+ * All numbers are big endian ints and every string is stored once in the string table, so
+ * sections only hold string ids.
+ * ```
+ * magic, format version, kind, string count, section count
+ * section count x (name id, absolute offset, length)
+ * (string count + 1) x string offset, relative to the string data
+ * string data, UTF-8
+ * sections
+ * ```
+ * Readers decode strings and sections only when they are asked for. Large files are
+ * memory-mapped, the rest is read into the heap.
+ */
+object BinaryIntermediate {
+    const val MAGIC = 0x44424931 // "DBI1"
+    const val FORMAT_VERSION = 1
+
+    const val KIND_SETTER_STORE = 1
+    const val KIND_LAYOUT_INFO = 2
+
+    /** String id written for null strings. */
+    const val NO_STRING = -1
+
+    internal const val HEADER_SIZE = 5 * 4
+    internal const val SECTION_ENTRY_SIZE = 3 * 4
+}
+
+/**
+ * Collects the sections of a binary intermediate and writes them with a shared string table.
+ */
+class BinaryIntermediateWriter(private val kind: Int) {
+    private val stringIds = HashMap<String, Int>()
+    private val strings = ArrayList<String>()
+    private val sections = LinkedHashMap<Int, ByteArray>()
+
+    /**
+     * Interface for the body of a section. Strings should be written as the ids returned from
+     * [string].
+     */
+    interface SectionBody {
+        @Throws(IOException::class)
+        fun write(out: DataOutputStream)
+    }
+
+    /**
+     * @return The id of the value in the string table of this file.
+     */
+    fun string(value: String?): Int {
+        if (value == null) {
+            return BinaryIntermediate.NO_STRING
+        }
+        return stringIds.getOrPut(value) {
+            strings.add(value)
+            strings.size - 1
+        }
+    }
+
+    fun section(name: String, body: SectionBody) {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use {
+            body.write(it)
+        }
+        sections[string(name)] = bytes.toByteArray()
+    }
+
+    /**
+     * Adds a section holding all entries of the given map.
+     */
+    fun putStringMap(name: String, map: Map<String, String?>) {
+        section(name, object : SectionBody {
+            override fun write(out: DataOutputStream) {
+                out.writeInt(map.size)
+                map.forEach { (key, value) ->
+                    out.writeInt(string(key))
+                    out.writeInt(string(value))
+                }
+            }
+        })
+    }
+
+    @Throws(IOException::class)
+    fun writeTo(file: File) {
+        val encoded = strings.map { it.toByteArray(Charsets.UTF_8) }
+        val stringTableSize = (encoded.size + 1) * 4 + encoded.sumBy { it.size }
+        var sectionOffset = BinaryIntermediate.HEADER_SIZE +
+                sections.size * BinaryIntermediate.SECTION_ENTRY_SIZE + stringTableSize
+        DataOutputStream(file.outputStream().buffered()).use { out ->
+            out.writeInt(BinaryIntermediate.MAGIC)
+            out.writeInt(BinaryIntermediate.FORMAT_VERSION)
+            out.writeInt(kind)
+            out.writeInt(encoded.size)
+            out.writeInt(sections.size)
+            sections.forEach { (nameId, bytes) ->
+                out.writeInt(nameId)
+                out.writeInt(sectionOffset)
+                out.writeInt(bytes.size)
+                sectionOffset += bytes.size
+            }
+            var stringOffset = 0
+            encoded.forEach {
+                out.writeInt(stringOffset)
+                stringOffset += it.size
+            }
+            out.writeInt(stringOffset)
+            encoded.forEach {
+                out.write(it)
+            }
+            sections.values.forEach {
+                out.write(it)
+            }
+        }
+    }
+}
+
+/**
+ * Read access to a binary intermediate. Strings are decoded on first use.
+ *
+ * A memory-mapped file stays mapped, and locked on Windows, until the reader is closed. The
+ * reader cannot be used anymore once it is closed.
+ */
+class BinaryIntermediateReader private constructor(
+        val file: File,
+        private val buffer: ByteBuffer
+) : Closeable {
+    @Volatile
+    private var closed = false
+    val kind: Int
+    private val strings: Array<String?>
+    private val stringOffsets: Int
+    private val stringData: Int
+    private val sections = HashMap<String, ByteBuffer>()
+
+    init {
+        if (buffer.limit() < BinaryIntermediate.HEADER_SIZE ||
+                buffer.getInt(0) != BinaryIntermediate.MAGIC) {
+            throw IOException("Not a data binding intermediate: $file")
+        }
+        val version = buffer.getInt(4)
+        if (version != BinaryIntermediate.FORMAT_VERSION) {
+            throw IOException("Unsupported data binding intermediate version $version: $file")
+        }
+        kind = buffer.getInt(8)
+        val stringCount = buffer.getInt(12)
+        val sectionCount = buffer.getInt(16)
+        val stringOffsets = BinaryIntermediate.HEADER_SIZE +
+                sectionCount.toLong() * BinaryIntermediate.SECTION_ENTRY_SIZE
+        val stringData = stringOffsets + (stringCount + 1L) * 4
+        if (stringCount < 0 || sectionCount < 0 || stringData > buffer.limit()) {
+            throw IOException("Corrupt data binding intermediate: $file")
+        }
+        this.stringOffsets = stringOffsets.toInt()
+        this.stringData = stringData.toInt()
+        strings = arrayOfNulls(stringCount)
+        for (i in 0 until sectionCount) {
+            val entry = BinaryIntermediate.HEADER_SIZE + i * BinaryIntermediate.SECTION_ENTRY_SIZE
+            val offset = buffer.getInt(entry + 4)
+            val length = buffer.getInt(entry + 8)
+            if (offset < stringData || length < 0 || offset.toLong() + length > buffer.limit()) {
+                throw IOException("Corrupt data binding intermediate: $file")
+            }
+            val section = buffer.duplicate()
+            section.position(offset)
+            section.limit(offset + length)
+            val name = string(buffer.getInt(entry))
+                    ?: throw IOException("Corrupt data binding intermediate: $file")
+            sections[name] = section.slice()
+        }
+    }
+
+    @Throws(IOException::class)
+    fun string(id: Int): String? {
+        if (id == BinaryIntermediate.NO_STRING) {
+            return null
+        }
+        checkOpen()
+        if (id < 0 || id >= strings.size) {
+            throw IOException("String id $id out of range in data binding intermediate: $file")
+        }
+        // decoding the same string twice on a race is harmless
+        strings[id]?.let {
+            return it
+        }
+        val start = buffer.getInt(stringOffsets + id * 4)
+        val end = buffer.getInt(stringOffsets + (id + 1) * 4)
+        if (start < 0 || end < start || stringData.toLong() + end > buffer.limit()) {
+            throw IOException("Corrupt string $id in data binding intermediate: $file")
+        }
+        val bytes = ByteArray(end - start)
+        val data = buffer.duplicate()
+        data.position(stringData + start)
+        data.get(bytes)
+        val value = String(bytes, Charsets.UTF_8)
+        strings[id] = value
+        return value
+    }
+
+    /**
+     * @return A new buffer over the given section, positioned at its start, or null if the file
+     * does not have it.
+     */
+    @Throws(IOException::class)
+    fun section(name: String): ByteBuffer? {
+        checkOpen()
+        return sections[name]?.duplicate()
+    }
+
+    @Throws(IOException::class)
+    fun getStringMap(name: String): Map<String, String?> {
+        val section = section(name) ?: return emptyMap()
+        val size = section.int
+        if (size < 0 || size.toLong() * 8 > section.remaining()) {
+            throw IOException("Corrupt $name section in data binding intermediate: $file")
+        }
+        val result = LinkedHashMap<String, String?>(size * 2)
+        for (i in 0 until size) {
+            val key = string(section.int)
+                    ?: throw IOException("Null key in $name of data binding intermediate: $file")
+            result[key] = string(section.int)
+        }
+        return result
+    }
+
+    private fun checkOpen() {
+        if (closed) {
+            throw IOException("Data binding intermediate is already closed: $file")
+        }
+    }
+
+    /**
+     * Releases the mapping of the file, if any. Buffers returned from [section] must not be used
+     * afterwards.
+     */
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        if (buffer is MappedByteBuffer) {
+            unmap(buffer)
+        }
+    }
+
+    companion object {
+        /**
+         * Files up to this size are read into the heap; mapping them costs more than it saves.
+         */
+        private const val MAP_THRESHOLD = 1 shl 20
+
+        @JvmStatic
+        @Throws(IOException::class)
+        fun open(file: File): BinaryIntermediateReader {
+            val buffer = RandomAccessFile(file, "r").use {
+                val length = it.length()
+                if (length <= MAP_THRESHOLD) {
+                    val bytes = ByteArray(length.toInt())
+                    it.readFully(bytes)
+                    ByteBuffer.wrap(bytes)
+                } else {
+                    // the mapping stays valid after the channel is closed
+                    it.channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+                }
+            }
+            try {
+                return BinaryIntermediateReader(file, buffer)
+            } catch (e: IOException) {
+                if (buffer is MappedByteBuffer) {
+                    unmap(buffer)
+                }
+                throw e
+            }
+        }
+
+        /**
+         * The JDK only unmaps a file when its buffer is garbage collected, which keeps the file
+         * locked on Windows for as long as the Gradle daemon lives. There is no public API to do
+         * it earlier, so this is best effort.
+         */
+        private fun unmap(buffer: MappedByteBuffer) {
+            try {
+                try {
+                    // Java 9+
+                    val unsafeClass = Class.forName("sun.misc.Unsafe")
+                    val theUnsafe = unsafeClass.getDeclaredField("theUnsafe")
+                    theUnsafe.isAccessible = true
+                    unsafeClass.getMethod("invokeCleaner", ByteBuffer::class.java)
+                            .invoke(theUnsafe.get(null), buffer)
+                } catch (e: NoSuchMethodException) {
+                    // Java 8
+                    val cleanerMethod = buffer.javaClass.getMethod("cleaner")
+                    cleanerMethod.isAccessible = true
+                    val cleaner = cleanerMethod.invoke(buffer) ?: return
+                    val clean = cleaner.javaClass.getMethod("clean")
+                    clean.isAccessible = true
+                    clean.invoke(cleaner)
+                }
+            } catch (t: Throwable) {
+                L.d(t, "Could not unmap the data binding intermediate")
+            }
+        }
+    }
+}
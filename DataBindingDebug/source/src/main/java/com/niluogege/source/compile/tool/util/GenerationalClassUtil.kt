@@ -18,6 +18,7 @@ package android.databinding.tool.util
 import android.databinding.annotationprocessor.ProcessExpressions
 import android.databinding.tool.CompilerArguments
 import android.databinding.tool.Context
+import android.databinding.tool.store.BindingAdapterStore
 import com.google.gson.GsonBuilder
 import org.apache.commons.io.FileUtils
 import org.apache.commons.io.IOUtils
@@ -30,12 +31,18 @@ import java.io.ObjectStreamClass
 
 class GenerationalClassUtil constructor(
         private val inputDir: File,
-        private val outputDir : File?
+        private val outputDir : File?,
+        /**
+         * Whether [write] also writes the intermediates that have a binary variant. Only needed
+         * for consumers built with versions of data binding that can't read the binary files.
+         */
+        val writesLegacyIntermediates: Boolean = false
 ) {
 
     private constructor(args : CompilerArguments) : this(
             inputDir = args.dependencyArtifactsDir,
-            outputDir = args.aarOutDir
+            outputDir = args.aarOutDir,
+            writesLegacyIntermediates = args.writeLegacyIntermediates
     )
 
     // used when serializing the intermediate. This allows us to ensure that future updates are
@@ -55,14 +62,37 @@ class GenerationalClassUtil constructor(
         fun get(): GenerationalClassUtil {
             return Context.generationalClassUtil!!
         }
+
+        /**
+         * Converts the intermediates in the given directories to the binary format. See
+         * [convertToBinary].
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            args.forEach {
+                val converted = GenerationalClassUtil(File(it), null).convertToBinary()
+                println("converted $converted intermediates in $it")
+            }
+        }
+    }
+
+    // the dependency artifacts don't change during a build, walk them only once
+    private val inputFiles by lazy(LazyThreadSafetyMode.SYNCHRONIZED) {
+        inputDir.walkTopDown().filter { it.isFile }.toList()
     }
 
+    // readers handed out by loadBinary, closed in releaseBinaryIntermediates
+    private val binaryReaders = ArrayList<BinaryIntermediateReader>()
+
     /**
      * used for java code since it cannot call reified kotlin function.
+     *
+     * Files that have a binary copy are skipped; they are read by [loadBinary] instead.
      */
     fun <T : Any> load(ext : ExtensionFilter, klass : Class<T>) : List<T> {
-        return inputDir.walkTopDown().filter {
-            it.isFile && it.name.endsWith(ext.ext)
+        Preconditions.check(!ext.isBinary, "%s must be read with loadBinary", ext)
+        return inputFiles.filter {
+            it.name.endsWith(ext.ext) && !hasBinaryCopy(it, ext)
         }.mapNotNull {
             if (ext.isJson) {
                 it.bufferedReader(Charsets.UTF_8).use { reader -> GSON.fromJson(reader, klass) }
@@ -77,7 +107,107 @@ class GenerationalClassUtil constructor(
         return load(ext, T::class.java)
     }
 
+    /**
+     * Opens the binary intermediates of the given type. Their contents are decoded when they are
+     * read, until [releaseBinaryIntermediates] is called.
+     */
+    fun loadBinary(ext : ExtensionFilter) : List<BinaryIntermediateReader> {
+        Preconditions.check(ext.isBinary, "%s is not a binary intermediate", ext)
+        val readers = inputFiles.filter {
+            it.name.endsWith(ext.ext)
+        }.mapNotNull {
+            try {
+                BinaryIntermediateReader.open(it)
+            } catch (e: IOException) {
+                L.e(e, "Could not read binary intermediate file. %s", it.absolutePath)
+                null
+            }
+        }
+        synchronized(binaryReaders) {
+            binaryReaders.addAll(readers)
+        }
+        return readers
+    }
+
+    /**
+     * Closes the readers returned from [loadBinary] so that the files they mapped are not kept
+     * open by a long living Gradle daemon. Nothing read from them can be used afterwards.
+     */
+    fun releaseBinaryIntermediates() {
+        val readers = synchronized(binaryReaders) {
+            val copy = binaryReaders.toList()
+            binaryReaders.clear()
+            copy
+        }
+        readers.forEach { it.close() }
+    }
+
+    private fun hasBinaryCopy(file: File, ext: ExtensionFilter): Boolean {
+        val binary = ext.binaryVariant ?: return false
+        return File(file.parentFile, file.name.removeSuffix(ext.ext) + binary.ext).isFile
+    }
+
+    fun writeBinary(pkg: String, ext: ExtensionFilter, writer: BinaryIntermediateWriter) {
+        L.d("writing binary output file for %s, %s into %s", pkg, ext, outputDir)
+        try {
+            Preconditions.check(ext.isBinary, "%s is not a binary intermediate", ext)
+            Preconditions.checkNotNull(outputDir,
+                    "incremental out directory should be" + " set to aar output directory.")
+            outputDir!!.mkdirs()
+            val outFile = File(outputDir, "$pkg${ext.ext}")
+            writer.writeTo(outFile)
+            L.d("done writing binary output file %s into %s", pkg, outFile.canonicalPath)
+        } catch (t : Throwable) {
+            L.e(t, "cannot write file $pkg $ext")
+        }
+    }
+
+    /**
+     * Writes a binary copy next to each JSON or serialized intermediate in the input directory
+     * that does not have one yet. Once the copy exists, [load] skips the original file.
+     *
+     * @return The number of files that were converted.
+     */
+    fun convertToBinary(): Int {
+        var converted = 0
+        inputFiles.forEach { file ->
+            val ext = ExtensionFilter.values().firstOrNull {
+                it.binaryVariant != null && file.name.endsWith(it.ext)
+            } ?: return@forEach
+            if (hasBinaryCopy(file, ext)) {
+                return@forEach
+            }
+            val writer = when (ext) {
+                ExtensionFilter.SETTER_STORE_JSON -> file.bufferedReader(Charsets.UTF_8).use {
+                    GSON.fromJson(it, BindingAdapterStore::class.java)
+                }?.let {
+                    BindingAdapterStore.toBinary(it)
+                }
+                ExtensionFilter.SETTER_STORE -> deserializeObject<Any>(file)?.let {
+                    BindingAdapterStore.toBinary(it)
+                }
+                ExtensionFilter.LAYOUT ->
+                    deserializeObject<ProcessExpressions.Intermediate>(file)?.let {
+                        (it.upgrade() as ProcessExpressions.IntermediateV2).toBinary()
+                    }
+                else -> null
+            } ?: return@forEach
+            val binary = ext.binaryVariant!!
+            writer.writeTo(File(file.parentFile, file.name.removeSuffix(ext.ext) + binary.ext))
+            converted++
+        }
+        return converted
+    }
+
+    /**
+     * Writes the intermediate in the JSON or serialized format of `ext`. Formats that have a
+     * binary variant are skipped unless [writesLegacyIntermediates] is set; write those with
+     * [writeBinary].
+     */
     fun write(pkg:String, ext : ExtensionFilter, item: Any) {
+        if (ext.binaryVariant != null && !writesLegacyIntermediates) {
+            return
+        }
         L.d("writing output file for %s, %s into %s", pkg, ext, outputDir)
         try {
             Preconditions.checkNotNull(outputDir,
@@ -131,11 +261,27 @@ class GenerationalClassUtil constructor(
         return null
     }
 
-    enum class ExtensionFilter(val ext : String, val isJson : Boolean) {
+    enum class ExtensionFilter(
+            val ext : String,
+            val isJson : Boolean,
+            val isBinary : Boolean = false
+    ) {
         SETTER_STORE_JSON("-setter_store.json", true),
         BR("-br.bin", false),
         LAYOUT("-layoutinfo.bin", false),
-        SETTER_STORE("-setter_store.bin", false);
+        SETTER_STORE("-setter_store.bin", false),
+        SETTER_STORE_BINARY("-setter_store.dbin", false, true),
+        LAYOUT_BINARY("-layoutinfo.dbin", false, true);
+
+        /**
+         * The binary format that replaces this one, if any.
+         */
+        val binaryVariant : ExtensionFilter?
+            get() = when (this) {
+                SETTER_STORE_JSON, SETTER_STORE -> SETTER_STORE_BINARY
+                LAYOUT -> LAYOUT_BINARY
+                else -> null
+            }
     }
 
     private class IgnoreSerialIdObjectInputStream @Throws(IOException::class)
@@ -120,7 +120,8 @@ public class L {
                 fullMsg + " " + getStackTrace(t));
     }
 
-    private static void printMessage(Element element, Diagnostic.Kind kind, String message) {
+    private static synchronized void printMessage(Element element, Diagnostic.Kind kind,
+            String message) {
         if (kind == Kind.WARNING) {
             // try to convert it to a scoped message
             ScopedException ex = new ScopedException(message);
@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.databinding.DataBindingComponent;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.OnLifecycleEvent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * Inflates binding layouts and creates their bindings on a background thread.
+ * <p>
+ * Inflation, {@link ViewDataBinding#mapBindings} and the first
+ * {@link ViewDataBinding#executePendingBindings()} run on a dedicated {@link HandlerThread}. The
+ * binding is then handed back on the main thread, where it is moved over to the main thread's
+ * rebind scheduling before the callback sees it. Bindings are created through the regular
+ * {@link DataBinderMapper#getDataBinder} path, so included layouts and binding components work
+ * as with {@link DataBindingUtil#inflate}.
+ * <p>
+ * {@link #prewarm} fills a pool of ready bindings per layout id ahead of time, which lets
+ * <code>RecyclerView.Adapter#onCreateViewHolder</code> take a binding with
+ * {@link #obtain(LayoutInflater, int, ViewGroup)} instead of inflating while scrolling. At most
+ * {@link #MAX_PREWARMED_PER_LAYOUT} bindings are kept or in flight per layout id.
+ * <p>
+ * Prewarmed views hold on to the Context they were inflated with, so the pool is kept per
+ * Context and only hands out bindings to inflaters with the same Context. When that Context
+ * belongs to a {@link LifecycleOwner}, such as a ComponentActivity, its pool is dropped when the
+ * owner is destroyed. Pools of other Contexts must be dropped with {@link #clearPool(Context)}.
+ * <p>
+ * As with other asynchronous inflaters, layouts must not contain views that need to be created
+ * on the main thread. When inflation fails on the background thread, it is retried on the main
+ * thread.
+ */
+public final class AsyncBindingInflater {
+    private static final String TAG = "AsyncBindingInflater";
+
+    /**
+     * Callback for {@link #inflate}.
+     *
+     * @param <T> The type of the binding.
+     */
+    public interface OnBindingInflatedListener<T extends ViewDataBinding> {
+        /**
+         * Called on the main thread when the binding is ready to be attached.
+         *
+         * @param binding The new binding. Its root has not been added to a parent.
+         * @param layoutId The layout that was inflated.
+         * @param parent The parent that was passed to {@link #inflate}.
+         */
+        void onBindingInflated(@NonNull T binding, @LayoutRes int layoutId,
+                @Nullable ViewGroup parent);
+
+        /**
+         * Called on the main thread instead of {@link #onBindingInflated} when the layout
+         * couldn't be inflated on the main thread either, or isn't a binding layout.
+         *
+         * @param layoutId The layout that was requested.
+         * @param parent The parent that was passed to {@link #inflate}.
+         * @param error What went wrong.
+         */
+        void onBindingInflateFailed(@LayoutRes int layoutId, @Nullable ViewGroup parent,
+                @NonNull RuntimeException error);
+    }
+
+    /** The maximum number of prewarmed bindings kept or being inflated for one layout id. */
+    public static final int MAX_PREWARMED_PER_LAYOUT = 16;
+
+    private static volatile AsyncBindingInflater sInstance;
+
+    private final Looper mWorkerLooper;
+    private final Handler mWorkerHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Prewarmed bindings by the Context they were inflated with. Main thread only. */
+    private final HashMap<Context, ContextPool> mPools = new HashMap<>();
+
+    private AsyncBindingInflater() {
+        HandlerThread thread = new HandlerThread("DataBinding-AsyncInflater");
+        thread.start();
+        mWorkerLooper = thread.getLooper();
+        mWorkerHandler = new Handler(mWorkerLooper);
+    }
+
+    /**
+     * @return The process-wide inflater. Its thread is started on first use.
+     */
+    @NonNull
+    public static AsyncBindingInflater getInstance() {
+        AsyncBindingInflater inflater = sInstance;
+        if (inflater == null) {
+            synchronized (AsyncBindingInflater.class) {
+                inflater = sInstance;
+                if (inflater == null) {
+                    inflater = new AsyncBindingInflater();
+                    sInstance = inflater;
+                }
+            }
+        }
+        return inflater;
+    }
+
+    /**
+     * @return true if the calling thread is the background inflation thread.
+     */
+    static boolean isInflaterThread() {
+        final AsyncBindingInflater inflater = sInstance;
+        return inflater != null && Looper.myLooper() == inflater.mWorkerLooper;
+    }
+
+    /**
+     * Inflates <code>layoutId</code> and creates its binding on the background thread. Errors are
+     * reported to {@link OnBindingInflatedListener#onBindingInflateFailed}, never thrown.
+     *
+     * @param inflater The LayoutInflater to inflate with. A clone of it is used on the background
+     *                 thread.
+     * @param layoutId The layout resource ID of the layout to inflate.
+     * @param parent Optional view that provides the LayoutParams for the root of the layout.
+     *               The root is never attached to it.
+     * @param bindingComponent The DataBindingComponent to use in the binding.
+     * @param listener Called on the main thread with the new binding.
+     * @param <T> Type of the generated binding class.
+     */
+    public <T extends ViewDataBinding> void inflate(@NonNull final LayoutInflater inflater,
+            @LayoutRes final int layoutId, @Nullable final ViewGroup parent,
+            @Nullable final DataBindingComponent bindingComponent,
+            @NonNull final OnBindingInflatedListener<T> listener) {
+        mWorkerHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final T binding = inflateOnWorker(inflater, layoutId, parent, bindingComponent);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (binding != null) {
+                            binding.attachToMainThread();
+                            listener.onBindingInflated(binding, layoutId, parent);
+                            return;
+                        }
+                        // Nothing may be thrown here: there is no caller left to catch it.
+                        final T result;
+                        try {
+                            result = DataBindingUtil.inflate(inflater, layoutId, parent, false,
+                                    bindingComponent);
+                        } catch (RuntimeException e) {
+                            listener.onBindingInflateFailed(layoutId, parent, e);
+                            return;
+                        }
+                        if (result == null) {
+                            listener.onBindingInflateFailed(layoutId, parent,
+                                    new IllegalArgumentException(
+                                            "Layout " + layoutId + " is not a binding layout"));
+                        } else {
+                            listener.onBindingInflated(result, layoutId, parent);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Inflates <code>count</code> bindings of <code>layoutId</code> on the background thread and
+     * keeps them for {@link #obtain(LayoutInflater, int, ViewGroup)} with an inflater of the same
+     * Context. Bindings that would take the pool of <code>layoutId</code>, including those still
+     * being inflated, beyond {@link #MAX_PREWARMED_PER_LAYOUT} are not inflated. Nothing is
+     * inflated if the Context's lifecycle owner is already destroyed.
+     *
+     * @param inflater The LayoutInflater to inflate with.
+     * @param layoutId The layout resource ID of the layout to inflate.
+     * @param parent Optional view that provides the LayoutParams for the roots, typically the
+     *               RecyclerView the bindings will be used in.
+     * @param count The number of bindings to prepare.
+     */
+    @MainThread
+    public void prewarm(@NonNull LayoutInflater inflater, @LayoutRes int layoutId,
+            @Nullable ViewGroup parent, int count) {
+        final ContextPool pool = getOrCreatePool(inflater.getContext());
+        if (pool == null) {
+            return;
+        }
+        final int room = MAX_PREWARMED_PER_LAYOUT - pool.getPooledCount(layoutId)
+                - pool.mPrewarming.get(layoutId);
+        final int inflations = Math.min(count, room);
+        if (inflations <= 0) {
+            return;
+        }
+        pool.mPrewarming.put(layoutId, pool.mPrewarming.get(layoutId) + inflations);
+        for (int i = 0; i < inflations; i++) {
+            inflate(inflater, layoutId, parent, DataBindingUtil.getDefaultComponent(), pool);
+        }
+    }
+
+    /**
+     * Returns a binding of <code>layoutId</code> prewarmed with the Context of
+     * <code>inflater</code> or, if none is ready, inflates one on the calling thread.
+     *
+     * @param inflater The LayoutInflater to use when no prewarmed binding is ready.
+     * @param layoutId The layout resource ID.
+     * @param parent The parent providing the LayoutParams. The root is not attached to it.
+     * @param <T> Type of the generated binding class.
+     * @return A binding whose root has no parent.
+     */
+    @SuppressWarnings("unchecked")
+    @MainThread
+    public <T extends ViewDataBinding> T obtain(@NonNull LayoutInflater inflater,
+            @LayoutRes int layoutId, @Nullable ViewGroup parent) {
+        final ContextPool pool = mPools.get(inflater.getContext());
+        final ArrayDeque<ViewDataBinding> bindings =
+                pool == null ? null : pool.mBindings.get(layoutId);
+        if (bindings != null && !bindings.isEmpty()) {
+            return (T) bindings.poll();
+        }
+        return DataBindingUtil.inflate(inflater, layoutId, parent, false);
+    }
+
+    /**
+     * @return The number of bindings of <code>layoutId</code> prewarmed with
+     * <code>context</code> that are ready.
+     */
+    @MainThread
+    public int getPooledCount(@NonNull Context context, @LayoutRes int layoutId) {
+        final ContextPool pool = mPools.get(context);
+        return pool == null ? 0 : pool.getPooledCount(layoutId);
+    }
+
+    /**
+     * Drops the bindings prewarmed with <code>context</code>. Bindings of that Context that are
+     * still being inflated are dropped when they are done.
+     */
+    @MainThread
+    public void clearPool(@NonNull Context context) {
+        final ContextPool pool = mPools.remove(context);
+        if (pool != null) {
+            pool.release();
+        }
+    }
+
+    /**
+     * Drops all prewarmed bindings.
+     */
+    @MainThread
+    public void clearPool() {
+        for (ContextPool pool : mPools.values()) {
+            pool.release();
+        }
+        mPools.clear();
+    }
+
+    @Nullable
+    private ContextPool getOrCreatePool(@NonNull Context context) {
+        ContextPool pool = mPools.get(context);
+        if (pool != null) {
+            return pool;
+        }
+        final LifecycleOwner owner = findLifecycleOwner(context);
+        if (owner != null) {
+            if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                return null;
+            }
+        } else if (context.getApplicationContext() != context) {
+            Log.w(TAG, "No lifecycle owner found for " + context + ", its prewarmed bindings"
+                    + " are kept until clearPool(Context) is called");
+        }
+        pool = new ContextPool(context, owner);
+        mPools.put(context, pool);
+        if (owner != null) {
+            owner.getLifecycle().addObserver(pool);
+        }
+        return pool;
+    }
+
+    @Nullable
+    private static LifecycleOwner findLifecycleOwner(@NonNull Context context) {
+        Context current = context;
+        while (true) {
+            if (current instanceof LifecycleOwner) {
+                return (LifecycleOwner) current;
+            }
+            if (!(current instanceof ContextWrapper)) {
+                return null;
+            }
+            final Context base = ((ContextWrapper) current).getBaseContext();
+            if (base == null || base == current) {
+                return null;
+            }
+            current = base;
+        }
+    }
+
+    @Nullable
+    private <T extends ViewDataBinding> T inflateOnWorker(LayoutInflater inflater, int layoutId,
+            ViewGroup parent, DataBindingComponent bindingComponent) {
+        try {
+            // LayoutInflater isn't thread safe, so don't share it with the main thread.
+            final LayoutInflater workerInflater = inflater.cloneInContext(inflater.getContext());
+            final View root = workerInflater.inflate(layoutId, parent, false);
+            final T binding = DataBindingUtil.bind(bindingComponent, root, layoutId);
+            if (binding != null) {
+                // the root isn't attached yet, so the first pass can run here as well
+                binding.executePendingBindings();
+            }
+            return binding;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to inflate " + layoutId + " in the background,"
+                    + " falling back to the main thread", e);
+            return null;
+        }
+    }
+
+    /**
+     * The prewarmed bindings of one Context. Receives the prewarm inflations of that Context and
+     * drops everything when the Context's lifecycle owner is destroyed.
+     */
+    class ContextPool implements OnBindingInflatedListener<ViewDataBinding>, LifecycleObserver {
+        private final Context mContext;
+        @Nullable
+        private final LifecycleOwner mOwner;
+
+        /** Ready bindings by layout id. */
+        final SparseArray<ArrayDeque<ViewDataBinding>> mBindings = new SparseArray<>();
+
+        /** Prewarm inflations still running, by layout id. */
+        final SparseIntArray mPrewarming = new SparseIntArray();
+
+        private boolean mReleased;
+
+        ContextPool(@NonNull Context context, @Nullable LifecycleOwner owner) {
+            mContext = context;
+            mOwner = owner;
+        }
+
+        int getPooledCount(int layoutId) {
+            final ArrayDeque<ViewDataBinding> bindings = mBindings.get(layoutId);
+            return bindings == null ? 0 : bindings.size();
+        }
+
+        @Override
+        public void onBindingInflated(@NonNull ViewDataBinding binding, int layoutId,
+                @Nullable ViewGroup parent) {
+            mPrewarming.put(layoutId, mPrewarming.get(layoutId) - 1);
+            if (mReleased) {
+                return;
+            }
+            ArrayDeque<ViewDataBinding> bindings = mBindings.get(layoutId);
+            if (bindings == null) {
+                bindings = new ArrayDeque<>();
+                mBindings.put(layoutId, bindings);
+            }
+            if (bindings.size() < MAX_PREWARMED_PER_LAYOUT) {
+                bindings.add(binding);
+            }
+        }
+
+        @Override
+        public void onBindingInflateFailed(int layoutId, @Nullable ViewGroup parent,
+                @NonNull RuntimeException error) {
+            mPrewarming.put(layoutId, mPrewarming.get(layoutId) - 1);
+            Log.e(TAG, "Failed to prewarm " + layoutId, error);
+        }
+
+        @OnLifecycleEvent(Lifecycle.Event.ON_DESTROY)
+        public void onDestroy() {
+            if (mPools.get(mContext) == this) {
+                mPools.remove(mContext);
+            }
+            release();
+        }
+
+        void release() {
+            mReleased = true;
+            mBindings.clear();
+            if (mOwner != null) {
+                mOwner.getLifecycle().removeObserver(this);
+            }
+        }
+    }
+}
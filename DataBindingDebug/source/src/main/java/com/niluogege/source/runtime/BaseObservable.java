@@ -20,46 +20,79 @@ import androidx.annotation.NonNull;
 import androidx.databinding.Bindable;
 import androidx.databinding.Observable;
 
+import java.util.BitSet;
+
 /**
  * A convenience class that implements {@link android.databinding.Observable} interface and provides
  * {@link #notifyPropertyChanged(int)} and {@link #notifyChange} methods.
+ * <p>
+ * Several changes can be coalesced with {@link #beginBatch()} and {@link #endBatch()}.
  */
 public class BaseObservable implements Observable {
-    private transient PropertyChangeRegistry mCallbacks;
+    private transient volatile PropertyChangeRegistry mCallbacks;
+
+    /**
+     * The number of open batches. Only modified while holding the lock on this.
+     */
+    private transient volatile int mBatchDepth;
+
+    /**
+     * The BR ids notified during the open batch. Guarded by this.
+     */
+    private transient BitSet mBatchedIds;
 
     public BaseObservable() {
     }
 
     @Override
     public void addOnPropertyChangedCallback(@NonNull OnPropertyChangedCallback callback) {
-        synchronized (this) {
-            if (mCallbacks == null) {
-                mCallbacks = new PropertyChangeRegistry();
+        getOrCreateCallbacks().add(callback);
+    }
+
+    /**
+     * Adds a callback that is only notified when one of the given properties changes or when
+     * all properties change through {@link #notifyChange()}. Other property changes skip the
+     * callback entirely, which saves work when an object has many {@link Bindable} properties
+     * and many callbacks that only care about a few of them.
+     *
+     * @param callback The callback to add.
+     * @param propertyIds The generated BR ids of the properties the callback is interested in.
+     */
+    public void addOnPropertyChangedCallback(@NonNull OnPropertyChangedCallback callback,
+            @NonNull int[] propertyIds) {
+        getOrCreateCallbacks().add(callback, propertyIds);
+    }
+
+    private PropertyChangeRegistry getOrCreateCallbacks() {
+        PropertyChangeRegistry callbacks = mCallbacks;
+        if (callbacks == null) {
+            synchronized (this) {
+                callbacks = mCallbacks;
+                if (callbacks == null) {
+                    callbacks = new PropertyChangeRegistry();
+                    mCallbacks = callbacks;
+                }
             }
         }
-        mCallbacks.add(callback);
+        return callbacks;
     }
 
     @Override
     public void removeOnPropertyChangedCallback(@NonNull OnPropertyChangedCallback callback) {
-        synchronized (this) {
-            if (mCallbacks == null) {
-                return;
-            }
+        final PropertyChangeRegistry callbacks = mCallbacks;
+        if (callbacks != null) {
+            callbacks.remove(callback);
         }
-        mCallbacks.remove(callback);
     }
 
     /**
      * Notifies listeners that all properties of this instance have changed.
      */
     public void notifyChange() {
-        synchronized (this) {
-            if (mCallbacks == null) {
-                return;
-            }
+        final PropertyChangeRegistry callbacks = mCallbacks;
+        if (callbacks != null && !addToBatch(0)) {
+            callbacks.notifyCallbacks(this, 0, null);
         }
-        mCallbacks.notifyCallbacks(this, 0, null);
     }
 
     /**
@@ -70,11 +103,78 @@ public class BaseObservable implements Observable {
      * @param fieldId The generated BR id for the Bindable field.
      */
     public void notifyPropertyChanged(int fieldId) {
+        final PropertyChangeRegistry callbacks = mCallbacks;
+        if (callbacks != null && !addToBatch(fieldId)) {
+            callbacks.notifyCallbacks(this, fieldId, null);
+        }
+    }
+
+    /**
+     * Starts collecting notifications instead of sending them. Until the matching
+     * {@link #endBatch()}, {@link #notifyPropertyChanged(int)} and {@link #notifyChange()} only
+     * record the BR id. Each recorded id is then sent once when the outermost batch ends, or
+     * just <code>BR._all</code> if {@link #notifyChange()} was called.
+     * <p>
+     * Batches nest: only the outermost {@link #endBatch()} sends notifications. The batch
+     * belongs to this object, not to a thread, so notifications from any thread are collected
+     * while a batch is open and they are sent on the thread that ends the outermost batch.
+     */
+    public void beginBatch() {
+        synchronized (this) {
+            mBatchDepth++;
+        }
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatch()}. When this ends the outermost batch, the
+     * notifications collected during the batch are sent, each BR id once.
+     *
+     * @throws IllegalStateException if there is no open batch.
+     */
+    public void endBatch() {
+        final BitSet batchedIds;
         synchronized (this) {
-            if (mCallbacks == null) {
+            if (mBatchDepth == 0) {
+                throw new IllegalStateException("endBatch() called without beginBatch()");
+            }
+            mBatchDepth--;
+            if (mBatchDepth > 0 || mBatchedIds == null || mBatchedIds.isEmpty()) {
                 return;
             }
+            batchedIds = mBatchedIds;
+            mBatchedIds = null;
+        }
+        final PropertyChangeRegistry callbacks = mCallbacks;
+        if (callbacks == null) {
+            return;
+        }
+        if (batchedIds.get(0)) {
+            callbacks.notifyCallbacks(this, 0, null);
+            return;
+        }
+        for (int id = batchedIds.nextSetBit(0); id >= 0; id = batchedIds.nextSetBit(id + 1)) {
+            callbacks.notifyCallbacks(this, id, null);
+        }
+    }
+
+    /**
+     * Records the id if a batch is open.
+     *
+     * @return true if the notification was added to the batch and must not be sent now.
+     */
+    private boolean addToBatch(int fieldId) {
+        if (mBatchDepth == 0) {
+            return false;
+        }
+        synchronized (this) {
+            if (mBatchDepth == 0) {
+                return false;
+            }
+            if (mBatchedIds == null) {
+                mBatchedIds = new BitSet();
+            }
+            mBatchedIds.set(fieldId);
+            return true;
         }
-        mCallbacks.notifyCallbacks(this, fieldId, null);
     }
 }
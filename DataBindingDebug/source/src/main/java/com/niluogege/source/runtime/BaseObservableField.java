@@ -5,6 +5,9 @@ import androidx.databinding.Observable;
 /**
  * A base class for ObservableField and its primitive siblings that captures the ability to
  * add dependencies.
+ * <p>
+ * Changes forwarded from dependencies go through {@link #notifyChange()}, so they are
+ * coalesced like any other change while a {@link #beginBatch() batch} is open.
  */
 abstract class BaseObservableField extends BaseObservable {
     public BaseObservableField() {
@@ -0,0 +1,457 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.niluogege.source.BuildConfig;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records why bindings rebind and how long their executeBindings takes.
+ * <p>
+ * Tracing is compiled in only when the <code>DATABINDING_TRACE</code> build config field is
+ * true. Every hook in {@link ViewDataBinding} is guarded by {@link #ENABLED}, so with the field
+ * false the hooks are removed by the compiler and cost nothing. When compiled in, tracing
+ * still has to be turned on with {@link #start()}.
+ * <p>
+ * Each field change that marks a binding dirty and each execution of a binding is kept in a
+ * fixed size ring buffer of preallocated slots that is written without locks or allocation; the
+ * oldest events are overwritten. {@link #getEvents()} copies the slots into {@link Event}s.
+ * Execution times and rebind latencies, from the first field change to the start of the
+ * execution, are also aggregated into histograms per binding class, that is per layout, which
+ * are kept until {@link #reset()}.
+ */
+public final class BindingTrace {
+
+    /** Whether tracing is compiled in. */
+    public static final boolean ENABLED = BuildConfig.DATABINDING_TRACE;
+
+    /** The number of events kept in the ring buffer. */
+    public static final int BUFFER_SIZE = 1024;
+
+    /**
+     * The number of histogram buckets. Bucket <code>i</code> counts durations in
+     * <code>[2^(i-1), 2^i)</code> microseconds, bucket 0 those below one microsecond and the
+     * last one everything longer.
+     */
+    public static final int BUCKET_COUNT = 20;
+
+    /** An observable changed a field of a binding and marked it dirty. */
+    public static final int EVENT_FIELD_CHANGE = 1;
+
+    /** A binding executed its bindings. */
+    public static final int EVENT_EXECUTE = 2;
+
+    private static volatile boolean sTracing;
+
+    private static final AtomicLong sSequence = new AtomicLong();
+
+    /** Sequence stored in a slot that has never been written. */
+    private static final long SLOT_EMPTY = -1;
+
+    /** Sequence stored in a slot while a writer fills it. */
+    private static final long SLOT_WRITING = -2;
+
+    private static final Slot[] sSlots = new Slot[BUFFER_SIZE];
+
+    /**
+     * The sequence of the event held by each slot, or {@link #SLOT_EMPTY} /
+     * {@link #SLOT_WRITING}. Writers claim a slot by swapping in SLOT_WRITING and publish it by
+     * storing the sequence once every field is written.
+     */
+    private static final AtomicLongArray sSlotSequences = new AtomicLongArray(BUFFER_SIZE);
+
+    static {
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            sSlots[i] = new Slot();
+            sSlotSequences.set(i, SLOT_EMPTY);
+        }
+    }
+
+    private static final ConcurrentHashMap<Class<?>, LayoutHistogram> sHistograms =
+            new ConcurrentHashMap<>();
+
+    private BindingTrace() {
+    }
+
+    /**
+     * A recorded field change or execution.
+     */
+    public static final class Event {
+        /** {@link #EVENT_FIELD_CHANGE} or {@link #EVENT_EXECUTE}. */
+        public final int type;
+        /** The {@link System#nanoTime()} the event was recorded at. */
+        public final long timeNanos;
+        /** The class of the binding, which identifies the layout. */
+        @NonNull
+        public final Class<?> bindingClass;
+        /** The identity hash code of the binding, to tell bindings of one layout apart. */
+        public final int bindingId;
+        /** For field changes, the class of the observable that changed, otherwise null. */
+        @Nullable
+        public final Class<?> observableClass;
+        /** For field changes, the local field id of the observable, otherwise -1. */
+        public final int localFieldId;
+        /** For field changes, the BR id of the changed property, 0 for the whole object. */
+        public final int propertyId;
+        /**
+         * For executions, the number of dirty flags set when the execution started, or -1 if
+         * the binding doesn't report them.
+         */
+        public final int dirtyFlagCount;
+        /** For executions, the time executeBindings took. */
+        public final long durationNanos;
+        /**
+         * For executions, the time from the first field change after the previous execution
+         * to the start of this one, or -1 if the execution wasn't caused by a traced change.
+         */
+        public final long latencyNanos;
+
+        Event(int type, long timeNanos, Class<?> bindingClass, int bindingId,
+                Class<?> observableClass, int localFieldId, int propertyId, int dirtyFlagCount,
+                long durationNanos, long latencyNanos) {
+            this.type = type;
+            this.timeNanos = timeNanos;
+            this.bindingClass = bindingClass;
+            this.bindingId = bindingId;
+            this.observableClass = observableClass;
+            this.localFieldId = localFieldId;
+            this.propertyId = propertyId;
+            this.dirtyFlagCount = dirtyFlagCount;
+            this.durationNanos = durationNanos;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public String toString() {
+            if (type == EVENT_FIELD_CHANGE) {
+                return bindingClass.getSimpleName() + "@" + Integer.toHexString(bindingId)
+                        + " field " + localFieldId + " (" + (observableClass == null
+                        ? "null" : observableClass.getSimpleName()) + ") property "
+                        + propertyId;
+            }
+            return bindingClass.getSimpleName() + "@" + Integer.toHexString(bindingId)
+                    + " executed " + dirtyFlagCount + " dirty flags in "
+                    + (durationNanos / 1000) + "us, latency "
+                    + (latencyNanos < 0 ? "-" : (latencyNanos / 1000) + "us");
+        }
+    }
+
+    /**
+     * A reusable ring buffer entry. The fields are volatile so that a reader that sees the same
+     * slot sequence before and after copying them knows the copy isn't torn.
+     */
+    private static final class Slot {
+        volatile int type;
+        volatile long timeNanos;
+        volatile Class<?> bindingClass;
+        volatile int bindingId;
+        volatile Class<?> observableClass;
+        volatile int localFieldId;
+        volatile int propertyId;
+        volatile int dirtyFlagCount;
+        volatile long durationNanos;
+        volatile long latencyNanos;
+
+        Event toEvent() {
+            return new Event(type, timeNanos, bindingClass, bindingId, observableClass,
+                    localFieldId, propertyId, dirtyFlagCount, durationNanos, latencyNanos);
+        }
+    }
+
+    /**
+     * Execution time and rebind latency histograms of one binding class.
+     */
+    public static final class LayoutHistogram {
+        @NonNull
+        public final Class<?> bindingClass;
+
+        private final AtomicLongArray mDurationBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLongArray mLatencyBuckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong mExecutionCount = new AtomicLong();
+        private final AtomicLong mTotalDurationNanos = new AtomicLong();
+        private final AtomicLong mMaxDurationNanos = new AtomicLong();
+        private final AtomicLong mTotalDirtyFlags = new AtomicLong();
+        private final AtomicLong mFieldChangeCount = new AtomicLong();
+
+        LayoutHistogram(Class<?> bindingClass) {
+            this.bindingClass = bindingClass;
+        }
+
+        void addExecution(int dirtyFlagCount, long durationNanos, long latencyNanos) {
+            mExecutionCount.incrementAndGet();
+            mTotalDurationNanos.addAndGet(durationNanos);
+            mDurationBuckets.incrementAndGet(bucketOf(durationNanos));
+            if (latencyNanos >= 0) {
+                mLatencyBuckets.incrementAndGet(bucketOf(latencyNanos));
+            }
+            if (dirtyFlagCount > 0) {
+                mTotalDirtyFlags.addAndGet(dirtyFlagCount);
+            }
+            long max;
+            do {
+                max = mMaxDurationNanos.get();
+            } while (durationNanos > max && !mMaxDurationNanos.compareAndSet(max, durationNanos));
+        }
+
+        /**
+         * @return The number of executions of bindings of this class.
+         */
+        public long getExecutionCount() {
+            return mExecutionCount.get();
+        }
+
+        /**
+         * @return The number of field changes that marked bindings of this class dirty.
+         */
+        public long getFieldChangeCount() {
+            return mFieldChangeCount.get();
+        }
+
+        /**
+         * @return The total time spent in executeBindings, in nanoseconds.
+         */
+        public long getTotalDurationNanos() {
+            return mTotalDurationNanos.get();
+        }
+
+        /**
+         * @return The longest executeBindings, in nanoseconds.
+         */
+        public long getMaxDurationNanos() {
+            return mMaxDurationNanos.get();
+        }
+
+        /**
+         * @return The total number of dirty flags over all executions.
+         */
+        public long getTotalDirtyFlags() {
+            return mTotalDirtyFlags.get();
+        }
+
+        /**
+         * @return A copy of the execution time histogram, see {@link #BUCKET_COUNT}.
+         */
+        @NonNull
+        public long[] getDurationHistogram() {
+            return toArray(mDurationBuckets);
+        }
+
+        /**
+         * @return A copy of the rebind latency histogram, see {@link #BUCKET_COUNT}.
+         */
+        @NonNull
+        public long[] getLatencyHistogram() {
+            return toArray(mLatencyBuckets);
+        }
+
+        private static long[] toArray(AtomicLongArray buckets) {
+            final long[] result = new long[buckets.length()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = buckets.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Starts recording. Has no effect unless tracing is compiled in.
+     */
+    public static void start() {
+        sTracing = ENABLED;
+    }
+
+    /**
+     * Stops recording. Recorded events and histograms are kept.
+     */
+    public static void stop() {
+        sTracing = false;
+    }
+
+    /**
+     * @return true if events are being recorded.
+     */
+    public static boolean isTracing() {
+        return ENABLED && sTracing;
+    }
+
+    /**
+     * Drops all recorded events and histograms and restarts the event sequence. Should be called
+     * while tracing is stopped; events recorded concurrently may survive the reset.
+     */
+    public static void reset() {
+        sSequence.set(0);
+        for (int i = 0; i < BUFFER_SIZE; i++) {
+            sSlotSequences.set(i, SLOT_EMPTY);
+        }
+        sHistograms.clear();
+    }
+
+    static void recordFieldChange(ViewDataBinding binding, Object observable, int localFieldId,
+            int propertyId) {
+        record(EVENT_FIELD_CHANGE, System.nanoTime(), binding,
+                observable == null ? null : observable.getClass(), localFieldId, propertyId,
+                -1, 0, -1);
+        histogramFor(binding.getClass()).mFieldChangeCount.incrementAndGet();
+    }
+
+    static void recordExecution(ViewDataBinding binding, long startNanos, int dirtyFlagCount,
+            long durationNanos, long latencyNanos) {
+        record(EVENT_EXECUTE, startNanos, binding, null, -1, 0,
+                dirtyFlagCount, durationNanos, latencyNanos);
+        histogramFor(binding.getClass()).addExecution(dirtyFlagCount, durationNanos,
+                latencyNanos);
+    }
+
+    private static void record(int type, long timeNanos, ViewDataBinding binding,
+            Class<?> observableClass, int localFieldId, int propertyId, int dirtyFlagCount,
+            long durationNanos, long latencyNanos) {
+        final long sequence = sSequence.getAndIncrement();
+        final int index = (int) (sequence & (BUFFER_SIZE - 1));
+        final long previous = sSlotSequences.get(index);
+        if (previous == SLOT_WRITING
+                || !sSlotSequences.compareAndSet(index, previous, SLOT_WRITING)) {
+            // Another writer lapped the whole buffer and is still filling this slot. Dropping
+            // the event is cheaper than waiting for it.
+            return;
+        }
+        final Slot slot = sSlots[index];
+        slot.type = type;
+        slot.timeNanos = timeNanos;
+        slot.bindingClass = binding.getClass();
+        slot.bindingId = System.identityHashCode(binding);
+        slot.observableClass = observableClass;
+        slot.localFieldId = localFieldId;
+        slot.propertyId = propertyId;
+        slot.dirtyFlagCount = dirtyFlagCount;
+        slot.durationNanos = durationNanos;
+        slot.latencyNanos = latencyNanos;
+        sSlotSequences.set(index, sequence);
+    }
+
+    private static LayoutHistogram histogramFor(Class<?> bindingClass) {
+        LayoutHistogram histogram = sHistograms.get(bindingClass);
+        if (histogram == null) {
+            final LayoutHistogram created = new LayoutHistogram(bindingClass);
+            histogram = sHistograms.putIfAbsent(bindingClass, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    private static int bucketOf(long nanos) {
+        final long micros = nanos / 1000;
+        if (micros <= 0) {
+            return 0;
+        }
+        final int bucket = Long.SIZE - Long.numberOfLeadingZeros(micros);
+        return bucket < BUCKET_COUNT ? bucket : BUCKET_COUNT - 1;
+    }
+
+    /**
+     * Returns the recorded events, oldest first. Events recorded while the copy is made may or
+     * may not be included.
+     *
+     * @return The events in the ring buffer.
+     */
+    @NonNull
+    public static List<Event> getEvents() {
+        final long end = sSequence.get();
+        final long start = Math.max(0, end - BUFFER_SIZE);
+        final List<Event> events = new ArrayList<>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            final int index = (int) (i & (BUFFER_SIZE - 1));
+            if (sSlotSequences.get(index) != i) {
+                continue; // not written yet, being written or already overwritten
+            }
+            final Event event = sSlots[index].toEvent();
+            if (sSlotSequences.get(index) == i) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * @return The histograms of every binding class that was traced.
+     */
+    @NonNull
+    public static List<LayoutHistogram> getHistograms() {
+        return new ArrayList<>(sHistograms.values());
+    }
+
+    /**
+     * Writes the histograms of every traced binding class, most expensive first.
+     *
+     * @param writer The writer to print to.
+     */
+    public static void dump(@NonNull PrintWriter writer) {
+        final List<LayoutHistogram> histograms = getHistograms();
+        Collections.sort(histograms, new Comparator<LayoutHistogram>() {
+            @Override
+            public int compare(LayoutHistogram a, LayoutHistogram b) {
+                return Long.compare(b.getTotalDurationNanos(), a.getTotalDurationNanos());
+            }
+        });
+        for (LayoutHistogram histogram : histograms) {
+            final long count = histogram.getExecutionCount();
+            writer.print(histogram.bindingClass.getName());
+            writer.print(": executions=");
+            writer.print(count);
+            writer.print(" fieldChanges=");
+            writer.print(histogram.getFieldChangeCount());
+            writer.print(" totalUs=");
+            writer.print(histogram.getTotalDurationNanos() / 1000);
+            writer.print(" maxUs=");
+            writer.print(histogram.getMaxDurationNanos() / 1000);
+            writer.print(" avgDirtyFlags=");
+            writer.println(count == 0 ? 0 : histogram.getTotalDirtyFlags() / count);
+            printBuckets(writer, "  duration", histogram.getDurationHistogram());
+            printBuckets(writer, "  latency ", histogram.getLatencyHistogram());
+        }
+        writer.flush();
+    }
+
+    private static void printBuckets(PrintWriter writer, String label, long[] buckets) {
+        writer.print(label);
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != 0) {
+                if (i == buckets.length - 1) {
+                    writer.print(" >=");
+                    writer.print(1L << (i - 1));
+                } else {
+                    writer.print(" <");
+                    writer.print(1L << i);
+                }
+                writer.print("us:");
+                writer.print(buckets[i]);
+            }
+        }
+        writer.println();
+    }
+}
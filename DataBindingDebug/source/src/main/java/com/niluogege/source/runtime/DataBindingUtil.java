@@ -25,6 +25,7 @@ import android.view.ViewParent;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.databinding.DataBinderMapperImpl;
 import androidx.databinding.DataBindingComponent;
 
@@ -40,6 +41,19 @@ public class DataBindingUtil {
      */
     private DataBindingUtil() {}
 
+    /**
+     * Replaces the mapper that creates the bindings of inflated layouts.
+     *
+     * @param mapper The mapper to use from now on.
+     * @return The mapper that was used before.
+     */
+    @VisibleForTesting
+    static DataBinderMapper swapMapper(@NonNull DataBinderMapper mapper) {
+        final DataBinderMapper previous = sMapper;
+        sMapper = mapper;
+        return previous;
+    }
+
     /**
      * Set the default {@link DataBindingComponent} to use for data binding.
      * <p>
@@ -134,6 +148,26 @@ public class DataBindingUtil {
         }
     }
 
+    /**
+     * Inflates a binding layout and creates its binding on a background thread. The binding is
+     * delivered on the main thread, with its root not yet added to <code>parent</code>. This
+     * uses the DataBindingComponent set in {@link #setDefaultComponent(DataBindingComponent)}.
+     *
+     * @param <T> Type of the generated binding class.
+     * @param inflater The LayoutInflater used to inflate the binding layout.
+     * @param layoutId The layout resource ID of the layout to inflate.
+     * @param parent Optional view that provides the LayoutParams for the root of the layout.
+     * @param listener Called on the main thread with the new binding, or with the error if the
+     *                 layout couldn't be inflated.
+     * @see AsyncBindingInflater
+     */
+    public static <T extends ViewDataBinding> void inflateAsync(@NonNull LayoutInflater inflater,
+            int layoutId, @Nullable ViewGroup parent,
+            @NonNull AsyncBindingInflater.OnBindingInflatedListener<T> listener) {
+        AsyncBindingInflater.getInstance().inflate(inflater, layoutId, parent, sDefaultComponent,
+                listener);
+    }
+
     /**
      * Returns the binding for the given layout root or creates a binding if one
      * does not exist. This uses the DataBindingComponent set in
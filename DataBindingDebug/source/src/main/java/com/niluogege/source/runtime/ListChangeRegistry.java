@@ -17,7 +17,7 @@ package com.niluogege.source.runtime;
 
 import androidx.annotation.NonNull;
 import androidx.core.util.Pools;
-import androidx.databinding.CallbackRegistry;
+import androidx.databinding.CallbackRegistry.NotifierCallback;
 import androidx.databinding.ObservableList;
 
 /**
@@ -25,10 +25,16 @@ import androidx.databinding.ObservableList;
  */
 public class ListChangeRegistry
         extends
-        CallbackRegistry<ObservableList.OnListChangedCallback, ObservableList,
+        LockFreeCallbackRegistry<ObservableList.OnListChangedCallback, ObservableList,
                 ListChangeRegistry.ListChanges> {
-    private static final Pools.SynchronizedPool<ListChanges> sListChanges =
-            new Pools.SynchronizedPool<ListChanges>(10);
+    // One pool per thread so that notifying from several threads doesn't contend on a lock.
+    private static final ThreadLocal<Pools.SimplePool<ListChanges>> sListChanges =
+            new ThreadLocal<Pools.SimplePool<ListChanges>>() {
+                @Override
+                protected Pools.SimplePool<ListChanges> initialValue() {
+                    return new Pools.SimplePool<ListChanges>(10);
+                }
+            };
 
     private static final int ALL = 0;
     private static final int CHANGED = 1;
@@ -122,7 +128,7 @@ public class ListChangeRegistry
     }
 
     private static ListChanges acquire(int start, int to, int count) {
-        ListChanges listChanges = sListChanges.acquire();
+        ListChanges listChanges = sListChanges.get().acquire();
         if (listChanges == null) {
             listChanges = new ListChanges();
         }
@@ -133,11 +139,11 @@ public class ListChangeRegistry
     }
 
     @Override
-    public synchronized void notifyCallbacks(@NonNull ObservableList sender, int notificationType,
+    public void notifyCallbacks(@NonNull ObservableList sender, int notificationType,
             ListChanges listChanges) {
         super.notifyCallbacks(sender, notificationType, listChanges);
         if (listChanges != null) {
-            sListChanges.release(listChanges);
+            sListChanges.get().release(listChanges);
         }
     }
 
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import androidx.annotation.NonNull;
+import androidx.databinding.CallbackRegistry;
+import androidx.databinding.CallbackRegistry.NotifierCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A lock-free {@link CallbackRegistry} with the same notification semantics.
+ * <p>
+ * Callbacks are kept in an immutable array that is replaced on every add or remove, so
+ * {@link #notifyCallbacks(Object, int, Object)} never takes a lock and never allocates. This
+ * makes it a good fit for observables that are notified far more often than their callbacks
+ * change, including notifications from several threads at once.
+ * <p>
+ * As with CallbackRegistry, a callback added during a notification is not called until the next
+ * notification and a callback removed during a notification is not called if it hasn't been
+ * called yet.
+ * <p>
+ * It still extends CallbackRegistry so that it can be passed anywhere a CallbackRegistry is
+ * expected, but overrides every public method and never touches the superclass's state or
+ * monitor. {@link PropertyChangeRegistry}, {@link ListChangeRegistry} and
+ * {@link MapChangeRegistry} all use it, so none of the observable registries holds a lock while
+ * calling out to a callback.
+ *
+ * @param <C> The callback type.
+ * @param <T> The notification sender type. Typically this is the containing class.
+ * @param <A> Opaque argument used to pass additional data beyond an int.
+ */
+public class LockFreeCallbackRegistry<C, T, A> extends CallbackRegistry<C, T, A> {
+    private static final Object[] EMPTY = new Object[0];
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LockFreeCallbackRegistry, Object[]>
+            CALLBACKS = AtomicReferenceFieldUpdater.newUpdater(LockFreeCallbackRegistry.class,
+            Object[].class, "mCallbacks");
+
+    /** The current callbacks. The array is never modified once published. */
+    private volatile Object[] mCallbacks = EMPTY;
+
+    /** The notifier that is used to call the callbacks. */
+    private final NotifierCallback<C, T, A> mNotifier;
+
+    /**
+     * Creates a registry that notifies its callbacks with notifier.
+     *
+     * @param notifier The class to use to notify events.
+     */
+    public LockFreeCallbackRegistry(NotifierCallback<C, T, A> notifier) {
+        super(notifier);
+        mNotifier = notifier;
+    }
+
+    /**
+     * Notify all callbacks.
+     *
+     * @param sender The originator. This is an opaque parameter passed to
+     *               {@link NotifierCallback#onNotifyCallback(Object, Object, int, Object)}
+     * @param arg An opaque parameter passed to
+     *            {@link NotifierCallback#onNotifyCallback(Object, Object, int, Object)}
+     * @param arg2 An opaque parameter passed to
+     *             {@link NotifierCallback#onNotifyCallback(Object, Object, int, Object)}
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void notifyCallbacks(T sender, int arg, A arg2) {
+        final Object[] snapshot = mCallbacks;
+        for (int i = 0; i < snapshot.length; i++) {
+            final C callback = (C) snapshot[i];
+            final Object[] current = mCallbacks;
+            if (current != snapshot && indexOf(current, callback) < 0) {
+                continue; // removed while notifying
+            }
+            mNotifier.onNotifyCallback(callback, sender, arg, arg2);
+        }
+    }
+
+    /**
+     * Add a callback to be notified. If the callback is already in the list, another won't be
+     * added. This does not affect current notifications.
+     *
+     * @param callback The callback to add.
+     */
+    @Override
+    public void add(C callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback cannot be null");
+        }
+        while (true) {
+            final Object[] current = mCallbacks;
+            if (indexOf(current, callback) >= 0) {
+                return;
+            }
+            final Object[] updated = new Object[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, current.length);
+            updated[current.length] = callback;
+            if (CALLBACKS.compareAndSet(this, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes a callback from the list. If the callback hasn't been notified yet by a
+     * notification in progress, it won't be notified.
+     *
+     * @param callback The callback to remove.
+     */
+    @Override
+    public void remove(C callback) {
+        while (true) {
+            final Object[] current = mCallbacks;
+            final int index = indexOf(current, callback);
+            if (index < 0) {
+                return;
+            }
+            final Object[] updated;
+            if (current.length == 1) {
+                updated = EMPTY;
+            } else {
+                updated = new Object[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index,
+                        current.length - index - 1);
+            }
+            if (CALLBACKS.compareAndSet(this, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Makes a copy of the registered callbacks and returns it.
+     *
+     * @return a copy of the registered callbacks.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public ArrayList<C> copyCallbacks() {
+        final Object[] current = mCallbacks;
+        final ArrayList<C> callbacks = new ArrayList<C>(current.length);
+        for (Object callback : current) {
+            callbacks.add((C) callback);
+        }
+        return callbacks;
+    }
+
+    /**
+     * Modifies <code>callbacks</code> to contain all callbacks in the registry.
+     *
+     * @param callbacks modified to contain all callbacks registered to receive events.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public void copyCallbacks(@NonNull List<C> callbacks) {
+        callbacks.clear();
+        for (Object callback : mCallbacks) {
+            callbacks.add((C) callback);
+        }
+    }
+
+    /**
+     * Returns true if there are no registered callbacks or false otherwise.
+     *
+     * @return true if there are no registered callbacks or false otherwise.
+     */
+    @Override
+    public boolean isEmpty() {
+        return mCallbacks.length == 0;
+    }
+
+    /**
+     * Removes all callbacks from the list.
+     */
+    @Override
+    public void clear() {
+        mCallbacks = EMPTY;
+    }
+
+    /**
+     * @return A copy of the LockFreeCallbackRegistry with all callbacks listening to both
+     * instances.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public LockFreeCallbackRegistry<C, T, A> clone() {
+        // The callbacks array is immutable, so both instances can share it. The superclass only
+        // copies its own, always empty, callback list.
+        return (LockFreeCallbackRegistry<C, T, A>) super.clone();
+    }
+
+    private static int indexOf(Object[] callbacks, Object callback) {
+        for (int i = 0; i < callbacks.length; i++) {
+            final Object registered = callbacks[i];
+            if (registered == callback || registered.equals(callback)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
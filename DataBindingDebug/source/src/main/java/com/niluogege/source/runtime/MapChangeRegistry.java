@@ -17,14 +17,14 @@ package com.niluogege.source.runtime;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.databinding.CallbackRegistry;
+import androidx.databinding.CallbackRegistry.NotifierCallback;
 import androidx.databinding.ObservableMap;
 
 /**
  * Utility class for managing ObservableMap callbacks.
  */
 public class MapChangeRegistry
-        extends CallbackRegistry<ObservableMap.OnMapChangedCallback, ObservableMap, Object> {
+        extends LockFreeCallbackRegistry<ObservableMap.OnMapChangedCallback, ObservableMap, Object> {
 
     private static NotifierCallback<ObservableMap.OnMapChangedCallback, ObservableMap, Object> NOTIFIER_CALLBACK =
             new NotifierCallback<ObservableMap.OnMapChangedCallback, ObservableMap, Object>() {
@@ -25,10 +25,20 @@ import androidx.databinding.DataBindingComponent;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A data binding mapper that merges other mappers.
+ * <p>
+ * Mappers can't list the layouts they know, so lookups are indexed as they are answered: the
+ * first lookup of a layout id, tag or BR id asks each mapper in turn and remembers the answer.
+ * Later lookups are constant time, however many modules the app has. Mappers are only ever
+ * appended, so a remembered answer stays the one a full scan would find.
+ * <p>
+ * Lookups may come from the background thread of {@link AsyncBindingInflater}, so adding
+ * mappers, including the lazy loading of feature mappers, is synchronized. Lookups only read
+ * copy-on-write lists and concurrent maps and don't lock.
  */
 @SuppressWarnings("unused")
 public class MergedDataBinderMapper extends DataBinderMapper {
@@ -36,13 +46,20 @@ public class MergedDataBinderMapper extends DataBinderMapper {
     // we keep set of existing classes so that addMapper can avoid re-adding same class.
     // usually not necessary as list lookup might be sufficient but if the project has 100+
     // modules, it might matter, hence we have a fast lookup as well.
-    private Set<Class<? extends DataBinderMapper>> mExistingMappers = new HashSet<>();
-    private List<DataBinderMapper> mMappers = new CopyOnWriteArrayList<>();
+    // Guarded by this.
+    private final Set<Class<? extends DataBinderMapper>> mExistingMappers = new HashSet<>();
+    private final List<DataBinderMapper> mMappers = new CopyOnWriteArrayList<>();
     /**
      * List of features that have binding mappers. We try to load those classes lazily when we
      * cannot find a binding.
      */
-    private List<String> mFeatureBindingMappers = new CopyOnWriteArrayList<>();
+    private final List<String> mFeatureBindingMappers = new CopyOnWriteArrayList<>();
+
+    /** The mapper that created a binding for each layout id. */
+    private final ConcurrentHashMap<Integer, DataBinderMapper> mMappersByLayoutId =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> mLayoutIdsByTag = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, String> mBrNamesById = new ConcurrentHashMap<>();
 
     /**
      * Adds the provided mapper to the list of mappers unless an instance of it already exists
@@ -54,7 +71,7 @@ public class MergedDataBinderMapper extends DataBinderMapper {
      */
     //第一次加载 DataBindingUtil 所有的 DataBinderMapperImpl 都会缓存到 mExistingMappers 和 mMappers 中
     @SuppressWarnings("WeakerAccess")
-    public void addMapper(DataBinderMapper mapper) {
+    public synchronized void addMapper(DataBinderMapper mapper) {
         Class<? extends DataBinderMapper> mapperClass = mapper.getClass();
         if (mExistingMappers.add(mapperClass)) {
             mMappers.add(mapper);
@@ -74,10 +91,18 @@ public class MergedDataBinderMapper extends DataBinderMapper {
     @Override
     public ViewDataBinding getDataBinder(DataBindingComponent bindingComponent, View view,
                                          int layoutId) {
+        final DataBinderMapper indexed = mMappersByLayoutId.get(layoutId);
+        if (indexed != null) {
+            ViewDataBinding result = indexed.getDataBinder(bindingComponent, view, layoutId);
+            if (result != null) {
+                return result;
+            }
+        }
         for(DataBinderMapper mapper : mMappers) {
             //通过 layout id 找到 对应 ...BindingImpl 并返回，
             ViewDataBinding result = mapper.getDataBinder(bindingComponent, view, layoutId);
             if (result != null) {
+                mMappersByLayoutId.put(layoutId, mapper);
                 return result;
             }
         }
@@ -90,9 +115,17 @@ public class MergedDataBinderMapper extends DataBinderMapper {
     @Override
     public ViewDataBinding getDataBinder(DataBindingComponent bindingComponent, View[] view,
                                          int layoutId) {
+        final DataBinderMapper indexed = mMappersByLayoutId.get(layoutId);
+        if (indexed != null) {
+            ViewDataBinding result = indexed.getDataBinder(bindingComponent, view, layoutId);
+            if (result != null) {
+                return result;
+            }
+        }
         for(DataBinderMapper mapper : mMappers) {
             ViewDataBinding result = mapper.getDataBinder(bindingComponent, view, layoutId);
             if (result != null) {
+                mMappersByLayoutId.put(layoutId, mapper);
                 return result;
             }
         }
@@ -104,9 +137,16 @@ public class MergedDataBinderMapper extends DataBinderMapper {
 
     @Override
     public int getLayoutId(String tag) {
+        final Integer indexed = tag == null ? null : mLayoutIdsByTag.get(tag);
+        if (indexed != null) {
+            return indexed;
+        }
         for(DataBinderMapper mapper : mMappers) {
             int result = mapper.getLayoutId(tag);
             if (result != 0) {
+                if (tag != null) {
+                    mLayoutIdsByTag.put(tag, result);
+                }
                 return result;
             }
         }
@@ -118,9 +158,14 @@ public class MergedDataBinderMapper extends DataBinderMapper {
 
     @Override
     public String convertBrIdToString(int id) {
+        final String indexed = mBrNamesById.get(id);
+        if (indexed != null) {
+            return indexed;
+        }
         for(DataBinderMapper mapper : mMappers) {
             String result = mapper.convertBrIdToString(id);
             if (result != null) {
+                mBrNamesById.put(id, result);
                 return result;
             }
         }
@@ -133,7 +178,7 @@ public class MergedDataBinderMapper extends DataBinderMapper {
     /**
      * @return true if we load a new mapper
      */
-    private boolean loadFeatures() {
+    private synchronized boolean loadFeatures() {
         boolean found = false;
         for (String mapper : mFeatureBindingMappers) {
             try {
@@ -15,6 +15,8 @@
  */
 package com.niluogege.source.runtime;
 
+import android.util.SparseArray;
+
 import androidx.databinding.ObservableList;
 
 import java.util.ArrayList;
@@ -22,9 +24,46 @@ import java.util.Collection;
 
 /**
  * An {@link ObservableList} implementation using ArrayList as an implementation.
+ * <p>
+ * Bulk edits can be wrapped in {@link #beginTransaction()} and {@link #commitTransaction()} so
+ * that listeners receive a minimal list of range changes instead of one change per call.
  */
 public class ObservableArrayList<T> extends ArrayList<T> implements ObservableList<T> {
-    private transient ListChangeRegistry mListeners = new ListChangeRegistry();
+    /**
+     * Once a transaction records more range changes than this, it is reported as a single
+     * whole-list change.
+     */
+    private static final int MAX_PENDING_CHANGES = 64;
+
+    private static final int CHANGED = 1;
+    private static final int INSERTED = 2;
+    private static final int REMOVED = 3;
+
+    // Callbacks of collected bindings are removed from the reaper thread.
+    private transient volatile ListChangeRegistry mListeners = new ListChangeRegistry();
+
+    private transient int mTransactionDepth;
+
+    /**
+     * Range changes recorded during the transaction, merged with their predecessor when possible.
+     */
+    private transient ArrayList<PendingChange> mPendingChanges;
+
+    /**
+     * The value each index had before its first set() in a transaction that hasn't changed the
+     * list structure yet. Used to only report the elements that really changed.
+     */
+    private transient SparseArray<T> mOriginalValues;
+
+    /**
+     * true if the transaction inserted or removed elements.
+     */
+    private transient boolean mStructurallyChanged;
+
+    /**
+     * true if the transaction recorded too many changes to report them one by one.
+     */
+    private transient boolean mPendingOverflow;
 
     @Override
     public void addOnListChangedCallback(OnListChangedCallback listener) {
@@ -103,8 +142,15 @@ public class ObservableArrayList<T> extends ArrayList<T> implements ObservableLi
     @Override
     public T set(int index, T object) {
         T val = super.set(index, object);
-        if (mListeners != null) {
-            mListeners.notifyChanged(this, index, 1);
+        if (mTransactionDepth > 0 && !mStructurallyChanged) {
+            if (mOriginalValues == null) {
+                mOriginalValues = new SparseArray<>();
+            }
+            if (mOriginalValues.indexOfKey(index) < 0) {
+                mOriginalValues.put(index, val);
+            }
+        } else {
+            notifyChange(index, 1);
         }
         return val;
     }
@@ -115,15 +161,210 @@ public class ObservableArrayList<T> extends ArrayList<T> implements ObservableLi
         notifyRemove(fromIndex, toIndex - fromIndex);
     }
 
-    private void notifyAdd(int start, int count) {
+    /**
+     * Starts a transaction. Until the matching {@link #commitTransaction()}, changes to the list
+     * are recorded instead of being sent to the listeners. Adjacent or overlapping inserts,
+     * removals and changes are merged as they are recorded. Transactions nest; only the
+     * outermost commit notifies the listeners.
+     */
+    public void beginTransaction() {
+        if (mTransactionDepth++ == 0) {
+            if (mPendingChanges == null) {
+                mPendingChanges = new ArrayList<>();
+            }
+            mStructurallyChanged = false;
+            mPendingOverflow = false;
+        }
+    }
+
+    /**
+     * Ends a transaction started with {@link #beginTransaction()}. When this ends the outermost
+     * transaction, the recorded changes are sent to the listeners.
+     * <p>
+     * If the transaction only replaced elements, the listeners are told about the ranges whose
+     * elements are no longer equal to the ones before the transaction. If it recorded too
+     * many separate changes, a single whole-list change is sent.
+     *
+     * @throws IllegalStateException if there is no open transaction.
+     */
+    public void commitTransaction() {
+        if (mTransactionDepth == 0) {
+            throw new IllegalStateException("commitTransaction() called without "
+                    + "beginTransaction()");
+        }
+        if (--mTransactionDepth > 0) {
+            return;
+        }
         if (mListeners != null) {
+            if (mPendingOverflow) {
+                mListeners.notifyChanged(this);
+            } else if (mOriginalValues != null) {
+                notifyChangedValues();
+            } else {
+                for (int i = 0; i < mPendingChanges.size(); i++) {
+                    final PendingChange change = mPendingChanges.get(i);
+                    switch (change.type) {
+                        case CHANGED:
+                            mListeners.notifyChanged(this, change.start, change.count);
+                            break;
+                        case INSERTED:
+                            mListeners.notifyInserted(this, change.start, change.count);
+                            break;
+                        case REMOVED:
+                            mListeners.notifyRemoved(this, change.start, change.count);
+                            break;
+                    }
+                }
+            }
+        }
+        mPendingChanges.clear();
+        mOriginalValues = null;
+        mStructurallyChanged = false;
+        mPendingOverflow = false;
+    }
+
+    /**
+     * Sends changes for the runs of indices whose value differs from the original one.
+     */
+    private void notifyChangedValues() {
+        final SparseArray<T> originalValues = mOriginalValues;
+        int runStart = -1;
+        int runEnd = -1;
+        for (int i = 0; i < originalValues.size(); i++) {
+            final int index = originalValues.keyAt(i);
+            final T original = originalValues.valueAt(i);
+            final T current = get(index);
+            if (original == null ? current == null : original.equals(current)) {
+                continue;
+            }
+            if (index != runEnd) {
+                if (runStart >= 0) {
+                    mListeners.notifyChanged(this, runStart, runEnd - runStart);
+                }
+                runStart = index;
+            }
+            runEnd = index + 1;
+        }
+        if (runStart >= 0) {
+            mListeners.notifyChanged(this, runStart, runEnd - runStart);
+        }
+    }
+
+    private void notifyAdd(int start, int count) {
+        if (mTransactionDepth > 0) {
+            recordStructuralChange(INSERTED, start, count);
+        } else if (mListeners != null) {
             mListeners.notifyInserted(this, start, count);
         }
     }
 
     private void notifyRemove(int start, int count) {
-        if (mListeners != null) {
+        if (mTransactionDepth > 0) {
+            recordStructuralChange(REMOVED, start, count);
+        } else if (mListeners != null) {
             mListeners.notifyRemoved(this, start, count);
         }
     }
+
+    private void notifyChange(int start, int count) {
+        if (mTransactionDepth > 0) {
+            recordChange(CHANGED, start, count);
+        } else if (mListeners != null) {
+            mListeners.notifyChanged(this, start, count);
+        }
+    }
+
+    private void recordStructuralChange(int type, int start, int count) {
+        if (!mStructurallyChanged) {
+            mStructurallyChanged = true;
+            // Indices move from here on, so the values set so far become plain changes.
+            final SparseArray<T> originalValues = mOriginalValues;
+            mOriginalValues = null;
+            if (originalValues != null) {
+                for (int i = 0; i < originalValues.size(); i++) {
+                    recordChange(CHANGED, originalValues.keyAt(i), 1);
+                }
+            }
+        }
+        recordChange(type, start, count);
+    }
+
+    private void recordChange(int type, int start, int count) {
+        if (mPendingOverflow || count == 0 || mergeWithLast(type, start, count)) {
+            return;
+        }
+        if (mPendingChanges.size() == MAX_PENDING_CHANGES) {
+            mPendingOverflow = true;
+            mPendingChanges.clear();
+            return;
+        }
+        mPendingChanges.add(new PendingChange(type, start, count));
+    }
+
+    /**
+     * Tries to merge the change into the last recorded one.
+     *
+     * @return true if the change was merged and doesn't need to be recorded.
+     */
+    private boolean mergeWithLast(int type, int start, int count) {
+        final int size = mPendingChanges.size();
+        if (size == 0) {
+            return false;
+        }
+        final PendingChange last = mPendingChanges.get(size - 1);
+        final int lastEnd = last.start + last.count;
+        switch (type) {
+            case INSERTED:
+                if (last.type == INSERTED && start >= last.start && start <= lastEnd) {
+                    last.count += count;
+                    return true;
+                }
+                break;
+            case REMOVED:
+                if (last.type == REMOVED) {
+                    if (start == last.start) {
+                        last.count += count;
+                        return true;
+                    } else if (start + count == last.start) {
+                        last.start = start;
+                        last.count += count;
+                        return true;
+                    }
+                } else if (last.type == INSERTED && start >= last.start
+                        && start + count <= lastEnd) {
+                    // removing elements inserted in this transaction
+                    last.count -= count;
+                    if (last.count == 0) {
+                        mPendingChanges.remove(size - 1);
+                    }
+                    return true;
+                }
+                break;
+            case CHANGED:
+                if (last.type == CHANGED && start <= lastEnd && start + count >= last.start) {
+                    final int end = Math.max(lastEnd, start + count);
+                    last.start = Math.min(last.start, start);
+                    last.count = end - last.start;
+                    return true;
+                } else if (last.type == INSERTED && start >= last.start
+                        && start + count <= lastEnd) {
+                    // the inserted elements are reported with their final value anyway
+                    return true;
+                }
+                break;
+        }
+        return false;
+    }
+
+    private static class PendingChange {
+        final int type;
+        int start;
+        int count;
+
+        PendingChange(int type, int start, int count) {
+            this.type = type;
+            this.start = start;
+            this.count = count;
+        }
+    }
 }
@@ -22,7 +22,8 @@ import java.util.Collection;
 
 public class ObservableArrayMap<K, V> extends ArrayMap<K, V> implements ObservableMap<K, V> {
 
-    private transient MapChangeRegistry mListeners;
+    // Callbacks of collected bindings are removed from the reaper thread.
+    private transient volatile MapChangeRegistry mListeners;
 
     @Override
     public void addOnMapChangedCallback(
@@ -0,0 +1,610 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.databinding.ObservableMap;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An {@link ObservableMap} backed by an open-addressing hash table with linear probing.
+ * <p>
+ * {@link ObservableArrayMap} keeps its keys sorted by hash and shifts its arrays on every insert
+ * and remove, which is compact for small maps but quadratic when maps with thousands of keys are
+ * filled or trimmed. This map does the same operations in constant expected time and can be used
+ * anywhere an ObservableMap is accepted.
+ * <p>
+ * Single-key changes notify callbacks with the changed key, like ObservableArrayMap. Bulk
+ * operations ({@link #putAll(Map)}, {@link #removeAll(Collection)},
+ * {@link #retainAll(Collection)} and {@link #clear()}) send one notification for the whole
+ * operation: with the key if only one key changed, otherwise with a <code>null</code> key,
+ * meaning that any key may have changed.
+ */
+public class ObservableHashMap<K, V> extends AbstractMap<K, V> implements ObservableMap<K, V> {
+    private static final int MIN_CAPACITY = 8;
+
+    /** Stands in for the null key in mKeys, where null marks an empty slot. */
+    private static final Object NULL_KEY = new Object();
+
+    /** Marks a slot whose entry has been removed. Probing continues past it. */
+    private static final Object TOMBSTONE = new Object();
+
+    // Callbacks of collected bindings are removed from the reaper thread.
+    private transient volatile MapChangeRegistry mListeners;
+
+    private Object[] mKeys;
+    private Object[] mValues;
+    private int mSize;
+
+    /** The number of slots holding a tombstone. */
+    private int mTombstones;
+
+    private int mModCount;
+
+    private transient Set<Entry<K, V>> mEntrySet;
+    private transient Set<K> mKeySet;
+
+    /**
+     * Creates an empty map.
+     */
+    public ObservableHashMap() {
+        this(0);
+    }
+
+    /**
+     * Creates an empty map that can hold <code>expectedSize</code> entries without growing.
+     *
+     * @param expectedSize The number of entries the map is expected to hold.
+     */
+    public ObservableHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative");
+        }
+        final int capacity = capacityFor(expectedSize);
+        mKeys = new Object[capacity];
+        mValues = new Object[capacity];
+    }
+
+    /**
+     * Creates a map containing the entries of <code>map</code>.
+     *
+     * @param map The entries to copy.
+     */
+    public ObservableHashMap(@NonNull Map<? extends K, ? extends V> map) {
+        this(map.size());
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            insert(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void addOnMapChangedCallback(
+            OnMapChangedCallback<? extends ObservableMap<K, V>, K, V> listener) {
+        if (mListeners == null) {
+            mListeners = new MapChangeRegistry();
+        }
+        mListeners.add(listener);
+    }
+
+    @Override
+    public void removeOnMapChangedCallback(
+            OnMapChangedCallback<? extends ObservableMap<K, V>, K, V> listener) {
+        if (mListeners != null) {
+            mListeners.remove(listener);
+        }
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        final Object[] keys = mKeys;
+        for (int i = 0; i < keys.length; i++) {
+            if (isOccupied(keys[i]) && equal(mValues[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        final int index = indexOf(key);
+        return index < 0 ? null : (V) mValues[index];
+    }
+
+    @Override
+    public V put(K key, V value) {
+        final V old = insert(key, value);
+        notifyChange(key);
+        return old;
+    }
+
+    @Override
+    public V remove(Object key) {
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final V old = removeSlot(index);
+        notifyChange(key);
+        return old;
+    }
+
+    /**
+     * Copies all entries of <code>map</code> into this map and notifies callbacks once.
+     *
+     * @param map The entries to add.
+     */
+    @Override
+    public void putAll(@NonNull Map<? extends K, ? extends V> map) {
+        if (map.isEmpty()) {
+            return;
+        }
+        ensureCapacity(mSize + map.size());
+        Object changedKey = null;
+        for (Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            changedKey = entry.getKey();
+            insert(entry.getKey(), entry.getValue());
+        }
+        notifyChange(map.size() == 1 ? changedKey : null);
+    }
+
+    /**
+     * Removes all keys in <code>keys</code> from this map and notifies callbacks once.
+     *
+     * @param keys The keys to remove.
+     * @return true if the map changed.
+     */
+    public boolean removeAll(@NonNull Collection<?> keys) {
+        int removed = 0;
+        Object removedKey = null;
+        for (Object key : keys) {
+            final int index = indexOf(key);
+            if (index >= 0) {
+                removeSlot(index);
+                removedKey = key;
+                removed++;
+            }
+        }
+        return notifyBulk(removed, removedKey);
+    }
+
+    /**
+     * Removes all keys that are not in <code>keys</code> from this map and notifies callbacks
+     * once.
+     *
+     * @param keys The keys to keep.
+     * @return true if the map changed.
+     */
+    public boolean retainAll(@NonNull Collection<?> keys) {
+        int removed = 0;
+        Object removedKey = null;
+        final Object[] table = mKeys;
+        for (int i = 0; i < table.length; i++) {
+            final Object slot = table[i];
+            if (isOccupied(slot) && !keys.contains(unmask(slot))) {
+                removeSlot(i);
+                removedKey = unmask(slot);
+                removed++;
+            }
+        }
+        return notifyBulk(removed, removedKey);
+    }
+
+    @Override
+    public void clear() {
+        if (mSize != 0) {
+            clearTable();
+            notifyChange(null);
+        }
+    }
+
+    @NonNull
+    @Override
+    public Set<K> keySet() {
+        if (mKeySet == null) {
+            mKeySet = new KeySet();
+        }
+        return mKeySet;
+    }
+
+    @NonNull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (mEntrySet == null) {
+            mEntrySet = new EntrySet();
+        }
+        return mEntrySet;
+    }
+
+    private V insert(K key, V value) {
+        final Object masked = mask(key);
+        final int hash = hash(masked);
+        int mask = mKeys.length - 1;
+        int index = hash & mask;
+        int firstTombstone = -1;
+        while (true) {
+            final Object slot = mKeys[index];
+            if (slot == null) {
+                break;
+            }
+            if (slot == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = index;
+                }
+            } else if (slot == masked || slot.equals(masked)) {
+                @SuppressWarnings("unchecked")
+                final V old = (V) mValues[index];
+                mValues[index] = value;
+                return old;
+            }
+            index = (index + 1) & mask;
+        }
+        if (firstTombstone >= 0) {
+            index = firstTombstone;
+            mTombstones--;
+        } else if ((mSize + mTombstones + 1) * 4 > mKeys.length * 3) {
+            // Rehashing also drops the tombstones, so only grow if the live entries need it.
+            rehash(capacityFor(mSize + 1));
+            mask = mKeys.length - 1;
+            index = hash & mask;
+            while (mKeys[index] != null) {
+                index = (index + 1) & mask;
+            }
+        }
+        mKeys[index] = masked;
+        mValues[index] = value;
+        mSize++;
+        mModCount++;
+        return null;
+    }
+
+    private int indexOf(Object key) {
+        final Object masked = mask(key);
+        final Object[] keys = mKeys;
+        final int mask = keys.length - 1;
+        int index = hash(masked) & mask;
+        while (true) {
+            final Object slot = keys[index];
+            if (slot == null) {
+                return -1;
+            }
+            if (slot == masked || (slot != TOMBSTONE && slot.equals(masked))) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private V removeSlot(int index) {
+        final V old = (V) mValues[index];
+        mValues[index] = null;
+        mSize--;
+        mModCount++;
+        if (mKeys[(index + 1) & (mKeys.length - 1)] == null) {
+            // The probe sequence ends here anyway, so the slot can be emptied.
+            mKeys[index] = null;
+        } else {
+            mKeys[index] = TOMBSTONE;
+            mTombstones++;
+        }
+        if (mSize == 0 && mTombstones != 0) {
+            clearTable();
+        }
+        return old;
+    }
+
+    private void clearTable() {
+        final int capacity = mKeys.length;
+        if (capacity > MIN_CAPACITY * 8) {
+            // Don't keep a huge table around for a map that has been emptied.
+            mKeys = new Object[MIN_CAPACITY];
+            mValues = new Object[MIN_CAPACITY];
+        } else {
+            for (int i = 0; i < capacity; i++) {
+                mKeys[i] = null;
+                mValues[i] = null;
+            }
+        }
+        mSize = 0;
+        mTombstones = 0;
+        mModCount++;
+    }
+
+    private void ensureCapacity(int size) {
+        final int capacity = capacityFor(size);
+        if (capacity > mKeys.length) {
+            rehash(capacity);
+        }
+    }
+
+    private void rehash(int capacity) {
+        final Object[] oldKeys = mKeys;
+        final Object[] oldValues = mValues;
+        final Object[] keys = new Object[capacity];
+        final Object[] values = new Object[capacity];
+        final int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            final Object slot = oldKeys[i];
+            if (isOccupied(slot)) {
+                int index = hash(slot) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = slot;
+                values[index] = oldValues[i];
+            }
+        }
+        mKeys = keys;
+        mValues = values;
+        mTombstones = 0;
+        mModCount++;
+    }
+
+    private boolean notifyBulk(int changed, Object changedKey) {
+        if (changed == 0) {
+            return false;
+        }
+        notifyChange(changed == 1 ? changedKey : null);
+        return true;
+    }
+
+    private void notifyChange(Object key) {
+        if (mListeners != null) {
+            mListeners.notifyCallbacks(this, 0, key);
+        }
+    }
+
+    private static int capacityFor(int size) {
+        // Keep the load factor, including tombstones, at or below 3/4.
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 < size * 4 + 4) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(Object maskedKey) {
+        final int h = maskedKey.hashCode();
+        // Spread the high bits so that keys differing only there don't cluster.
+        return h ^ (h >>> 16);
+    }
+
+    private static Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    private static Object unmask(Object slot) {
+        return slot == NULL_KEY ? null : slot;
+    }
+
+    private static boolean isOccupied(Object slot) {
+        return slot != null && slot != TOMBSTONE;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private abstract class TableIterator<E> implements Iterator<E> {
+        private int mNext = -1;
+        private int mLast = -1;
+        private int mExpectedModCount = mModCount;
+
+        TableIterator() {
+            advance();
+        }
+
+        private void advance() {
+            final Object[] keys = mKeys;
+            do {
+                mNext++;
+            } while (mNext < keys.length && !isOccupied(keys[mNext]));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNext < mKeys.length;
+        }
+
+        int nextIndex() {
+            if (mExpectedModCount != mModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            mLast = mNext;
+            advance();
+            return mLast;
+        }
+
+        @Override
+        public void remove() {
+            if (mLast < 0) {
+                throw new IllegalStateException();
+            }
+            if (mExpectedModCount != mModCount) {
+                throw new ConcurrentModificationException();
+            }
+            final Object key = unmask(mKeys[mLast]);
+            final Object[] keys = mKeys;
+            removeSlot(mLast);
+            if (keys != mKeys) {
+                // The map became empty and its table was replaced.
+                mNext = mKeys.length;
+            }
+            mLast = -1;
+            mExpectedModCount = mModCount;
+            notifyChange(key);
+        }
+    }
+
+    private final class KeySet extends AbstractSet<K> {
+        @Override
+        public Iterator<K> iterator() {
+            return new TableIterator<K>() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public K next() {
+                    return (K) unmask(mKeys[nextIndex()]);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return containsKey(key);
+        }
+
+        @Override
+        public boolean remove(Object key) {
+            final int index = indexOf(key);
+            if (index < 0) {
+                return false;
+            }
+            removeSlot(index);
+            notifyChange(key);
+            return true;
+        }
+
+        @Override
+        public boolean removeAll(@NonNull Collection<?> keys) {
+            return ObservableHashMap.this.removeAll(keys);
+        }
+
+        @Override
+        public boolean retainAll(@NonNull Collection<?> keys) {
+            return ObservableHashMap.this.retainAll(keys);
+        }
+
+        @Override
+        public void clear() {
+            ObservableHashMap.this.clear();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new TableIterator<Entry<K, V>>() {
+                @Override
+                public Entry<K, V> next() {
+                    return new MapEntry(nextIndex());
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+
+        @Override
+        public void clear() {
+            ObservableHashMap.this.clear();
+        }
+    }
+
+    /**
+     * An entry that reads through to its slot while the slot still holds the same key, so that
+     * {@link #setValue(Object)} writes to the map and notifies callbacks.
+     */
+    private final class MapEntry implements Entry<K, V> {
+        private final Object mKey;
+        private V mValue;
+
+        @SuppressWarnings("unchecked")
+        MapEntry(int index) {
+            mKey = unmask(mKeys[index]);
+            mValue = (V) mValues[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public K getKey() {
+            return (K) mKey;
+        }
+
+        @Override
+        public V getValue() {
+            return mValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public V setValue(V value) {
+            final int index = indexOf(mKey);
+            if (index < 0) {
+                throw new IllegalStateException("The entry has been removed from the map");
+            }
+            final V old = (V) mValues[index];
+            mValues[index] = value;
+            mValue = value;
+            notifyChange(mKey);
+            return old;
+        }
+
+        @Override
+        public boolean equals(@Nullable Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> other = (Entry<?, ?>) o;
+            return equal(mKey, other.getKey()) && equal(mValue, other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return (mKey == null ? 0 : mKey.hashCode()) ^ (mValue == null ? 0 : mValue.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return mKey + "=" + mValue;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import androidx.annotation.NonNull;
+import androidx.databinding.ObservableList;
+
+import java.util.Arrays;
+
+/**
+ * An {@link ObservableList} of <code>int</code> values backed by an <code>int[]</code>. Unlike
+ * <code>ObservableArrayList&lt;Integer&gt;</code>, values are stored unboxed and can be read and
+ * written without allocating through {@link #getInt(int)} and {@link #setInt(int, int)}.
+ * Generated bindings read elements through the matching <code>getFromList</code> overload in
+ * {@link ViewDataBinding}, so binding expressions like <code>@{values[index]}</code> never box.
+ * <p>
+ * Bulk updates such as {@link #addAll(int[])} and {@link #setRange(int, int[])} send a single
+ * range notification.
+ */
+public class ObservableIntArray extends ObservablePrimitiveArray<Integer, int[]> {
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Creates an empty list.
+     */
+    public ObservableIntArray() {
+        super(EMPTY, 0);
+    }
+
+    /**
+     * Creates an empty list that can hold <code>capacity</code> values without growing.
+     *
+     * @param capacity The initial capacity of the list.
+     */
+    public ObservableIntArray(int capacity) {
+        super(capacity == 0 ? EMPTY : new int[capacity], 0);
+    }
+
+    /**
+     * Creates a list containing a copy of <code>values</code>.
+     *
+     * @param values The initial values of the list.
+     */
+    public ObservableIntArray(@NonNull int[] values) {
+        super(values.length == 0 ? EMPTY : values.clone(), values.length);
+    }
+
+    @Override
+    int lengthOf(int[] values) {
+        return values.length;
+    }
+
+    @Override
+    int[] copyOf(int[] values, int length) {
+        return Arrays.copyOf(values, length);
+    }
+
+    /**
+     * Returns the value at <code>index</code> without boxing it.
+     *
+     * @param index The index of the value.
+     * @return The value at <code>index</code>.
+     */
+    public int getInt(int index) {
+        checkIndex(index);
+        return mValues[index];
+    }
+
+    @Override
+    public Integer get(int index) {
+        return getInt(index);
+    }
+
+    /**
+     * Replaces the value at <code>index</code> without boxing it.
+     *
+     * @param index The index of the value to replace.
+     * @param value The new value.
+     * @return The previous value at <code>index</code>.
+     */
+    public int setInt(int index, int value) {
+        checkIndex(index);
+        final int old = mValues[index];
+        mValues[index] = value;
+        notifyChange(index, 1);
+        return old;
+    }
+
+    @Override
+    public Integer set(int index, Integer value) {
+        return setInt(index, value);
+    }
+
+    /**
+     * Replaces <code>values.length</code> values starting at <code>start</code> and sends a
+     * single change notification for the whole range.
+     *
+     * @param start The index of the first value to replace.
+     * @param values The new values.
+     */
+    public void setRange(int start, @NonNull int[] values) {
+        replaceRange(start, values);
+    }
+
+    /**
+     * Appends <code>value</code> to the end of the list without boxing it.
+     *
+     * @param value The value to add.
+     */
+    public void addInt(int value) {
+        addInt(mSize, value);
+    }
+
+    /**
+     * Inserts <code>value</code> at <code>index</code> without boxing it.
+     *
+     * @param index The index at which to insert the value.
+     * @param value The value to insert.
+     */
+    public void addInt(int index, int value) {
+        checkInsertIndex(index);
+        makeRoom(index, 1);
+        mValues[index] = value;
+        notifyAdd(index, 1);
+    }
+
+    @Override
+    public void add(int index, Integer value) {
+        addInt(index, value);
+    }
+
+    /**
+     * Appends all <code>values</code> to the end of the list and sends a single insert
+     * notification.
+     *
+     * @param values The values to add.
+     * @return true if the list changed.
+     */
+    public boolean addAll(@NonNull int[] values) {
+        return insertRange(mSize, values);
+    }
+
+    /**
+     * Inserts all <code>values</code> at <code>index</code> and sends a single insert
+     * notification.
+     *
+     * @param index The index at which to insert the values.
+     * @param values The values to insert.
+     * @return true if the list changed.
+     */
+    public boolean addAll(int index, @NonNull int[] values) {
+        return insertRange(index, values);
+    }
+
+    /**
+     * Returns the index of the first occurrence of <code>value</code> or -1 if the list doesn't
+     * contain it.
+     *
+     * @param value The value to look for.
+     * @return The index of the first occurrence of <code>value</code> or -1.
+     */
+    public int indexOfInt(int value) {
+        for (int i = 0; i < mSize; i++) {
+            if (mValues[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a copy of the values in the list.
+     *
+     * @return A new array containing the values in the list.
+     */
+    @NonNull
+    public int[] toIntArray() {
+        return Arrays.copyOf(mValues, mSize);
+    }
+}
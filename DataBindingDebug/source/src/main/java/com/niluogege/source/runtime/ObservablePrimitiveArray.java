@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import androidx.databinding.ObservableList;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Storage, growth and change notifications shared by {@link ObservableIntArray},
+ * {@link ObservableLongArray} and {@link ObservableFloatArray}. Subclasses only add the typed,
+ * unboxed accessors on top of {@link #mValues}.
+ *
+ * @param <E> The boxed element type.
+ * @param <A> The primitive array type that holds the values.
+ */
+abstract class ObservablePrimitiveArray<E, A> extends AbstractList<E>
+        implements ObservableList<E>, RandomAccess {
+    // Callbacks of collected bindings are removed from the reaper thread.
+    private transient volatile ListChangeRegistry mListeners = new ListChangeRegistry();
+
+    /** The values. Only the first {@link #mSize} entries are part of the list. */
+    A mValues;
+    int mSize;
+
+    ObservablePrimitiveArray(A values, int size) {
+        mValues = values;
+        mSize = size;
+    }
+
+    /**
+     * @return The length of <code>values</code>.
+     */
+    abstract int lengthOf(A values);
+
+    /**
+     * @return A copy of <code>values</code> truncated or zero-padded to <code>length</code>.
+     */
+    abstract A copyOf(A values, int length);
+
+    @Override
+    public void addOnListChangedCallback(OnListChangedCallback listener) {
+        if (mListeners == null) {
+            mListeners = new ListChangeRegistry();
+        }
+        mListeners.add(listener);
+    }
+
+    @Override
+    public void removeOnListChangedCallback(OnListChangedCallback listener) {
+        if (mListeners != null) {
+            mListeners.remove(listener);
+        }
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public E remove(int index) {
+        final E old = get(index);
+        removeRange(index, index + 1);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        if (mSize != 0) {
+            removeRange(0, mSize);
+        }
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > mSize || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("from: " + fromIndex + ", to: " + toIndex
+                    + ", size: " + mSize);
+        }
+        final int count = toIndex - fromIndex;
+        if (count == 0) {
+            return;
+        }
+        System.arraycopy(mValues, toIndex, mValues, fromIndex, mSize - toIndex);
+        mSize -= count;
+        modCount++;
+        notifyRemove(fromIndex, count);
+    }
+
+    /**
+     * Copies <code>values</code> over the list starting at <code>start</code> and sends a single
+     * change notification.
+     */
+    void replaceRange(int start, A values) {
+        final int count = lengthOf(values);
+        if (start < 0 || start + count > mSize) {
+            throw new IndexOutOfBoundsException("start: " + start + ", count: " + count
+                    + ", size: " + mSize);
+        }
+        if (count == 0) {
+            return;
+        }
+        System.arraycopy(values, 0, mValues, start, count);
+        notifyChange(start, count);
+    }
+
+    /**
+     * Inserts <code>values</code> at <code>index</code> and sends a single insert notification.
+     *
+     * @return true if the list changed.
+     */
+    boolean insertRange(int index, A values) {
+        checkInsertIndex(index);
+        final int count = lengthOf(values);
+        if (count == 0) {
+            return false;
+        }
+        makeRoom(index, count);
+        System.arraycopy(values, 0, mValues, index, count);
+        notifyAdd(index, count);
+        return true;
+    }
+
+    /**
+     * Opens a gap of <code>count</code> values at <code>index</code>, growing the array if
+     * needed. The caller fills the gap and notifies.
+     */
+    void makeRoom(int index, int count) {
+        final int newSize = mSize + count;
+        final int length = lengthOf(mValues);
+        if (newSize > length) {
+            mValues = copyOf(mValues, Math.max(newSize, length + (length >> 1) + 4));
+        }
+        System.arraycopy(mValues, index, mValues, index + count, mSize - index);
+        mSize = newSize;
+        modCount++;
+    }
+
+    void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + mSize);
+        }
+    }
+
+    void checkInsertIndex(int index) {
+        if (index < 0 || index > mSize) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + mSize);
+        }
+    }
+
+    void notifyAdd(int start, int count) {
+        if (mListeners != null) {
+            mListeners.notifyInserted(this, start, count);
+        }
+    }
+
+    void notifyRemove(int start, int count) {
+        if (mListeners != null) {
+            mListeners.notifyRemoved(this, start, count);
+        }
+    }
+
+    void notifyChange(int start, int count) {
+        if (mListeners != null) {
+            mListeners.notifyChanged(this, start, count);
+        }
+    }
+}
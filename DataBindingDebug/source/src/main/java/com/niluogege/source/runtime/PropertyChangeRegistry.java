@@ -15,15 +15,27 @@
  */
 package com.niluogege.source.runtime;
 
+import android.util.SparseArray;
+
 import androidx.annotation.NonNull;
-import androidx.databinding.CallbackRegistry;
+import androidx.databinding.CallbackRegistry.NotifierCallback;
 import androidx.databinding.Observable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Utility class for managing Observable callbacks.
+ * <p>
+ * Callbacks added with {@link #add(Observable.OnPropertyChangedCallback, int[])} are only
+ * notified for the given property ids and for <code>BR._all</code>. They are notified after the
+ * callbacks added with {@link #add(Object)}.
  */
 public class PropertyChangeRegistry extends
-        CallbackRegistry<Observable.OnPropertyChangedCallback, Observable, Void> {
+        LockFreeCallbackRegistry<Observable.OnPropertyChangedCallback, Observable, Void> {
 
     private static final NotifierCallback<Observable.OnPropertyChangedCallback, Observable, Void> NOTIFIER_CALLBACK = new NotifierCallback<Observable.OnPropertyChangedCallback, Observable, Void>() {
         @Override
@@ -33,10 +45,131 @@ public class PropertyChangeRegistry extends
         }
     };
 
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * Callbacks registered for specific property ids, in registration order. Guarded by this.
+     */
+    private LinkedHashMap<Observable.OnPropertyChangedCallback, int[]> mFilteredCallbacks;
+
+    /**
+     * Immutable index of mFilteredCallbacks that is rebuilt when it changes, so notifying
+     * doesn't need a lock. null when there are no filtered callbacks.
+     */
+    private volatile PropertyIdIndex mIndex;
+
     public PropertyChangeRegistry() {
         super(NOTIFIER_CALLBACK);
     }
 
+    /**
+     * Adds a callback that is only notified when one of <code>propertyIds</code> or
+     * <code>BR._all</code> changes. If the callback is already registered, its previous
+     * registration is replaced.
+     *
+     * @param callback The callback to add.
+     * @param propertyIds The BR ids of the properties the callback is interested in.
+     */
+    public void add(@NonNull Observable.OnPropertyChangedCallback callback,
+            @NonNull int[] propertyIds) {
+        super.remove(callback);
+        synchronized (this) {
+            if (mFilteredCallbacks == null) {
+                mFilteredCallbacks = new LinkedHashMap<>();
+            }
+            mFilteredCallbacks.put(callback, propertyIds.clone());
+            mIndex = new PropertyIdIndex(mFilteredCallbacks);
+        }
+    }
+
+    @Override
+    public void add(Observable.OnPropertyChangedCallback callback) {
+        removeFiltered(callback);
+        super.add(callback);
+    }
+
+    @Override
+    public void remove(Observable.OnPropertyChangedCallback callback) {
+        super.remove(callback);
+        removeFiltered(callback);
+    }
+
+    private void removeFiltered(Observable.OnPropertyChangedCallback callback) {
+        if (mIndex == null) {
+            return;
+        }
+        synchronized (this) {
+            if (mFilteredCallbacks.remove(callback) != null) {
+                mIndex = mFilteredCallbacks.isEmpty()
+                        ? null : new PropertyIdIndex(mFilteredCallbacks);
+            }
+        }
+    }
+
+    @Override
+    public void notifyCallbacks(Observable sender, int propertyId, Void notUsed) {
+        super.notifyCallbacks(sender, propertyId, notUsed);
+        final PropertyIdIndex index = mIndex;
+        if (index == null) {
+            return;
+        }
+        final Object[] callbacks = index.callbacksFor(propertyId);
+        for (Object callback : callbacks) {
+            final PropertyIdIndex current = mIndex;
+            if (current != index && (current == null || !current.contains(callback))) {
+                continue; // removed while notifying
+            }
+            ((Observable.OnPropertyChangedCallback) callback).onPropertyChanged(sender,
+                    propertyId);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return super.isEmpty() && mIndex == null;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        synchronized (this) {
+            if (mFilteredCallbacks != null) {
+                mFilteredCallbacks.clear();
+            }
+            mIndex = null;
+        }
+    }
+
+    @Override
+    public void copyCallbacks(@NonNull List<Observable.OnPropertyChangedCallback> callbacks) {
+        super.copyCallbacks(callbacks);
+        final PropertyIdIndex index = mIndex;
+        if (index != null) {
+            for (Object callback : index.all) {
+                callbacks.add((Observable.OnPropertyChangedCallback) callback);
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<Observable.OnPropertyChangedCallback> copyCallbacks() {
+        final ArrayList<Observable.OnPropertyChangedCallback> callbacks =
+                new ArrayList<Observable.OnPropertyChangedCallback>();
+        copyCallbacks(callbacks);
+        return callbacks;
+    }
+
+    @Override
+    public PropertyChangeRegistry clone() {
+        final PropertyChangeRegistry clone = (PropertyChangeRegistry) super.clone();
+        synchronized (this) {
+            if (mFilteredCallbacks != null) {
+                clone.mFilteredCallbacks = new LinkedHashMap<>(mFilteredCallbacks);
+            }
+        }
+        return clone;
+    }
+
     /**
      * Notifies registered callbacks that a specific property has changed.
      *
@@ -47,4 +180,61 @@ public class PropertyChangeRegistry extends
     public void notifyChange(@NonNull Observable observable, int propertyId) {
         notifyCallbacks(observable, propertyId, null);
     }
+
+    /**
+     * Snapshot of the filtered callbacks, indexed by property id.
+     */
+    private static final class PropertyIdIndex {
+        /** Every filtered callback once, notified for BR._all. */
+        final Object[] all;
+        /** Sorted property ids that have at least one callback. */
+        final int[] ids;
+        /** The callbacks for each entry in ids. */
+        final Object[][] callbacksById;
+
+        PropertyIdIndex(Map<Observable.OnPropertyChangedCallback, int[]> filtered) {
+            all = filtered.keySet().toArray();
+            final SparseArray<ArrayList<Object>> byId = new SparseArray<>();
+            for (Map.Entry<Observable.OnPropertyChangedCallback, int[]> entry :
+                    filtered.entrySet()) {
+                for (int id : entry.getValue()) {
+                    if (id == 0) {
+                        continue; // BR._all reaches every filtered callback anyway
+                    }
+                    ArrayList<Object> callbacks = byId.get(id);
+                    if (callbacks == null) {
+                        callbacks = new ArrayList<>();
+                        byId.put(id, callbacks);
+                    }
+                    if (!callbacks.contains(entry.getKey())) {
+                        callbacks.add(entry.getKey());
+                    }
+                }
+            }
+            final int size = byId.size();
+            ids = new int[size];
+            callbacksById = new Object[size][];
+            for (int i = 0; i < size; i++) {
+                ids[i] = byId.keyAt(i);
+                callbacksById[i] = byId.valueAt(i).toArray();
+            }
+        }
+
+        Object[] callbacksFor(int propertyId) {
+            if (propertyId == 0) {
+                return all;
+            }
+            final int index = Arrays.binarySearch(ids, propertyId);
+            return index < 0 ? EMPTY : callbacksById[index];
+        }
+
+        boolean contains(Object callback) {
+            for (Object registered : all) {
+                if (registered == callback) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 }
@@ -0,0 +1,340 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Process-wide scheduler that collects dirty root {@link ViewDataBinding}s and rebinds all of
+ * them from a single {@link Choreographer.FrameCallback}. Without it, every root binding posts its
+ * own frame callback from {@link ViewDataBinding#requestRebind()}, which adds up quickly on
+ * screens with hundreds of bindings, such as a RecyclerView full of item bindings.
+ * <p>
+ * Bindings are drained in the order in which they requested a rebind. A binding that requests a
+ * rebind while the queue is being drained is deferred to the next frame.
+ * <p>
+ * A frame budget can be set with {@link #setFrameBudgetNanos(long)}. In budgeted mode, bindings
+ * whose root is shown are rebound before the others and, once the budget is used up, the
+ * remaining bindings are deferred to the next frame ahead of newly requested ones. A binding is
+ * always rebound as a whole, so {@link OnRebindCallback} sees the same
+ * onPreBind/onCanceled/onBound sequence as without a budget.
+ * <p>
+ * The scheduler only serves bindings created on the main thread. Bindings created on other
+ * Looper threads keep posting their own frame callback.
+ */
+public final class RebindScheduler {
+
+    /**
+     * Listener notified after each frame in which the scheduler drained its queue.
+     */
+    public interface OnFrameDrainedListener {
+        /**
+         * Called on the main thread after the queue has been drained for a frame.
+         *
+         * @param frameTimeNanos The frame time passed to the frame callback.
+         * @param drainedCount The number of bindings rebound in this frame.
+         * @param elapsedNanos The time spent draining the queue.
+         * @param deferredCount The number of bindings deferred to the next frame.
+         */
+        void onFrameDrained(long frameTimeNanos, int drainedCount, long elapsedNanos,
+                int deferredCount);
+    }
+
+    private static volatile RebindScheduler sInstance;
+
+    private final Choreographer mChoreographer;
+
+    private final Choreographer.FrameCallback mFrameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            drain(frameTimeNanos);
+        }
+    };
+
+    /**
+     * Bindings waiting for the next frame. Guarded by {@code this}.
+     */
+    private ArrayList<ViewDataBinding> mPending = new ArrayList<>();
+
+    /**
+     * The queue being drained. Only touched on the main thread, swapped with mPending so that
+     * draining does not allocate.
+     */
+    private ArrayList<ViewDataBinding> mDraining = new ArrayList<>();
+
+    /**
+     * Whether mFrameCallback has been posted and not run yet. Guarded by {@code this}.
+     */
+    private boolean mFramePosted;
+
+    private OnFrameDrainedListener mOnFrameDrainedListener;
+
+    /**
+     * The time a frame may spend rebinding, or 0 to drain the whole queue in every frame.
+     */
+    private long mFrameBudgetNanos;
+
+    private long mTotalFrames;
+    private long mTotalDrained;
+    private long mTotalDeferred;
+    private long mTotalDrainNanos;
+    private int mLastDrainedCount;
+    private int mLastDeferredCount;
+    private long mLastDrainNanos;
+
+    private RebindScheduler(Choreographer choreographer) {
+        mChoreographer = choreographer;
+    }
+
+    /**
+     * Returns the scheduler if it serves the calling thread, creating it if needed. Only the
+     * main thread is served, so this returns <code>null</code> on any other thread.
+     *
+     * @return The scheduler for the main thread or <code>null</code> when called from another
+     * thread.
+     */
+    @Nullable
+    static RebindScheduler forCurrentThread() {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            return null;
+        }
+        RebindScheduler scheduler = sInstance;
+        if (scheduler == null) {
+            synchronized (RebindScheduler.class) {
+                scheduler = sInstance;
+                if (scheduler == null) {
+                    scheduler = new RebindScheduler(Choreographer.getInstance());
+                    sInstance = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     * Returns the process-wide scheduler or <code>null</code> if no binding has been created
+     * on the main thread yet.
+     *
+     * @return The process-wide scheduler or <code>null</code> if it hasn't been created yet.
+     */
+    @Nullable
+    public static RebindScheduler getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Sets a listener to be notified with the statistics of every drained frame.
+     *
+     * @param listener The listener to notify or <code>null</code> to remove it.
+     */
+    @MainThread
+    public void setOnFrameDrainedListener(@Nullable OnFrameDrainedListener listener) {
+        mOnFrameDrainedListener = listener;
+    }
+
+    /**
+     * Sets the time the scheduler may spend rebinding in a single frame. When the budget runs
+     * out, the bindings that haven't been rebound yet are deferred to the next frame. At least
+     * one binding is rebound in every frame so that the queue always makes progress.
+     *
+     * @param budgetNanos The budget per frame in nanoseconds or 0 to disable the budget.
+     */
+    @MainThread
+    public void setFrameBudgetNanos(long budgetNanos) {
+        if (budgetNanos < 0) {
+            throw new IllegalArgumentException("budgetNanos must not be negative");
+        }
+        mFrameBudgetNanos = budgetNanos;
+    }
+
+    /**
+     * @return The time the scheduler may spend rebinding in a frame or 0 if there is no budget.
+     */
+    @MainThread
+    public long getFrameBudgetNanos() {
+        return mFrameBudgetNanos;
+    }
+
+    /**
+     * Queues the binding to be rebound in the next frame. The caller guarantees that a binding
+     * is only queued once until it has been drained.
+     */
+    void schedule(@NonNull ViewDataBinding binding) {
+        final boolean post;
+        synchronized (this) {
+            mPending.add(binding);
+            post = !mFramePosted;
+            mFramePosted = true;
+        }
+        if (post) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * Removes a binding queued by {@link #schedule(ViewDataBinding)}, e.g. because it was
+     * released to a {@link ViewDataBindingPool} before the frame came. If the queue is being
+     * drained, the binding is skipped.
+     */
+    @MainThread
+    void cancel(@NonNull ViewDataBinding binding) {
+        synchronized (this) {
+            mPending.remove(binding);
+        }
+        final int index = mDraining.indexOf(binding);
+        if (index >= 0) {
+            mDraining.set(index, null);
+        }
+    }
+
+    private void drain(long frameTimeNanos) {
+        final ArrayList<ViewDataBinding> draining;
+        synchronized (this) {
+            mFramePosted = false;
+            draining = mPending;
+            mPending = mDraining;
+            mDraining = draining;
+        }
+        final long start = System.nanoTime();
+        final long budget = mFrameBudgetNanos;
+        final long deadline = start + budget;
+        final int count = draining.size();
+        int drained = 0;
+        boolean overBudget = false;
+        // With a budget, the first pass only rebinds shown bindings and the second the rest.
+        for (int pass = budget > 0 ? 0 : 1; pass < 2 && !overBudget; pass++) {
+            for (int i = 0; i < count; i++) {
+                final ViewDataBinding binding = draining.get(i);
+                if (binding == null || (pass == 0 && !binding.getRoot().isShown())) {
+                    continue;
+                }
+                if (budget > 0 && drained > 0 && System.nanoTime() >= deadline) {
+                    overBudget = true;
+                    break;
+                }
+                draining.set(i, null);
+                binding.runPendingRebind();
+                drained++;
+            }
+        }
+        if (overBudget) {
+            deferUnfinished(draining);
+        }
+        draining.clear();
+        final long elapsed = System.nanoTime() - start;
+        final int deferred;
+        synchronized (this) {
+            deferred = mPending.size();
+        }
+        mTotalFrames++;
+        mTotalDrained += drained;
+        mTotalDeferred += deferred;
+        mTotalDrainNanos += elapsed;
+        mLastDrainedCount = drained;
+        mLastDeferredCount = deferred;
+        mLastDrainNanos = elapsed;
+        if (mOnFrameDrainedListener != null) {
+            mOnFrameDrainedListener.onFrameDrained(frameTimeNanos, drained, elapsed, deferred);
+        }
+    }
+
+    /**
+     * Moves the bindings that haven't been rebound in this frame to the front of the pending
+     * queue, keeping their order, and makes sure the next frame drains them.
+     */
+    private void deferUnfinished(ArrayList<ViewDataBinding> draining) {
+        int unfinished = 0;
+        final int count = draining.size();
+        for (int i = 0; i < count; i++) {
+            final ViewDataBinding binding = draining.get(i);
+            if (binding != null) {
+                draining.set(unfinished++, binding);
+            }
+        }
+        final boolean post;
+        synchronized (this) {
+            mPending.addAll(0, draining.subList(0, unfinished));
+            post = !mFramePosted;
+            mFramePosted = true;
+        }
+        if (post) {
+            mChoreographer.postFrameCallback(mFrameCallback);
+        }
+    }
+
+    /**
+     * @return The number of frames in which the queue has been drained.
+     */
+    @MainThread
+    public long getTotalFrames() {
+        return mTotalFrames;
+    }
+
+    /**
+     * @return The total number of bindings rebound by the scheduler.
+     */
+    @MainThread
+    public long getTotalDrained() {
+        return mTotalDrained;
+    }
+
+    /**
+     * @return The total number of bindings that were deferred to a following frame.
+     */
+    @MainThread
+    public long getTotalDeferred() {
+        return mTotalDeferred;
+    }
+
+    /**
+     * @return The total time spent draining the queue in nanoseconds.
+     */
+    @MainThread
+    public long getTotalDrainNanos() {
+        return mTotalDrainNanos;
+    }
+
+    /**
+     * @return The number of bindings rebound in the last drained frame.
+     */
+    @MainThread
+    public int getLastDrainedCount() {
+        return mLastDrainedCount;
+    }
+
+    /**
+     * @return The number of bindings deferred by the last drained frame.
+     */
+    @MainThread
+    public int getLastDeferredCount() {
+        return mLastDeferredCount;
+    }
+
+    /**
+     * @return The time spent draining the queue in the last drained frame, in nanoseconds.
+     */
+    @MainThread
+    public long getLastDrainNanos() {
+        return mLastDrainNanos;
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.databinding.Observable;
+import androidx.databinding.ObservableList;
+import androidx.databinding.ObservableMap;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the reference queue of collected {@link ViewDataBinding}s on a background daemon thread
+ * and unregisters their listeners from the observables they were attached to.
+ * <p>
+ * Previously the queue was only polled from the rebind runnable on the main thread, so cleanup
+ * cost frame time and stale listeners stayed registered as long as nothing was rebinding. The
+ * reaper wakes up as soon as a reference is enqueued and drains the queue, yielding after every
+ * {@link #MAX_BATCH_SIZE} references.
+ * <p>
+ * Observables whose callbacks are kept in a {@link LockFreeCallbackRegistry} can be released from
+ * any thread, so {@link BaseObservable}, {@link ObservableArrayList}, the primitive array lists
+ * and the observable maps are released right on the reaper thread. Everything else, LiveData in
+ * particular, is collected while draining and released on the main thread in a single message.
+ */
+public final class ReferenceQueueReaper {
+
+    /**
+     * A reference that knows how to release what it holds once its referent is collected.
+     */
+    interface Reapable {
+        /**
+         * Called on the reaper thread after the referent has been collected.
+         *
+         * @return false if the release must happen on the main thread instead, in which case
+         * {@link #reapOnMainThread()} is called there.
+         */
+        boolean reap();
+
+        /**
+         * Called on the main thread for references whose {@link #reap()} returned false.
+         */
+        void reapOnMainThread();
+    }
+
+    /** The maximum number of references handled before the reaper yields. */
+    public static final int MAX_BATCH_SIZE = 64;
+
+    private static final ReferenceQueueReaper sInstance = new ReferenceQueueReaper();
+
+    /**
+     * The classes whose removal methods come from one of the lock-free observables of this
+     * package, by observable class. Only touched by the reaper thread.
+     */
+    private static final Map<Class<?>, Boolean> sLockFreeRemoval = new HashMap<>();
+
+    private final ReferenceQueue<Object> mQueue = new ReferenceQueue<>();
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicLong mTotalReaped = new AtomicLong();
+    private final AtomicLong mTotalReleasedOnMain = new AtomicLong();
+    private final AtomicLong mTotalDrains = new AtomicLong();
+    private final AtomicInteger mPendingOnMain = new AtomicInteger();
+    private volatile int mLastDrainSize;
+    private volatile int mMaxDrainSize;
+    private volatile long mLastReleaseNanos;
+    private volatile long mMaxReleaseNanos;
+
+    private ReferenceQueueReaper() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                reapLoop();
+            }
+        }, "DataBinding-Reaper");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The process-wide reaper.
+     */
+    @NonNull
+    public static ReferenceQueueReaper getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @return The queue that references reaped by this reaper must be registered with. Every
+     * reference enqueued there must implement {@link Reapable}.
+     */
+    @NonNull
+    ReferenceQueue<Object> getQueue() {
+        return mQueue;
+    }
+
+    /**
+     * Returns true if a callback can be removed from target on the reaper thread. That is the
+     * case when its removal method is the one of {@link BaseObservable},
+     * {@link ObservableArrayList}, {@link ObservablePrimitiveArray}, {@link ObservableArrayMap} or
+     * {@link ObservableHashMap}, which all remove from a {@link LockFreeCallbackRegistry}. A
+     * subclass that overrides the removal method may not be thread-safe anymore.
+     * <p>
+     * Must only be called on the reaper thread.
+     */
+    static boolean canReleaseOffMainThread(@NonNull Object target) {
+        final Class<?> type = target.getClass();
+        Boolean lockFree = sLockFreeRemoval.get(type);
+        if (lockFree == null) {
+            lockFree = hasLockFreeRemoval(type);
+            sLockFreeRemoval.put(type, lockFree);
+        }
+        return lockFree;
+    }
+
+    private static boolean hasLockFreeRemoval(Class<?> type) {
+        final String name;
+        final Class<?> callbackType;
+        if (BaseObservable.class.isAssignableFrom(type)) {
+            name = "removeOnPropertyChangedCallback";
+            callbackType = Observable.OnPropertyChangedCallback.class;
+        } else if (ObservableArrayList.class.isAssignableFrom(type)
+                || ObservablePrimitiveArray.class.isAssignableFrom(type)) {
+            name = "removeOnListChangedCallback";
+            callbackType = ObservableList.OnListChangedCallback.class;
+        } else if (ObservableArrayMap.class.isAssignableFrom(type)
+                || ObservableHashMap.class.isAssignableFrom(type)) {
+            name = "removeOnMapChangedCallback";
+            callbackType = ObservableMap.OnMapChangedCallback.class;
+        } else {
+            return false;
+        }
+        final Class<?> owner;
+        try {
+            owner = type.getMethod(name, callbackType).getDeclaringClass();
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+        return owner == BaseObservable.class || owner == ObservableArrayList.class
+                || owner == ObservablePrimitiveArray.class || owner == ObservableArrayMap.class
+                || owner == ObservableHashMap.class;
+    }
+
+    private void reapLoop() {
+        while (true) {
+            Reference<?> ref;
+            try {
+                ref = mQueue.remove();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            final long start = System.nanoTime();
+            ArrayList<Reapable> mainThread = null;
+            int count = 0;
+            do {
+                if (ref instanceof Reapable) {
+                    final Reapable reapable = (Reapable) ref;
+                    if (!reapable.reap()) {
+                        if (mainThread == null) {
+                            mainThread = new ArrayList<>();
+                        }
+                        mainThread.add(reapable);
+                    }
+                }
+                count++;
+                if (count % MAX_BATCH_SIZE == 0) {
+                    // There may be more, but let other threads run before the next batch.
+                    Thread.yield();
+                }
+            } while ((ref = mQueue.poll()) != null);
+            mTotalReaped.addAndGet(count);
+            mTotalDrains.incrementAndGet();
+            mLastDrainSize = count;
+            if (count > mMaxDrainSize) {
+                mMaxDrainSize = count;
+            }
+            if (mainThread == null) {
+                recordRelease(start);
+            } else {
+                postToMainThread(mainThread, start);
+            }
+        }
+    }
+
+    private void postToMainThread(final ArrayList<Reapable> reapables, final long start) {
+        final int size = reapables.size();
+        mPendingOnMain.addAndGet(size);
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < size; i++) {
+                    reapables.get(i).reapOnMainThread();
+                }
+                mPendingOnMain.addAndGet(-size);
+                mTotalReleasedOnMain.addAndGet(size);
+                recordRelease(start);
+            }
+        });
+    }
+
+    private void recordRelease(long start) {
+        final long elapsed = System.nanoTime() - start;
+        mLastReleaseNanos = elapsed;
+        if (elapsed > mMaxReleaseNanos) {
+            mMaxReleaseNanos = elapsed;
+        }
+    }
+
+    /**
+     * @return The total number of collected references handled by the reaper.
+     */
+    public long getTotalReaped() {
+        return mTotalReaped.get();
+    }
+
+    /**
+     * @return The number of references that had to be released on the main thread.
+     */
+    public long getTotalReleasedOnMain() {
+        return mTotalReleasedOnMain.get();
+    }
+
+    /**
+     * @return The number of references handed to the main thread that it hasn't released yet.
+     */
+    public int getPendingOnMain() {
+        return mPendingOnMain.get();
+    }
+
+    /**
+     * @return The number of times the reaper woke up and drained the queue.
+     */
+    public long getTotalDrains() {
+        return mTotalDrains.get();
+    }
+
+    /**
+     * Returns the number of references the reaper took off the queue the last time it woke up.
+     * The reaper keeps polling until the queue is empty, so this is the queue depth at that
+     * time plus whatever was enqueued while draining. Values that keep growing point to a
+     * listener leak or to bindings being created faster than they are collected.
+     *
+     * @return The number of references handled in the last drain.
+     */
+    public int getLastDrainSize() {
+        return mLastDrainSize;
+    }
+
+    /**
+     * @return The largest number of references handled in a single drain.
+     */
+    public int getMaxDrainSize() {
+        return mMaxDrainSize;
+    }
+
+    /**
+     * Returns how long the last drain took from the reaper taking the first reference off the
+     * queue until every listener of that drain was unregistered, including the wait for the
+     * main thread when some of them had to be released there. The time a reference spends in
+     * the queue before the reaper wakes up can't be observed and isn't included.
+     *
+     * @return The release latency of the last drain, in nanoseconds.
+     */
+    public long getLastReleaseNanos() {
+        return mLastReleaseNanos;
+    }
+
+    /**
+     * @return The longest release latency of a single drain, in nanoseconds. See
+     * {@link #getLastReleaseNanos()}.
+     */
+    public long getMaxReleaseNanos() {
+        return mMaxReleaseNanos;
+    }
+}
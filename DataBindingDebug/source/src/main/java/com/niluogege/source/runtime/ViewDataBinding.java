@@ -18,6 +18,7 @@ package com.niluogege.source.runtime;
 
 import android.annotation.TargetApi;
 import android.content.res.ColorStateList;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.os.Build.VERSION;
 import android.os.Build.VERSION_CODES;
@@ -34,6 +35,7 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnAttachStateChangeListener;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
@@ -55,11 +57,13 @@ import androidx.lifecycle.Observer;
 import androidx.lifecycle.OnLifecycleEvent;
 import androidx.viewbinding.ViewBinding;
 
-import java.lang.ref.Reference;
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 
 /**
  * Base class for generated data binding classes. If possible, the generated binding should
@@ -92,6 +96,12 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
 
     private static final boolean USE_CHOREOGRAPHER = SDK_INT >= 16;
 
+    /**
+     * Whether listeners on {@link BaseObservable}s only register for the BR ids that the
+     * binding reads. See {@link #setPropertyChangeFilteringEnabled(boolean)}.
+     */
+    private static volatile boolean sFilterPropertyChanges = false;
+
     /**
      * Method object extracted out to attach a listener to a bound Observable object.
      */
@@ -155,7 +165,12 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         }
     };
 
-    private static final ReferenceQueue<ViewDataBinding> sReferenceQueue = new ReferenceQueue<>();
+    /**
+     * Collected bindings' listeners end up here and are unregistered by
+     * {@link ReferenceQueueReaper} on its own thread.
+     */
+    private static final ReferenceQueue<Object> sReferenceQueue =
+            ReferenceQueueReaper.getInstance().getQueue();
 
     private static final OnAttachStateChangeListener ROOT_REATTACHED_LISTENER;
 
@@ -175,6 +190,12 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
 
                 @Override
                 public void onViewDetachedFromWindow(View v) {
+                    // 停放中的 rebind 挂在旧窗口的 ViewTreeObserver 上，换了窗口就再也收不到
+                    // onPreDraw。这里先摘掉，重新 attach 时上面的回调会再判断一次可见性。
+                    final ViewDataBinding binding = getBinding(v);
+                    if (binding != null && binding.mRebindParked) {
+                        binding.stopWatchingVisibility();
+                    }
                 }
             };
         }
@@ -189,7 +210,6 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
             synchronized (this) {
                 mPendingRebind = false;
             }
-            processReferenceQueue();
 
             if (VERSION.SDK_INT >= VERSION_CODES.KITKAT) {
                 // Nested so that we don't get a lint warning in IntelliJ
@@ -201,6 +221,11 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
                     return;
                 }
             }
+            if (mVisibilityPolicy != null && !mVisibilityPolicy.isVisible(ViewDataBinding.this)) {
+                // 不可见时只记录脏标记，等可见时再统一刷新一次
+                parkRebindUntilVisible();
+                return;
+            }
             //重新绑定一次（这个步骤会刷新数据）
             executePendingBindings();
         }
@@ -244,6 +269,51 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
     // null api >= 16
     private Handler mUIThreadHandler;
 
+    /**
+     * The process-wide scheduler used instead of mFrameCallback. null when the binding was not
+     * created on the main thread.
+     */
+    private RebindScheduler mRebindScheduler;
+
+    /**
+     * True while a binding created by {@link AsyncBindingInflater} hasn't been handed over to
+     * the main thread yet. Rebinds are not scheduled until then.
+     */
+    private boolean mAwaitingMainThread;
+
+    /**
+     * Decides whether the root is visible enough to be rebound. null to always rebind.
+     */
+    private VisibilityPolicy mVisibilityPolicy;
+
+    /**
+     * True while rebinds are suppressed because the policy said the root isn't visible. Dirty
+     * flags keep accumulating and one rebind is requested once the root becomes visible.
+     */
+    private boolean mRebindParked;
+
+    /** Watches for the root becoming visible while a rebind is parked. */
+    private ViewTreeObserver.OnPreDrawListener mVisibilityListener;
+
+    private int mAvoidedRebindCount;
+
+    private static final AtomicLong sTotalAvoidedRebindCount = new AtomicLong();
+
+    /**
+     * The number of times executeBindings has run. LiveData registrations in
+     * {@link #LIVE_DATA_CONFLATE} mode compare it to know whether their last change has been
+     * bound yet.
+     */
+    private int mExecutionCount;
+
+    /** The LiveData mode for registrations without their own mode. */
+    private int mLiveDataMode = LIVE_DATA_ALL;
+
+    /** Modes for single LiveData instances, see {@link #setLiveDataMode(LiveData, int)}. */
+    private IdentityHashMap<LiveData<?>, Integer> mLiveDataModes;
+
+    private int mSuppressedLiveDataChangeCount;
+
     /**
      * The DataBindingComponent used by this data binding. This is used for BindingAdapters
      * that are instance methods to retrieve the class instance that implements the
@@ -260,6 +330,30 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
      */
     private ViewDataBinding mContainingBinding;
 
+    /**
+     * The position of this binding among the includes of {@link #mContainingBinding}, or -1 when
+     * it isn't tracked there.
+     */
+    private int mIndexInContainingBinding = -1;
+
+    /** The number of bindings that were given to {@link #setContainedBinding}. */
+    private int mContainedBindingCount;
+
+    /**
+     * One bit per included binding, indexed by {@link #mIndexInContainingBinding}. A bit is set
+     * when the include requests a rebind and cleared when it is executed, so executeBindingsOn
+     * can skip includes that have nothing to do. Includes past the 64th are always executed.
+     * Guarded by this.
+     */
+    private long mDirtyChildren;
+
+    private int mSkippedChildExecutionCount;
+
+    /**
+     * When tracing, the time of the first field change since the last execution, or -1.
+     */
+    private long mFirstTracedChangeNanos = -1;
+
     /**
      * Track the LifecycleOwner set in {@link #setLifecycleOwner(LifecycleOwner)}. Set as
      * Object so that the class can be compiled without requiring the LifecycleOwner dependency.
@@ -291,8 +385,10 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         if (Looper.myLooper() == null) {
             throw new IllegalStateException("DataBinding must be created in view's UI Thread");
         }
+        mAwaitingMainThread = AsyncBindingInflater.isInflaterThread();
         if (USE_CHOREOGRAPHER) {
             mChoreographer = Choreographer.getInstance();
+            mRebindScheduler = RebindScheduler.forCurrentThread();
             mFrameCallback = new Choreographer.FrameCallback() {
                 @Override
                 public void doFrame(long frameTimeNanos) {
@@ -341,6 +437,20 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         }
     }
 
+    /**
+     * Enables or disables property id filtering for bindings. When enabled, a binding listening
+     * to a {@link BaseObservable} only registers for the BR ids its expressions read, plus
+     * <code>BR._all</code>, so changes to other properties don't reach the binding at all.
+     * <p>
+     * This only affects registrations made after the call.
+     *
+     * @param enabled true to register for specific BR ids or false to be notified of every
+     *                property change.
+     */
+    public static void setPropertyChangeFilteringEnabled(boolean enabled) {
+        sFilterPropertyChanges = enabled;
+    }
+
     /**
      * @hide
      *
@@ -361,6 +471,19 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
      */
     protected abstract boolean onFieldChange(int localFieldId, Object object, int fieldId);
 
+    /**
+     * Returns the BR ids for which {@link #onFieldChange(int, Object, int)} may return true for
+     * the given local field, including <code>BR._all</code>, or null if they are unknown.
+     * Generated bindings override this with the ids known at compile time.
+     *
+     * @param localFieldId The index into mLocalFieldObservers.
+     * @return The BR ids the binding is interested in or null to be notified of every change.
+     * @hide
+     */
+    protected int[] getObservedPropertyIds(int localFieldId) {
+        return null;
+    }
+
     /**
      * Set a value value in the Binding class.
      * <p>
@@ -424,6 +547,182 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         return mLifecycleOwner;
     }
 
+    /**
+     * Every value emitted by an observed LiveData marks the binding dirty. This is the default.
+     */
+    public static final int LIVE_DATA_ALL = 0;
+
+    /**
+     * Values equal to the previous value of the same LiveData are ignored.
+     */
+    public static final int LIVE_DATA_DISTINCT = 1;
+
+    /**
+     * Once a LiveData has marked the binding dirty, further values are ignored until the binding
+     * has been executed. The execution reads the latest value, so intermediate values are
+     * conflated.
+     */
+    public static final int LIVE_DATA_CONFLATE = 1 << 1;
+
+    /**
+     * Sets how the LiveData observed by this binding are treated when they emit values, unless
+     * a LiveData has its own mode set with {@link #setLiveDataMode(LiveData, int)}. High
+     * frequency sources such as progress updates usually want
+     * <code>LIVE_DATA_DISTINCT | LIVE_DATA_CONFLATE</code>.
+     *
+     * @param mode A combination of {@link #LIVE_DATA_DISTINCT} and {@link #LIVE_DATA_CONFLATE}
+     *             or {@link #LIVE_DATA_ALL}.
+     */
+    @MainThread
+    public void setLiveDataMode(int mode) {
+        mLiveDataMode = mode;
+    }
+
+    /**
+     * Sets how values emitted by <code>liveData</code> are treated by this binding.
+     *
+     * @param liveData A LiveData used in the binding's expressions.
+     * @param mode A combination of {@link #LIVE_DATA_DISTINCT} and {@link #LIVE_DATA_CONFLATE}
+     *             or {@link #LIVE_DATA_ALL}.
+     */
+    @MainThread
+    public void setLiveDataMode(@NonNull LiveData<?> liveData, int mode) {
+        if (mLiveDataModes == null) {
+            mLiveDataModes = new IdentityHashMap<>();
+        }
+        mLiveDataModes.put(liveData, mode);
+    }
+
+    /**
+     * @return The number of LiveData values that didn't mark the binding dirty because of the
+     * LiveData mode, plus the StateFlow values that were conflated with an unbound one.
+     */
+    public int getSuppressedLiveDataChangeCount() {
+        return mSuppressedLiveDataChangeCount;
+    }
+
+    private int getLiveDataMode(LiveData<?> liveData) {
+        if (mLiveDataModes != null) {
+            final Integer mode = mLiveDataModes.get(liveData);
+            if (mode != null) {
+                return mode;
+            }
+        }
+        return mLiveDataMode;
+    }
+
+    /**
+     * Decides whether a binding's root is visible enough to be worth rebinding.
+     *
+     * @see #setVisibilityPolicy(VisibilityPolicy)
+     */
+    public interface VisibilityPolicy {
+        /**
+         * Called on the main thread before a scheduled rebind and before every draw while a
+         * rebind is suppressed.
+         *
+         * @param binding The binding about to be rebound.
+         * @return true if the binding should be rebound now.
+         */
+        boolean isVisible(@NonNull ViewDataBinding binding);
+    }
+
+    /**
+     * A policy that treats a binding as visible when its root is shown and at least partly
+     * inside the window, so that pages kept off-screen by a ViewPager or content scrolled out of
+     * a ScrollView are not rebound.
+     */
+    public static final VisibilityPolicy ON_SCREEN = new VisibilityPolicy() {
+        private final Rect mRect = new Rect();
+
+        @Override
+        public boolean isVisible(@NonNull ViewDataBinding binding) {
+            final View root = binding.getRoot();
+            return root.isShown() && root.getGlobalVisibleRect(mRect);
+        }
+    };
+
+    /**
+     * Sets a policy that suppresses automatic rebinds while the binding's root isn't visible.
+     * While suppressed, changes only mark the binding dirty. When the root becomes visible, one
+     * rebind evaluates all of them at once. Explicit calls to {@link #executePendingBindings()}
+     * are not affected. Only root bindings use the policy; included bindings follow the
+     * binding that contains them.
+     *
+     * @param policy The policy to use, e.g. {@link #ON_SCREEN}, or null to always rebind.
+     */
+    @MainThread
+    public void setVisibilityPolicy(@Nullable VisibilityPolicy policy) {
+        mVisibilityPolicy = policy;
+        if (policy == null && mRebindParked) {
+            unparkRebind();
+        }
+    }
+
+    /**
+     * @return The number of rebinds this binding skipped because its root wasn't visible.
+     */
+    public int getAvoidedRebindCount() {
+        return mAvoidedRebindCount;
+    }
+
+    /**
+     * @return The number of rebinds skipped by all bindings because their root wasn't visible.
+     */
+    public static long getTotalAvoidedRebindCount() {
+        return sTotalAvoidedRebindCount.get();
+    }
+
+    private void parkRebindUntilVisible() {
+        countAvoidedRebind();
+        if (mRebindParked) {
+            return;
+        }
+        mRebindParked = true;
+        if (mVisibilityListener == null) {
+            mVisibilityListener = new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    final VisibilityPolicy policy = mVisibilityPolicy;
+                    if (policy == null || policy.isVisible(ViewDataBinding.this)) {
+                        unparkRebind();
+                    }
+                    return true;
+                }
+            };
+        }
+        mRoot.getViewTreeObserver().addOnPreDrawListener(mVisibilityListener);
+        if (ROOT_REATTACHED_LISTENER != null) {
+            // The pre-draw listener belongs to the current window. If the root moves to another
+            // one, the attach listener drops it on detach and re-checks visibility on attach.
+            mRoot.removeOnAttachStateChangeListener(ROOT_REATTACHED_LISTENER);
+            mRoot.addOnAttachStateChangeListener(ROOT_REATTACHED_LISTENER);
+        }
+    }
+
+    private void unparkRebind() {
+        stopWatchingVisibility();
+        if (ROOT_REATTACHED_LISTENER != null) {
+            mRoot.removeOnAttachStateChangeListener(ROOT_REATTACHED_LISTENER);
+        }
+        if (hasPendingBindings()) {
+            requestRebind();
+        }
+    }
+
+    private void stopWatchingVisibility() {
+        mRebindParked = false;
+        final ViewTreeObserver observer = mRoot.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnPreDrawListener(mVisibilityListener);
+        }
+    }
+
+    private void countAvoidedRebind() {
+        mAvoidedRebindCount++;
+        sTotalAvoidedRebindCount.incrementAndGet();
+    }
+
     /**
      * Add a listener to be called when reevaluating dirty fields. This also allows automatic
      * updates to be halted, but does not stop explicit calls to {@link #executePendingBindings()}.
@@ -482,8 +781,13 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
             }
         }
         if (!mRebindHalted) {
-            //执行绑定
-            executeBindings();
+            mExecutionCount++;
+            if (BindingTrace.ENABLED && BindingTrace.isTracing()) {
+                executeBindingsTraced();
+            } else {
+                //执行绑定
+                executeBindings();
+            }
             if (mRebindCallbacks != null) {
                 mRebindCallbacks.notifyCallbacks(this, REBOUND, null);
             }
@@ -491,13 +795,71 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         mIsExecutingPendingBindings = false;
     }
 
+    private void executeBindingsTraced() {
+        final int dirtyFlagCount = getDirtyFlagCount();
+        final long start = System.nanoTime();
+        final long latency = mFirstTracedChangeNanos < 0 ? -1 : start - mFirstTracedChangeNanos;
+        mFirstTracedChangeNanos = -1;
+        executeBindings();
+        BindingTrace.recordExecution(this, start, dirtyFlagCount, System.nanoTime() - start,
+                latency);
+    }
+
+    /**
+     * Returns the number of dirty flags that are set, for {@link BindingTrace}. Generated
+     * bindings override this.
+     *
+     * @return The number of dirty flags set or -1 if unknown.
+     * @hide
+     */
+    protected int getDirtyFlagCount() {
+        return -1;
+    }
+
     /**
      * Calls executeBindingsInternal on the other ViewDataBinding
      *
      * @hide
      */
     protected static void executeBindingsOn(ViewDataBinding other) {
+        final ViewDataBinding parent = other.mContainingBinding;
+        final int index = other.mIndexInContainingBinding;
+        if (parent == null || index < 0 || index >= Long.SIZE) {
+            other.executeBindingsInternal();
+            return;
+        }
+        final long bit = 1L << index;
+        synchronized (parent) {
+            if ((parent.mDirtyChildren & bit) == 0) {
+                // 子 binding 没有请求过重新绑定，整个子树都可以跳过
+                parent.mSkippedChildExecutionCount++;
+                return;
+            }
+            parent.mDirtyChildren &= ~bit;
+        }
         other.executeBindingsInternal();
+        if (other.mRebindHalted) {
+            // still dirty, try again with the next rebind of the parent
+            parent.markChildDirty(index);
+        }
+    }
+
+    private void markChildDirty(int index) {
+        if (index >= 0 && index < Long.SIZE) {
+            synchronized (this) {
+                mDirtyChildren |= 1L << index;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of times an included binding was not executed because it had not
+     * requested a rebind since its last execution.
+     *
+     * @return The number of skipped executions of included bindings.
+     */
+    public int getSkippedChildExecutionCount() {
+        return mSkippedChildExecutionCount;
     }
 
 
@@ -533,6 +895,72 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         }
     }
 
+    /**
+     * Resets every variable of the binding to its default value. Generated bindings override
+     * this to call each variable setter with <code>null</code>, <code>false</code> or
+     * <code>0</code>, which also drops the registrations on observable variables, and to reset
+     * their included bindings with {@link #resetIncludedBinding(ViewDataBinding)}.
+     * @hide
+     */
+    protected void clearVariables() {
+    }
+
+    /**
+     * Resets an included binding along with the binding that includes it. Included bindings
+     * hold the values last passed down to them and their own observable registrations, which
+     * clearing the outer binding's variables doesn't drop until it executes again.
+     * <p>
+     * Only called by the generated code.
+     * @hide
+     */
+    protected static void resetIncludedBinding(@Nullable ViewDataBinding binding) {
+        if (binding != null) {
+            binding.resetForReuse();
+        }
+    }
+
+    /**
+     * Returns the binding to the state it had after inflation so that it can be reused by
+     * {@link ViewDataBindingPool}: the lifecycle owner is removed, variables are cleared and all
+     * remaining observable registrations are dropped.
+     */
+    void resetForReuse() {
+        setLifecycleOwner(null);
+        clearVariables();
+        unbind();
+        // clearVariables() goes through the setters, which request a rebind of the cleared
+        // values. The binding gets new variables before it is shown again, so drop it.
+        cancelPendingRebind();
+    }
+
+    /**
+     * Drops a rebind requested by {@link #requestRebind()} that hasn't run yet, along with the
+     * attach and pre-draw listeners that wait to run it. The binding stays dirty, so the next
+     * change requests a rebind again.
+     */
+    private void cancelPendingRebind() {
+        final boolean pending;
+        synchronized (this) {
+            pending = mPendingRebind;
+            mPendingRebind = false;
+        }
+        if (pending) {
+            if (mRebindScheduler != null) {
+                mRebindScheduler.cancel(this);
+            } else if (USE_CHOREOGRAPHER) {
+                mChoreographer.removeFrameCallback(mFrameCallback);
+            } else {
+                mUIThreadHandler.removeCallbacks(mRebindRunnable);
+            }
+        }
+        if (ROOT_REATTACHED_LISTENER != null) {
+            mRoot.removeOnAttachStateChangeListener(ROOT_REATTACHED_LISTENER);
+        }
+        if (mRebindParked) {
+            stopWatchingVisibility();
+        }
+    }
+
     static ViewDataBinding getBinding(View v) {
         if (v != null) {
             return (ViewDataBinding) v.getTag(R.id.dataBinding);
@@ -552,7 +980,7 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         return mRoot;
     }
 
-    private void handleFieldChange(int mLocalFieldId, Object object, int fieldId) {
+    void handleFieldChange(int mLocalFieldId, Object object, int fieldId) {
         if (mInLiveDataRegisterObserver) {
             // We're in LiveData registration, which always results in a field change
             // that we can ignore. The value will be read immediately after anyway, so
@@ -560,6 +988,12 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
             return;
         }
         boolean result = onFieldChange(mLocalFieldId, object, fieldId);
+        if (BindingTrace.ENABLED && result && BindingTrace.isTracing()) {
+            if (mFirstTracedChangeNanos < 0) {
+                mFirstTracedChangeNanos = System.nanoTime();
+            }
+            BindingTrace.recordFieldChange(this, object, mLocalFieldId, fieldId);
+        }
         if (result) {
             //重新构建UI
             requestRebind();
@@ -582,8 +1016,16 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
      */
     protected void requestRebind() {
         if (mContainingBinding != null) {
+            mContainingBinding.markChildDirty(mIndexInContainingBinding);
             mContainingBinding.requestRebind();
         } else {
+            if (mAwaitingMainThread) {
+                return; // scheduled once the binding is handed to the main thread
+            }
+            if (mRebindParked) {
+                countAvoidedRebind();
+                return; // requested again once the root becomes visible
+            }
             final LifecycleOwner owner = this.mLifecycleOwner;
             if (owner != null) {
                 Lifecycle.State state = owner.getLifecycle().getCurrentState();
@@ -597,7 +1039,10 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
                 }
                 mPendingRebind = true;
             }
-            if (USE_CHOREOGRAPHER) {
+            if (mRebindScheduler != null) {
+                //交给全局的 RebindScheduler，下一帧统一调用 mRebindRunnable
+                mRebindScheduler.schedule(this);
+            } else if (USE_CHOREOGRAPHER) {
                 //当下一帧来临会调用 mFrameCallback ，最后还是会 调用 mRebindRunnable
                 mChoreographer.postFrameCallback(mFrameCallback);
             } else {
@@ -607,6 +1052,34 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         }
     }
 
+    /**
+     * Moves a binding created on the {@link AsyncBindingInflater} thread over to the main
+     * thread, so that rebinds are scheduled with the main thread's Choreographer or Handler.
+     * Must be called on the main thread.
+     */
+    void attachToMainThread() {
+        if (!mAwaitingMainThread) {
+            return;
+        }
+        mAwaitingMainThread = false;
+        if (USE_CHOREOGRAPHER) {
+            mChoreographer = Choreographer.getInstance();
+            mRebindScheduler = RebindScheduler.forCurrentThread();
+        } else {
+            mUIThreadHandler = new Handler(Looper.getMainLooper());
+        }
+        if (hasPendingBindings()) {
+            requestRebind();
+        }
+    }
+
+    /**
+     * Runs the rebind posted from {@link #requestRebind()}. Called by {@link RebindScheduler}.
+     */
+    void runPendingRebind() {
+        mRebindRunnable.run();
+    }
+
     /**
      * @hide
      */
@@ -618,7 +1091,7 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         return listener.getTarget();
     }
 
-    private boolean updateRegistration(int localFieldId, Object observable,
+    boolean updateRegistration(int localFieldId, Object observable,
             CreateWeakListener listenerCreator) {
         if (observable == null) {
             return unregisterFrom(localFieldId);
@@ -633,8 +1106,8 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         if (listener.getTarget() == observable) {
             return false;//nothing to do, same object
         }
-        unregisterFrom(localFieldId);
-        registerTo(localFieldId, observable, listenerCreator);
+        // 复用已有的 listener，直接切换监听对象，不再重新创建
+        listener.setTarget(observable);
         return true;
     }
 
@@ -671,6 +1144,21 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         }
     }
 
+    /**
+     * @return The number of times executeBindings has run, for listeners that conflate their
+     * changes until the next execution.
+     */
+    int getExecutionCount() {
+        return mExecutionCount;
+    }
+
+    /**
+     * Records a change that was not forwarded because an earlier one hasn't been bound yet.
+     */
+    void onObservableChangeSuppressed() {
+        mSuppressedLiveDataChangeCount++;
+    }
+
     /**
      * @hide
      */
@@ -741,6 +1229,112 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         return bindings;
     }
 
+    /**
+     * Finds the bound views of a layout through the child index paths precomputed by the
+     * compiler. Every view found this way is checked against its expected tag or ID and, if
+     * any of them doesn't match, the view hierarchy is walked as in
+     * {@link #mapBindings(DataBindingComponent, View, int, IncludedLayouts, SparseIntArray)}.
+     *
+     * @param bindingComponent The binding component to use with this binding.
+     * @param root The root of the view hierarchy.
+     * @param numBindings The total number of ID'd views, views with expressions, and includes
+     * @param includes The include layout information, indexed by their container's index.
+     * @param viewsWithIds Indexes of views that don't have tags, but have IDs.
+     * @param viewPaths The child indices leading from root to each bound view, indexed like the
+     *                  returned array, or null if the layout must be walked.
+     * @return An array of size numBindings containing all bound Views in the hierarchy.
+     * @hide
+     */
+    protected static Object[] mapBindings(DataBindingComponent bindingComponent, View root,
+            int numBindings, IncludedLayouts includes, SparseIntArray viewsWithIds,
+            int[][] viewPaths) {
+        if (viewPaths != null) {
+            Object[] bindings = new Object[numBindings];
+            if (mapBindingsByPath(root, null, bindings, viewPaths, viewsWithIds)) {
+                return bindings;
+            }
+        }
+        return mapBindings(bindingComponent, root, numBindings, includes, viewsWithIds);
+    }
+
+    /**
+     * Same as {@link #mapBindings(DataBindingComponent, View, int, IncludedLayouts,
+     * SparseIntArray, int[][])} for layouts with a merge root. The first index of each path
+     * selects the root.
+     * @hide
+     */
+    protected static Object[] mapBindings(DataBindingComponent bindingComponent, View[] roots,
+            int numBindings, IncludedLayouts includes, SparseIntArray viewsWithIds,
+            int[][] viewPaths) {
+        if (viewPaths != null) {
+            Object[] bindings = new Object[numBindings];
+            if (mapBindingsByPath(null, roots, bindings, viewPaths, viewsWithIds)) {
+                return bindings;
+            }
+        }
+        return mapBindings(bindingComponent, roots, numBindings, includes, viewsWithIds);
+    }
+
+    /**
+     * Resolves each path in viewPaths and stores the view in bindings.
+     *
+     * @return false if a path doesn't lead to the expected view. The content of bindings is
+     * undefined in that case.
+     */
+    private static boolean mapBindingsByPath(View root, View[] roots, Object[] bindings,
+            int[][] viewPaths, SparseIntArray viewsWithIds) {
+        for (int index = 0; index < viewPaths.length; index++) {
+            final int[] path = viewPaths[index];
+            if (path == null) {
+                continue;
+            }
+            View view = root;
+            int depth = 0;
+            if (roots != null) {
+                if (path.length == 0 || path[0] >= roots.length) {
+                    return false;
+                }
+                view = roots[path[0]];
+                depth = 1;
+            }
+            for (; depth < path.length; depth++) {
+                if (!(view instanceof ViewGroup)) {
+                    return false;
+                }
+                final ViewGroup viewGroup = (ViewGroup) view;
+                if (path[depth] >= viewGroup.getChildCount()) {
+                    return false;
+                }
+                view = viewGroup.getChildAt(path[depth]);
+            }
+            if (getBinding(view) != null || !isExpectedView(view, index, viewsWithIds)) {
+                // 布局和编译时不一致（比如自定义 inflater），退回到遍历 tag 的方式
+                return false;
+            }
+            bindings[index] = view;
+        }
+        return true;
+    }
+
+    private static boolean isExpectedView(View view, int index, SparseIntArray viewsWithIds) {
+        final Object objTag = view.getTag();
+        if (objTag instanceof String) {
+            final String tag = (String) objTag;
+            if (tag.startsWith(BINDING_TAG_PREFIX)) {
+                return isNumeric(tag, BINDING_NUMBER_START)
+                        && parseTagInt(tag, BINDING_NUMBER_START) == index;
+            }
+            if (tag.startsWith("layout")) {
+                final int underscoreIndex = tag.lastIndexOf('_');
+                if (underscoreIndex > 0 && isNumeric(tag, underscoreIndex + 1)) {
+                    return parseTagInt(tag, underscoreIndex + 1) == index;
+                }
+            }
+        }
+        final int id = view.getId();
+        return id > 0 && viewsWithIds != null && viewsWithIds.get(id, -1) == index;
+    }
+
     /** @hide */
     protected static boolean parse(String str, boolean fallback) {
         if (str == null) {
@@ -998,6 +1592,54 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         list.set(index, value);
     }
 
+    /** @hide */
+    protected static int getFromList(ObservableIntArray list, int index) {
+        if (list == null || index < 0 || index >= list.size()) {
+            return 0;
+        }
+        return list.getInt(index);
+    }
+
+    /** @hide */
+    protected static void setTo(ObservableIntArray list, int index, int value) {
+        if (list == null || index < 0 || index >= list.size()) {
+            return;
+        }
+        list.setInt(index, value);
+    }
+
+    /** @hide */
+    protected static long getFromList(ObservableLongArray list, int index) {
+        if (list == null || index < 0 || index >= list.size()) {
+            return 0;
+        }
+        return list.getLong(index);
+    }
+
+    /** @hide */
+    protected static void setTo(ObservableLongArray list, int index, long value) {
+        if (list == null || index < 0 || index >= list.size()) {
+            return;
+        }
+        list.setLong(index, value);
+    }
+
+    /** @hide */
+    protected static float getFromList(ObservableFloatArray list, int index) {
+        if (list == null || index < 0 || index >= list.size()) {
+            return 0f;
+        }
+        return list.getFloat(index);
+    }
+
+    /** @hide */
+    protected static void setTo(ObservableFloatArray list, int index, float value) {
+        if (list == null || index < 0 || index >= list.size()) {
+            return;
+        }
+        list.setFloat(index, value);
+    }
+
     /** @hide */
     protected static <T> T getFromList(SparseArray<T> list, int index) {
         if (list == null || index < 0) {
@@ -1177,6 +1819,9 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
     protected void setContainedBinding(ViewDataBinding included) {
         if (included != null) {
             included.mContainingBinding = this;
+            included.mIndexInContainingBinding = mContainedBindingCount++;
+            // the include may already be dirty from its own constructor
+            markChildDirty(included.mIndexInContainingBinding);
         }
     }
 
@@ -1362,19 +2007,6 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         return val;
     }
 
-    /**
-     * Polls sReferenceQueue to remove listeners on ViewDataBindings that have been collected.
-     */
-    private static void processReferenceQueue() {
-        Reference<? extends ViewDataBinding> ref;
-        while ((ref = sReferenceQueue.poll()) != null) {
-            if (ref instanceof WeakListener) {
-                WeakListener listener = (WeakListener) ref;
-                listener.unregister();
-            }
-        }
-    }
-
     /**
      * Pass through inflate method for generated code that receives bindingComponent as an object.
      * <p>
@@ -1395,17 +2027,27 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         );
     }
 
-    private interface ObservableReference<T> {
+    /**
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public interface ObservableReference<T> {
         WeakListener<T> getListener();
         void addListener(T target);
         void removeListener(T target);
         void setLifecycleOwner(LifecycleOwner lifecycleOwner);
     }
 
-    private static class WeakListener<T> extends WeakReference<ViewDataBinding> {
+    /**
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public static class WeakListener<T> extends WeakReference<ViewDataBinding>
+            implements ReferenceQueueReaper.Reapable {
         private final ObservableReference<T> mObservable;
         protected final int mLocalFieldId;
-        private T mTarget;
+        // Written under the lock, but read from whichever thread notifies the target.
+        private volatile T mTarget;
 
         public WeakListener(ViewDataBinding binder, int localFieldId,
                             ObservableReference<T> observable) {
@@ -1420,28 +2062,59 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         }
 
         public void setTarget(T object) {
-            unregister();
-            mTarget = object;
-            if (mTarget != null) {
+            final T previous;
+            synchronized (this) {
+                previous = mTarget;
+                if (object == previous) {
+                    return;
+                }
+                mTarget = object;
+            }
+            // Only the swap is guarded. The observable is called without holding the lock so that
+            // it can't deadlock against an observable that notifies under its own lock.
+            if (previous != null) {
+                mObservable.removeListener(previous);
+            }
+            if (object != null) {
                 //调用 WeakPropertyListener 的 addListener
-                mObservable.addListener(mTarget);
+                mObservable.addListener(object);
             }
         }
 
         public boolean unregister() {
-            boolean unregistered = false;
-            if (mTarget != null) {
-                mObservable.removeListener(mTarget);
-                unregistered = true;
+            final T previous;
+            synchronized (this) {
+                previous = mTarget;
+                mTarget = null;
             }
-            mTarget = null;
-            return unregistered;
+            if (previous == null) {
+                return false;
+            }
+            mObservable.removeListener(previous);
+            return true;
         }
 
         public T getTarget() {
             return mTarget;
         }
 
+        @Override
+        public boolean reap() {
+            // LiveData observers can only be removed on the main thread, and observables that
+            // don't keep their callbacks in a LockFreeCallbackRegistry may not be thread-safe.
+            final T target = mTarget;
+            if (target != null && !ReferenceQueueReaper.canReleaseOffMainThread(target)) {
+                return false;
+            }
+            unregister();
+            return true;
+        }
+
+        @Override
+        public void reapOnMainThread() {
+            unregister();
+        }
+
         protected ViewDataBinding getBinder() {
             ViewDataBinding binder = get();
             if (binder == null) {
@@ -1466,6 +2139,16 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
 
         @Override
         public void addListener(Observable target) {
+            if (sFilterPropertyChanges && target instanceof BaseObservable) {
+                ViewDataBinding binder = mListener.get();
+                int[] propertyIds = binder == null
+                        ? null : binder.getObservedPropertyIds(mListener.mLocalFieldId);
+                if (propertyIds != null) {
+                    // 只监听 binding 关心的 BR id
+                    ((BaseObservable) target).addOnPropertyChangedCallback(this, propertyIds);
+                    return;
+                }
+            }
             //给 自己 添加 OnPropertyChangedCallback 监听 也就是当
             // LiveData属性改变的时候 会调用自己的  onPropertyChanged 方法
             target.addOnPropertyChangedCallback(this);
@@ -1595,9 +2278,17 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
 
     private static class LiveDataListener implements Observer,
             ObservableReference<LiveData<?>> {
+        private static final Object NO_VALUE = new Object();
+
         final WeakListener<LiveData<?>> mListener;
         LifecycleOwner mLifecycleOwner;
 
+        /** The last value the target emitted, for LIVE_DATA_DISTINCT. */
+        private Object mLastValue = NO_VALUE;
+
+        /** The execution count of the binder when this listener last marked it dirty. */
+        private int mNotifiedExecution = -1;
+
         public LiveDataListener(ViewDataBinding binder, int localFieldId) {
             mListener = new WeakListener(binder, localFieldId, this);
         }
@@ -1626,6 +2317,8 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
 
         @Override
         public void addListener(LiveData<?> target) {
+            mLastValue = NO_VALUE;
+            mNotifiedExecution = -1;
             if (mLifecycleOwner != null) {
                 target.observe(mLifecycleOwner, this);
             }
@@ -1639,13 +2332,38 @@ public abstract class ViewDataBinding extends BaseObservable implements ViewBind
         @Override
         public void onChanged(@Nullable Object o) {
             ViewDataBinding binder = mListener.getBinder();
-            if (binder != null) {
-                binder.handleFieldChange(mListener.mLocalFieldId, mListener.getTarget(), 0);
+            if (binder == null) {
+                return;
             }
+            final LiveData<?> target = mListener.getTarget();
+            final int mode = binder.getLiveDataMode(target);
+            final Object lastValue = mLastValue;
+            mLastValue = o;
+            if (binder.mInLiveDataRegisterObserver) {
+                return; // the initial value is ignored by handleFieldChange anyway
+            }
+            if ((mode & LIVE_DATA_DISTINCT) != 0 && lastValue != NO_VALUE
+                    && (lastValue == null ? o == null : lastValue.equals(o))) {
+                binder.mSuppressedLiveDataChangeCount++;
+                return;
+            }
+            if ((mode & LIVE_DATA_CONFLATE) != 0) {
+                if (mNotifiedExecution == binder.mExecutionCount) {
+                    // 上一次的改变还没被绑定，绑定时会读取最新的值
+                    binder.mSuppressedLiveDataChangeCount++;
+                    return;
+                }
+                mNotifiedExecution = binder.mExecutionCount;
+            }
+            binder.handleFieldChange(mListener.mLocalFieldId, target, 0);
         }
     }
 
-    private interface CreateWeakListener {
+    /**
+     * @hide
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public interface CreateWeakListener {
         WeakListener create(ViewDataBinding viewDataBinding, int localFieldId);
     }
 
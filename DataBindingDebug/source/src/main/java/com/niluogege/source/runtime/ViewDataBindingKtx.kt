@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.niluogege.source.runtime
+
+import androidx.annotation.RestrictTo
+import androidx.lifecycle.LifecycleOwner
+import androidx.lifecycle.lifecycleScope
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.collect
+import java.lang.ref.WeakReference
+
+/**
+ * Kotlin coroutines support for [ViewDataBinding]. It is kept out of ViewDataBinding so that the
+ * binding classes don't depend on kotlinx.coroutines, whose StateFlow is still experimental.
+ *
+ * @hide
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+@OptIn(ExperimentalCoroutinesApi::class)
+object ViewDataBindingKtx {
+    /**
+     * Method object extracted out to attach a listener to a bound StateFlow object.
+     */
+    private val CREATE_STATE_FLOW_LISTENER =
+        ViewDataBinding.CreateWeakListener { binding, localFieldId ->
+            StateFlowListener(binding, localFieldId).listener
+        }
+
+    /**
+     * Registers a kotlinx.coroutines StateFlow. The flow is collected in the scope of the
+     * lifecycle owner while it is at least started, and changes are conflated so the binding
+     * is marked dirty at most once per execution of the bindings.
+     *
+     * Only called by the generated code.
+     *
+     * @hide
+     */
+    @JvmStatic
+    fun updateStateFlowRegistration(
+        viewDataBinding: ViewDataBinding,
+        localFieldId: Int,
+        observable: StateFlow<*>?
+    ): Boolean {
+        return viewDataBinding.updateRegistration(
+            localFieldId, observable, CREATE_STATE_FLOW_LISTENER
+        )
+    }
+
+    /**
+     * Observes a StateFlow the way LiveDataListener observes a LiveData: the flow is only
+     * collected while there is a lifecycle owner, and the collection is suspended while the
+     * owner is below STARTED. A StateFlow only keeps its latest value, so values emitted while
+     * suspended are conflated into the one that is collected on resume. Values that arrive
+     * before the binding has executed for the previous one are dropped as well, since the
+     * binding reads the latest value when it executes.
+     *
+     * Collecting a StateFlow always starts with its current value. When the flow has just been
+     * registered, the binding read that value itself, so the first value is skipped unless it
+     * changed in between, e.g. while collection waited for the owner to start. When collection
+     * starts because of a new lifecycle owner, the first value is delivered like LiveData does.
+     */
+    private class StateFlowListener(
+        binder: ViewDataBinding,
+        localFieldId: Int
+    ) : ViewDataBinding.ObservableReference<StateFlow<Any?>> {
+
+        private val listener = ViewDataBinding.WeakListener(binder, localFieldId, this)
+
+        private var lifecycleOwnerRef: WeakReference<LifecycleOwner>? = null
+
+        private var observerJob: Job? = null
+
+        /** The execution count of the binder when this listener last marked it dirty. */
+        private var notifiedExecution = -1
+
+        override fun getListener(): ViewDataBinding.WeakListener<StateFlow<Any?>> {
+            return listener
+        }
+
+        override fun addListener(target: StateFlow<Any?>?) {
+            notifiedExecution = -1
+            val owner = lifecycleOwnerRef?.get() ?: return
+            if (target != null) {
+                // the binding has just read the current value
+                startCollection(owner, target, skipBoundValue = true)
+            }
+        }
+
+        override fun removeListener(target: StateFlow<Any?>?) {
+            observerJob?.cancel()
+            observerJob = null
+        }
+
+        override fun setLifecycleOwner(lifecycleOwner: LifecycleOwner?) {
+            if (lifecycleOwnerRef?.get() === lifecycleOwner) {
+                return
+            }
+            observerJob?.cancel()
+            observerJob = null
+            if (lifecycleOwner == null) {
+                lifecycleOwnerRef = null
+                return
+            }
+            lifecycleOwnerRef = WeakReference(lifecycleOwner)
+            val target = listener.target
+            if (target != null) {
+                startCollection(lifecycleOwner, target, skipBoundValue = false)
+            }
+        }
+
+        private fun startCollection(
+            owner: LifecycleOwner,
+            flow: StateFlow<Any?>,
+            skipBoundValue: Boolean
+        ) {
+            observerJob?.cancel()
+            val boundValue = flow.value
+            // 和 OnStartListener 一样，只在 STARTED 之后才处理变化
+            observerJob = owner.lifecycleScope.launchWhenStarted {
+                var first = true
+                flow.collect { value ->
+                    if (first) {
+                        first = false
+                        if (skipBoundValue && value === boundValue) {
+                            return@collect
+                        }
+                    }
+                    onChanged(flow)
+                }
+            }
+        }
+
+        private fun onChanged(flow: StateFlow<Any?>) {
+            val binder = listener.binder ?: return
+            if (flow !== listener.target) {
+                return
+            }
+            val executionCount = binder.executionCount
+            if (notifiedExecution == executionCount) {
+                binder.onObservableChangeSuppressed()
+                return
+            }
+            notifiedExecution = executionCount
+            binder.handleFieldChange(listener.mLocalFieldId, flow, 0)
+        }
+    }
+}
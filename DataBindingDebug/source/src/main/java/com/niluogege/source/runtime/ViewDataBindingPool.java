@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded pool of unused {@link ViewDataBinding}s, keyed by layout id, so that screens that
+ * are shown again and again can reuse their bindings instead of inflating new ones.
+ * <p>
+ * A binding given to {@link #release(ViewDataBinding, int)} is reset: its lifecycle owner is
+ * removed, every variable is set back to its default value and all observable registrations are
+ * dropped (see {@link ViewDataBinding#unbind()}). Included bindings are reset along with the
+ * binding that includes them. Bindings come back from
+ * {@link #acquire(LayoutInflater, int, ViewGroup)} in that state and must be given new variables
+ * before they are shown.
+ * <p>
+ * When the pool is full, the least recently released binding of the least recently used layout
+ * is evicted. The pool must only be used on the main thread.
+ */
+public class ViewDataBindingPool {
+
+    private final int mMaxSize;
+
+    /** Pooled bindings by layout id, least recently used layout first. */
+    private final LinkedHashMap<Integer, ArrayDeque<Entry>> mPool =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Every binding currently in {@link #mPool}, so a binding can't be pooled twice. */
+    private final Set<ViewDataBinding> mPooledBindings =
+            Collections.newSetFromMap(new IdentityHashMap<ViewDataBinding, Boolean>());
+
+    private int mSize;
+    private int mPooledViewCount;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    private static final class Entry {
+        final ViewDataBinding binding;
+        final int viewCount;
+
+        Entry(ViewDataBinding binding, int viewCount) {
+            this.binding = binding;
+            this.viewCount = viewCount;
+        }
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxSize The maximum number of bindings kept, over all layouts.
+     */
+    public ViewDataBindingPool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Returns a pooled binding for <code>layoutId</code> or inflates a new one if the pool has
+     * none. The root of the returned binding has no parent.
+     *
+     * @param inflater The LayoutInflater used when a new binding must be inflated.
+     * @param layoutId The layout resource ID.
+     * @param parent Optional view that provides the LayoutParams for a newly inflated root.
+     * @param <T> Type of the generated binding class.
+     * @return A binding for <code>layoutId</code>.
+     */
+    @SuppressWarnings("unchecked")
+    @MainThread
+    public <T extends ViewDataBinding> T acquire(@NonNull LayoutInflater inflater,
+            @LayoutRes int layoutId, @Nullable ViewGroup parent) {
+        final T pooled = acquire(layoutId);
+        if (pooled != null) {
+            return pooled;
+        }
+        return DataBindingUtil.inflate(inflater, layoutId, parent, false);
+    }
+
+    /**
+     * Returns a pooled binding for <code>layoutId</code>.
+     *
+     * @param layoutId The layout resource ID.
+     * @param <T> Type of the generated binding class.
+     * @return A pooled binding or <code>null</code> if there is none for the layout.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    @MainThread
+    public <T extends ViewDataBinding> T acquire(@LayoutRes int layoutId) {
+        final ArrayDeque<Entry> entries = mPool.get(layoutId);
+        if (entries == null || entries.isEmpty()) {
+            mMissCount++;
+            return null;
+        }
+        final Entry entry = entries.pollLast();
+        if (entries.isEmpty()) {
+            mPool.remove(layoutId);
+        }
+        mSize--;
+        mPooledViewCount -= entry.viewCount;
+        mPooledBindings.remove(entry.binding);
+        mHitCount++;
+        return (T) entry.binding;
+    }
+
+    /**
+     * Resets <code>binding</code> and keeps it for a later {@link #acquire}. The root of the
+     * binding must already have been removed from its parent and must not be in the pool
+     * already.
+     *
+     * @param binding The binding that is no longer used.
+     * @param layoutId The layout the binding was inflated from.
+     */
+    @MainThread
+    public void release(@NonNull ViewDataBinding binding, @LayoutRes int layoutId) {
+        final View root = binding.getRoot();
+        if (root.getParent() != null) {
+            throw new IllegalStateException("The root of a pooled binding must not have a parent");
+        }
+        if (!mPooledBindings.add(binding)) {
+            // it would be handed out twice by acquire
+            throw new IllegalStateException("The binding has already been released to the pool");
+        }
+        binding.resetForReuse();
+        ArrayDeque<Entry> entries = mPool.get(layoutId);
+        if (entries == null) {
+            entries = new ArrayDeque<>();
+            mPool.put(layoutId, entries);
+        }
+        final Entry entry = new Entry(binding, countViews(root));
+        entries.addLast(entry);
+        mSize++;
+        mPooledViewCount += entry.viewCount;
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * Evicts pooled bindings until at most <code>maxSize</code> are left.
+     *
+     * @param maxSize The number of bindings to keep. 0 empties the pool.
+     */
+    @MainThread
+    public void trimToSize(int maxSize) {
+        final Iterator<Map.Entry<Integer, ArrayDeque<Entry>>> iterator =
+                mPool.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            final ArrayDeque<Entry> entries = iterator.next().getValue();
+            while (mSize > maxSize && !entries.isEmpty()) {
+                final Entry entry = entries.pollFirst();
+                mSize--;
+                mPooledViewCount -= entry.viewCount;
+                mPooledBindings.remove(entry.binding);
+                mEvictionCount++;
+            }
+            if (entries.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Empties the pool.
+     */
+    @MainThread
+    public void clear() {
+        trimToSize(0);
+    }
+
+    /**
+     * @return The number of bindings in the pool.
+     */
+    @MainThread
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return The maximum number of bindings the pool keeps.
+     */
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * Returns the number of Views held by the pooled bindings, as a measure of the memory the
+     * pool keeps alive.
+     *
+     * @return The number of Views in the hierarchies of the pooled bindings.
+     */
+    @MainThread
+    public int getPooledViewCount() {
+        return mPooledViewCount;
+    }
+
+    /**
+     * @return The number of acquire calls that were served from the pool.
+     */
+    @MainThread
+    public long getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return The number of acquire calls that found no pooled binding.
+     */
+    @MainThread
+    public long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return The number of bindings evicted to keep the pool within its bounds.
+     */
+    @MainThread
+    public long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    private static int countViews(View view) {
+        int count = 1;
+        if (view instanceof ViewGroup) {
+            final ViewGroup viewGroup = (ViewGroup) view;
+            final int childCount = viewGroup.getChildCount();
+            for (int i = 0; i < childCount; i++) {
+                count += countViews(viewGroup.getChildAt(i));
+            }
+        }
+        return count;
+    }
+}
@@ -15,10 +15,20 @@
  */
 package com.niluogege.source.runtime;
 
+import android.content.Context;
+import android.os.Build.VERSION;
+import android.os.Build.VERSION_CODES;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
 import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.ViewStub;
 import android.view.ViewStub.OnInflateListener;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -27,6 +37,14 @@ import androidx.annotation.Nullable;
  * the ViewStub is accessible. After inflation, the root View of the inflated layout
  * will be available. If the inflated layout has data binding, the ViewDataBinding for the inflated
  * View is accessible.
+ * <p>
+ * With {@link #prefetch()} or {@link #prefetchAsync()}, the layout of the ViewStub is inflated
+ * and bound ahead of time, while the main thread is idle or on a background thread. When the
+ * ViewStub is inflated later, it takes the prefetched View instead of inflating its layout.
+ * <p>
+ * The containing binding hands the variables of the stub's binding to
+ * {@link #setVariable(int, Object)}, even before the stub is inflated. Only the stub's own
+ * binding is rebound when it is inflated, instead of the whole containing binding.
  */
 public class ViewStubProxy {
     private ViewStub mViewStub;
@@ -35,20 +53,42 @@ public class ViewStubProxy {
     private OnInflateListener mOnInflateListener;
     private ViewDataBinding mContainingBinding;
 
+    /**
+     * The variables the containing binding set for the stub's binding. null with generated code
+     * that sets variables directly on the inflated binding.
+     */
+    private SparseArray<Object> mVariables;
+
+    /** Hands the prefetched View to the ViewStub. null until prefetching is requested. */
+    private PrefetchedLayoutInflater mPrefetchInflater;
+
     private OnInflateListener mProxyListener = new OnInflateListener() {
         @Override
         public void onInflate(ViewStub stub, View inflated) {
             mRoot = inflated;
-            mViewDataBinding = DataBindingUtil.bind(mContainingBinding.mBindingComponent,
-                    inflated, stub.getLayoutResource());
+            final ViewDataBinding prefetched = DataBindingUtil.getBinding(inflated);
+            mViewDataBinding = prefetched != null ? prefetched
+                    : DataBindingUtil.bind(mContainingBinding.mBindingComponent, inflated,
+                            stub.getLayoutResource());
             mViewStub = null;
+            mPrefetchInflater = null;
 
             if (mOnInflateListener != null) {
                 mOnInflateListener.onInflate(stub, inflated);
                 mOnInflateListener = null;
             }
-            mContainingBinding.invalidateAll();
-            mContainingBinding.forceExecuteBindings();
+            if (mVariables != null) {
+                // 只刷新 stub 自己的 binding，不再让外层 binding 整体重新绑定
+                if (mViewDataBinding != null) {
+                    if (prefetched == null) {
+                        applyVariables(mViewDataBinding);
+                    }
+                    mViewDataBinding.executePendingBindings();
+                }
+            } else {
+                mContainingBinding.invalidateAll();
+                mContainingBinding.forceExecuteBindings();
+            }
         }
     };
 
@@ -61,6 +101,158 @@ public class ViewStubProxy {
         mContainingBinding = containingBinding;
     }
 
+    /**
+     * Sets a variable of the stub's binding. The value is kept until the stub is inflated and
+     * passed on directly afterwards. Called by the containing binding.
+     *
+     * @param variableId The BR id of the variable.
+     * @param value The new value of the variable.
+     */
+    public void setVariable(int variableId, @Nullable Object value) {
+        if (mVariables == null) {
+            mVariables = new SparseArray<>();
+        }
+        mVariables.put(variableId, value);
+        final ViewDataBinding binding = mViewDataBinding != null ? mViewDataBinding
+                : mPrefetchInflater != null ? mPrefetchInflater.mBinding : null;
+        if (binding != null) {
+            binding.setVariable(variableId, value);
+        }
+    }
+
+    /**
+     * Inflates and binds the stub's layout the next time the main thread is idle, so that
+     * showing the stub later only needs to swap the prefetched View in. Does nothing if the
+     * stub has already been inflated or prefetched, or before API 16.
+     */
+    @MainThread
+    public void prefetch() {
+        if (!startPrefetch()) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                final ViewStub stub = mViewStub;
+                if (stub != null && mPrefetchInflater != null
+                        && mPrefetchInflater.mPrefetched == null) {
+                    final ViewDataBinding binding = DataBindingUtil.inflate(
+                            mPrefetchInflater.mDelegate, stub.getLayoutResource(),
+                            getParent(stub), false, mContainingBinding.mBindingComponent);
+                    onPrefetched(binding);
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Inflates and binds the stub's layout on the {@link AsyncBindingInflater} thread. The
+     * layout must not contain views that need to be created on the main thread. Does nothing if
+     * the stub has already been inflated or prefetched, or before API 16.
+     */
+    @MainThread
+    public void prefetchAsync() {
+        if (!startPrefetch()) {
+            return;
+        }
+        AsyncBindingInflater.getInstance().inflate(mPrefetchInflater.mDelegate,
+                mViewStub.getLayoutResource(), getParent(mViewStub),
+                mContainingBinding.mBindingComponent,
+                new AsyncBindingInflater.OnBindingInflatedListener<ViewDataBinding>() {
+                    @Override
+                    public void onBindingInflated(@NonNull ViewDataBinding binding,
+                            int layoutId, @Nullable ViewGroup parent) {
+                        if (mViewStub != null && mPrefetchInflater != null
+                                && mPrefetchInflater.mPrefetched == null) {
+                            onPrefetched(binding);
+                        }
+                    }
+
+                    @Override
+                    public void onBindingInflateFailed(int layoutId, @Nullable ViewGroup parent,
+                            @NonNull RuntimeException error) {
+                        // nothing was prefetched, the ViewStub inflates the layout as usual
+                    }
+                });
+    }
+
+    /**
+     * @return <code>true</code> if the layout has been prefetched and is waiting for the ViewStub
+     * to be inflated.
+     */
+    public boolean isPrefetched() {
+        return mPrefetchInflater != null && mPrefetchInflater.mPrefetched != null;
+    }
+
+    private boolean startPrefetch() {
+        if (mViewStub == null || mPrefetchInflater != null
+                || VERSION.SDK_INT < VERSION_CODES.JELLY_BEAN) {
+            return false;
+        }
+        final LayoutInflater inflater = LayoutInflater.from(mViewStub.getContext());
+        mPrefetchInflater = new PrefetchedLayoutInflater(inflater, mViewStub.getContext());
+        mViewStub.setLayoutInflater(mPrefetchInflater);
+        return true;
+    }
+
+    private void onPrefetched(@Nullable ViewDataBinding binding) {
+        if (binding == null) {
+            return; // not a binding layout, the ViewStub inflates it as usual
+        }
+        applyVariables(binding);
+        binding.executePendingBindings();
+        mPrefetchInflater.mBinding = binding;
+        mPrefetchInflater.mPrefetched = binding.getRoot();
+        mPrefetchInflater.mLayoutId = mViewStub.getLayoutResource();
+    }
+
+    private void applyVariables(@NonNull ViewDataBinding binding) {
+        if (mVariables == null) {
+            return;
+        }
+        for (int i = 0; i < mVariables.size(); i++) {
+            binding.setVariable(mVariables.keyAt(i), mVariables.valueAt(i));
+        }
+    }
+
+    @Nullable
+    private static ViewGroup getParent(@NonNull ViewStub stub) {
+        final ViewParent parent = stub.getParent();
+        return parent instanceof ViewGroup ? (ViewGroup) parent : null;
+    }
+
+    /**
+     * Returns the prefetched View when the ViewStub inflates the prefetched layout and inflates
+     * normally otherwise.
+     */
+    private static class PrefetchedLayoutInflater extends LayoutInflater {
+        final LayoutInflater mDelegate;
+        View mPrefetched;
+        ViewDataBinding mBinding;
+        int mLayoutId;
+
+        PrefetchedLayoutInflater(LayoutInflater delegate, Context context) {
+            super(delegate, context);
+            mDelegate = delegate;
+        }
+
+        @Override
+        public View inflate(int resource, @Nullable ViewGroup root, boolean attachToRoot) {
+            final View prefetched = mPrefetched;
+            if (prefetched != null && resource == mLayoutId && !attachToRoot) {
+                mPrefetched = null;
+                return prefetched;
+            }
+            return mDelegate.inflate(resource, root, attachToRoot);
+        }
+
+        @Override
+        public LayoutInflater cloneInContext(Context newContext) {
+            return mDelegate.cloneInContext(newContext);
+        }
+    }
+
     /**
      * Returns <code>true</code> if the ViewStub has replaced itself with the inflated layout
      * or <code>false</code> if not.
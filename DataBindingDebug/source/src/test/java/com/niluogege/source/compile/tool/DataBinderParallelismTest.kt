@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.databinding.tool
+
+import android.databinding.tool.ext.cleanLazyProps
+import android.databinding.tool.processing.Scope
+import android.databinding.tool.processing.ScopedException
+import android.databinding.tool.reflection.ModelClass
+import android.databinding.tool.reflection.SdkUtil
+import android.databinding.tool.reflection.annotation.AnnotationAnalyzer
+import android.databinding.tool.store.LayoutFileParser
+import android.databinding.tool.store.ResourceBundle
+import android.databinding.tool.store.SetterStore
+import android.databinding.tool.util.GenerationalClassUtil
+import android.databinding.tool.util.RelativizableFile
+import android.databinding.tool.writer.JavaFileWriter
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeNotNull
+import org.junit.Assume.assumeTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.net.URI
+import javax.annotation.processing.AbstractProcessor
+import javax.annotation.processing.RoundEnvironment
+import javax.lang.model.SourceVersion
+import javax.lang.model.element.TypeElement
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.ToolProvider
+
+/**
+ * Runs the same work through [DataBinder.forEachInParallel] with one and with several threads
+ * and checks that the results, down to the bytes of the written binders, are the same. The work
+ * resolves types through one shared [AnnotationAnalyzer], so the lazily computed properties of
+ * the model classes are raced for.
+ */
+class DataBinderParallelismTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    @Test
+    fun bindersAreWrittenTheSameInParallel() {
+        val outputs = writeBinders(listOf(1, 8))
+        val serial = outputs.getValue(1)
+        val parallel = outputs.getValue(8)
+        val serialFiles = relativeFiles(serial)
+        assertEquals(LAYOUTS, serialFiles.count { it.endsWith("BindingImpl.java") })
+        assertEquals(serialFiles, relativeFiles(parallel))
+        serialFiles.forEach {
+            assertArrayEquals(it, File(serial, it).readBytes(), File(parallel, it).readBytes())
+        }
+    }
+
+    @Test
+    fun modelClassesResolveTheSameInParallel() {
+        val results = analyze(listOf(1, 8))
+        assertEquals(results[1], results[8])
+    }
+
+    @Test
+    fun deferredErrorsKeepItemOrder() {
+        val items = (0 until 64).toList()
+        val task = DataBinder.ParallelTask<Int, String> { item ->
+            Thread.sleep((item * 7 % 5).toLong())
+            if (item % 10 == 3) {
+                Scope.defer(ScopedException("item $item"))
+            }
+            "result $item"
+        }
+        val serial = collect(items, 1, task)
+        val parallel = collect(items, 8, task)
+        assertEquals(serial, parallel)
+    }
+
+    private fun collect(items: List<Int>, parallelism: Int,
+            task: DataBinder.ParallelTask<Int, String>): Pair<List<String>, List<String>> {
+        // keep the deferred errors of the test out of the global list
+        Scope.startCapture()
+        val values = DataBinder.forEachInParallel(items, parallelism, task)
+        val deferred = Scope.endCapture().map { it.bareMessage }
+        return Pair(values, deferred)
+    }
+
+    /**
+     * Runs javac with a processor that describes [CLASSES] once per parallelism, each time with
+     * a new analyzer so that every lazy property starts out uncomputed.
+     */
+    private fun analyze(parallelisms: List<Int>): Map<Int, List<String>> {
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        assumeNotNull(compiler)
+        val results = HashMap<Int, List<String>>()
+        val processor = object : AbstractProcessor() {
+            override fun getSupportedAnnotationTypes() = setOf("*")
+
+            override fun getSupportedSourceVersion(): SourceVersion = SourceVersion.latest()
+
+            override fun process(annotations: Set<TypeElement>,
+                    roundEnv: RoundEnvironment): Boolean {
+                if (roundEnv.processingOver()) {
+                    return false
+                }
+                parallelisms.forEach { parallelism ->
+                    val analyzer = AnnotationAnalyzer(processingEnv, LibTypes(false),
+                            parallelism)
+                    Context.initForTests(analyzer, SdkUtil(null, 14))
+                    results[parallelism] = DataBinder.forEachInParallel(CLASSES, parallelism,
+                            DataBinder.ParallelTask<String, String> { className ->
+                                val modelClass = analyzer.findClass(className, null)
+                                assertNotNull(className, modelClass)
+                                describe(modelClass!!)
+                            })
+                }
+                return false
+            }
+        }
+        val source = object : SimpleJavaFileObject(URI.create("string:///Empty.java"),
+                JavaFileObject.Kind.SOURCE) {
+            override fun getCharContent(ignoreEncodingErrors: Boolean) = "class Empty {}"
+        }
+        val task = compiler.getTask(null, null, null, listOf("-proc:only"), null,
+                listOf(source))
+        task.setProcessors(listOf(processor))
+        task.call()
+        assertEquals(parallelisms.toSet(), results.keys)
+        return results
+    }
+
+    /**
+     * Parses [LAYOUTS] generated layouts and writes their binders once per parallelism, each time
+     * with a new analyzer and setter store and into a folder of its own.
+     *
+     * @return The output folder of each parallelism.
+     */
+    private fun writeBinders(parallelisms: List<Int>): Map<Int, File> {
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        assumeNotNull(compiler)
+        val layoutDir = File(tmp.newFolder("res"), "layout").apply { mkdirs() }
+        val strippedDir = tmp.newFolder("stripped")
+        val apiFile = tmp.newFile("api-versions.xml").apply { writeText("<api version=\"2\"/>") }
+        val layouts = List(LAYOUTS) { index ->
+            File(layoutDir, "layout_$index.xml").apply { writeText(layoutXml(index)) }
+        }
+        // parsed again for every run, so that no run sees the bundles of the one before
+        val parseLayouts = {
+            val bundle = ResourceBundle(PACKAGE, true)
+            layouts.forEach { layout ->
+                val parsed = LayoutFileParser.parseXml(RelativizableFile.fromAbsoluteFile(layout),
+                        File(strippedDir, layout.name), PACKAGE, { it }, false)
+                bundle.addLayoutBundle(parsed!!, true)
+            }
+            bundle
+        }
+        val args = CompilerArguments(
+                incremental = false,
+                artifactType = CompilerArguments.Type.APPLICATION,
+                modulePackage = PACKAGE,
+                minApi = 14,
+                sdkDir = tmp.root,
+                dependencyArtifactsDir = tmp.newFolder("dependencies"),
+                layoutInfoDir = tmp.root,
+                classLogDir = tmp.root,
+                baseFeatureInfoDir = null,
+                featureInfoDir = null,
+                aarOutDir = null,
+                exportClassListOutFile = null,
+                enableDebugLogs = false,
+                printEncodedErrorLogs = false,
+                isTestVariant = false,
+                isEnabledForTests = false,
+                isEnableV2 = true)
+        val outputs = HashMap<Int, File>()
+        var hasAndroidClasses = false
+        val processor = object : AbstractProcessor() {
+            override fun getSupportedAnnotationTypes() = setOf("*")
+
+            override fun getSupportedSourceVersion(): SourceVersion = SourceVersion.latest()
+
+            override fun process(annotations: Set<TypeElement>,
+                    roundEnv: RoundEnvironment): Boolean {
+                if (roundEnv.processingOver()) {
+                    return false
+                }
+                val elements = processingEnv.elementUtils
+                hasAndroidClasses = elements.getTypeElement("android.widget.TextView") != null &&
+                        elements.getTypeElement("androidx.databinding.ViewDataBinding") != null
+                if (!hasAndroidClasses) {
+                    return false
+                }
+                parallelisms.forEach { parallelism ->
+                    cleanLazyProps()
+                    val analyzer = AnnotationAnalyzer(processingEnv, LibTypes(true), parallelism)
+                    val sdkUtil = SdkUtil(SdkUtil.ApiChecker(apiFile), 14)
+                    Context.initForTests(analyzer, sdkUtil)
+                    val setterStore = SetterStore.create(analyzer,
+                            GenerationalClassUtil(args.dependencyArtifactsDir, null))
+                    Context.initForTests(analyzer, sdkUtil, setterStore)
+                    val outDir = tmp.newFolder("out$parallelism")
+                    val writer = object : JavaFileWriter() {
+                        override fun writeToFile(canonicalName: String, contents: String) {
+                            writeToFile(File(outDir, canonicalName.replace('.', '/') + ".java"),
+                                    contents)
+                        }
+
+                        override fun deleteFile(canonicalName: String) {
+                            File(outDir, canonicalName.replace('.', '/') + ".java").delete()
+                        }
+                    }
+                    Scope.startCapture()
+                    val bundle = parseLayouts()
+                    CompilerChef.createChef(bundle, writer, args)
+                    val dataBinder = DataBinder(bundle, true, analyzer.libTypes)
+                    dataBinder.fileWriter = writer
+                    dataBinder.setParallelism(parallelism)
+                    dataBinder.sealModels()
+                    dataBinder.writeBinders(14)
+                    val errors = Scope.endCapture().map { it.bareMessage }
+                    assertEquals(emptyList<String>(), errors)
+                    outputs[parallelism] = outDir
+                }
+                return false
+            }
+        }
+        val source = object : SimpleJavaFileObject(URI.create("string:///Empty.java"),
+                JavaFileObject.Kind.SOURCE) {
+            override fun getCharContent(ignoreEncodingErrors: Boolean) = "class Empty {}"
+        }
+        // the android and data binding classes are on the class path of the test
+        val classPath = System.getProperty("java.class.path")
+        val task = compiler.getTask(null, null, null,
+                listOf("-proc:only", "-classpath", classPath), null, listOf(source))
+        task.setProcessors(listOf(processor))
+        task.call()
+        assumeTrue(hasAndroidClasses)
+        assertEquals(parallelisms.toSet(), outputs.keys)
+        return outputs
+    }
+
+    private fun relativeFiles(dir: File): List<String> = dir.walkTopDown()
+            .filter { it.isFile }
+            .map { it.relativeTo(dir).path }
+            .sorted()
+            .toList()
+
+    /**
+     * A layout with `index + 2` text views, so that the layouts differ in the number of views,
+     * dirty flags and expressions.
+     */
+    private fun layoutXml(index: Int): String = buildString {
+        append("""<?xml version="1.0" encoding="utf-8"?>
+            |<layout xmlns:android="http://schemas.android.com/apk/res/android">
+            |    <data>
+            |        <import type="android.view.View"/>
+            |        <variable name="name" type="String"/>
+            |        <variable name="count" type="int"/>
+            |    </data>
+            |    <LinearLayout
+            |        android:layout_width="match_parent"
+            |        android:layout_height="match_parent"
+            |        android:orientation="vertical">
+            |""".trimMargin())
+        for (view in 0 until index + 2) {
+            append("""
+                |        <TextView
+                |            android:id="@+id/text$view"
+                |            android:layout_width="wrap_content"
+                |            android:layout_height="wrap_content"
+                |            android:text="@{count > $view ? name : String.valueOf(count + $view)}"
+                |            android:visibility="@{count == $view ? View.GONE : View.VISIBLE}"/>
+                |""".trimMargin())
+        }
+        append("""
+            |    </LinearLayout>
+            |</layout>
+            |""".trimMargin())
+    }
+
+    private fun describe(modelClass: ModelClass): String = buildString {
+        append(modelClass.toJavaCode())
+        append(" erasure=").append(modelClass.erasure().toJavaCode())
+        append(" generic=").append(modelClass.isGeneric)
+        append(" interface=").append(modelClass.isInterface)
+        append(" list=").append(modelClass.isList)
+        append(" map=").append(modelClass.isMap)
+        append(" string=").append(modelClass.isString)
+        append(" object=").append(modelClass.isObject)
+        append(" typeArgs=").append(modelClass.typeArguments?.joinToString { it.toJavaCode() })
+        var superclass = modelClass.superclass
+        while (superclass != null) {
+            append(" < ").append(superclass.toJavaCode())
+            superclass = superclass.superclass
+        }
+        modelClass.allFields.forEach {
+            append("\n  field ").append(it.name).append(": ").append(it.fieldType.toJavaCode())
+        }
+        modelClass.allMethods.forEach { method ->
+            append("\n  method ").append(method.name)
+            append(method.parameterTypes.joinToString(prefix = "(", postfix = ")") {
+                it.toJavaCode()
+            })
+            append(": ").append(method.returnType?.toJavaCode())
+        }
+    }
+
+    companion object {
+        private const val PACKAGE = "test"
+        private const val LAYOUTS = 8
+
+        // several of them share supertypes and type arguments, which is where the races are
+        private val CLASSES = listOf(
+                "java.lang.String",
+                "java.lang.Integer",
+                "java.lang.StringBuilder",
+                "java.util.ArrayList<java.lang.String>",
+                "java.util.LinkedList<java.lang.Integer>",
+                "java.util.HashMap<java.lang.String, java.lang.Integer>",
+                "java.util.TreeMap<java.lang.String, java.util.List<java.lang.String>>",
+                "java.util.concurrent.ConcurrentHashMap<java.lang.Integer, java.lang.String>",
+                "java.util.List<java.lang.String>",
+                "java.util.Map<java.lang.String, java.lang.Object>",
+                "java.lang.Thread",
+                "java.io.File",
+                "int[]",
+                "java.lang.String[]",
+                "boolean"
+        )
+    }
+}
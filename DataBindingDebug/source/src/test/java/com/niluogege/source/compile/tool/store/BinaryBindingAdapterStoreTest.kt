@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.databinding.tool.store
+
+import android.databinding.tool.store.SetterStore.AccessorKey
+import android.databinding.tool.store.SetterStore.InverseDescription
+import android.databinding.tool.store.SetterStore.InverseMethodDescription
+import android.databinding.tool.store.SetterStore.MethodDescription
+import android.databinding.tool.store.SetterStore.MultiValueAdapterKey
+import android.databinding.tool.util.BinaryIntermediate
+import android.databinding.tool.util.BinaryIntermediateReader
+import android.databinding.tool.util.BinaryIntermediateWriter
+import android.databinding.tool.util.GenerationalClassUtil
+import android.databinding.tool.util.GenerationalClassUtil.ExtensionFilter
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+
+class BinaryBindingAdapterStoreTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private lateinit var dir: File
+
+    @Before
+    fun writeJsonStore() {
+        dir = tmp.newFolder()
+        writeJson(dir, "com.example.lib", createStore())
+    }
+
+    @Test
+    fun convertsJsonStores() {
+        assertEquals(1, GenerationalClassUtil(dir, null).convertToBinary())
+        assertTrue(File(dir, "com.example.lib" + ExtensionFilter.SETTER_STORE_BINARY.ext).isFile)
+        // the copy replaces the original
+        assertEquals(0, GenerationalClassUtil(dir, null).convertToBinary())
+        assertTrue(GenerationalClassUtil(dir, null)
+                .load(ExtensionFilter.SETTER_STORE_JSON, BindingAdapterStore::class.java)
+                .isEmpty())
+    }
+
+    @Test
+    fun binaryStoreMatchesGsonStore() {
+        val fromGson = loadGson()
+        GenerationalClassUtil(dir, null).convertToBinary()
+        val util = GenerationalClassUtil(dir, null)
+        val fromBinary = loadBinary(util)
+        try {
+            assertArrayEquals(bytesOf(fromGson.toBinary()), bytesOf(fromBinary.toBinary()))
+            ATTRIBUTES.forEach { attribute ->
+                assertEquals(adaptersOf(fromGson, attribute), adaptersOf(fromBinary, attribute))
+                assertEquals(inverseAdaptersOf(fromGson, attribute),
+                        inverseAdaptersOf(fromBinary, attribute))
+                assertEquals(fromGson.findRenamed(attribute) { true },
+                        fromBinary.findRenamed(attribute) { true })
+            }
+            assertEquals(fromGson.collectInverseEvents(), fromBinary.collectInverseEvents())
+            assertEquals(fromGson.createInstanceAdapters(), fromBinary.createInstanceAdapters())
+            assertEquals(fromGson.isUntaggable("android.widget.Untaggable"),
+                    fromBinary.isUntaggable("android.widget.Untaggable"))
+            assertEquals(fromGson.getInverseMethod(TO_STRING),
+                    fromBinary.getInverseMethod(TO_STRING))
+        } finally {
+            util.releaseBinaryIntermediates()
+        }
+    }
+
+    @Test
+    fun clearedClassesAreNotInstanceAdapters() {
+        GenerationalClassUtil(dir, null).convertToBinary()
+        val util = GenerationalClassUtil(dir, null)
+        val store = loadBinary(util)
+        try {
+            assertTrue(store.createInstanceAdapters().containsKey("InstanceAdapters"))
+            store.clear(setOf("com.example.InstanceAdapters"))
+            assertFalse(store.createInstanceAdapters().containsKey("InstanceAdapters"))
+        } finally {
+            util.releaseBinaryIntermediates()
+        }
+    }
+
+    @Test
+    fun earlierStoresWin() {
+        val overriding = BindingAdapterStore(mutableListOf(), emptyList(), emptyList(), false)
+        overriding.addBindingAdapter("text", AccessorKey("android.widget.TextView",
+                "java.lang.String"), MethodDescription("com.example.Overriding", "setText"))
+        overriding.addInverseBindingAdapter("text", AccessorKey("android.widget.TextView",
+                "java.lang.String"), InverseDescription("com.example.Overriding", "getText",
+                "overridingTextChanged"))
+        GenerationalClassUtil(dir, null).convertToBinary()
+        val util = GenerationalClassUtil(dir, null)
+        try {
+            val store = BindingAdapterStore(mutableListOf(), listOf(overriding),
+                    util.loadBinary(ExtensionFilter.SETTER_STORE_BINARY)
+                            .map { BinaryBindingAdapterStore(it) }, false)
+            assertEquals("com.example.Overriding", adaptersOf(store, "text")
+                    .single { it.first.viewType == "android.widget.TextView" }.second.type)
+            val events = store.collectInverseEvents()
+            assertTrue(events.contains("overridingTextChanged"))
+            assertFalse(events.contains("textChanged"))
+        } finally {
+            util.releaseBinaryIntermediates()
+        }
+    }
+
+    @Test(expected = IOException::class)
+    fun closedReaderCannotBeRead() {
+        GenerationalClassUtil(dir, null).convertToBinary()
+        val util = GenerationalClassUtil(dir, null)
+        val reader = util.loadBinary(ExtensionFilter.SETTER_STORE_BINARY).single()
+        util.releaseBinaryIntermediates()
+        reader.section("adapterMethodIndex")
+    }
+
+    @Test(expected = IOException::class)
+    fun stringIdOutOfRange() {
+        val writer = BinaryIntermediateWriter(BinaryIntermediate.KIND_LAYOUT_INFO)
+        writer.section("map", object : BinaryIntermediateWriter.SectionBody {
+            override fun write(out: DataOutputStream) {
+                out.writeInt(1)
+                out.writeInt(1000)
+                out.writeInt(BinaryIntermediate.NO_STRING)
+            }
+        })
+        val file = tmp.newFile()
+        writer.writeTo(file)
+        BinaryIntermediateReader.open(file).use {
+            it.getStringMap("map")
+        }
+    }
+
+    @Test(expected = IOException::class)
+    fun truncatedFile() {
+        val file = tmp.newFile()
+        BindingAdapterStore.toBinary(createStore()).writeTo(file)
+        file.writeBytes(file.readBytes().copyOf(BinaryIntermediate.HEADER_SIZE + 4))
+        BinaryIntermediateReader.open(file).close()
+    }
+
+    @Test
+    fun earlierBinaryStoresWinForListedAdapters() {
+        val first = BindingAdapterStore(mutableListOf(), emptyList(), emptyList(), false)
+        first.addBindingAdapter("text", AccessorKey("android.widget.EditText",
+                "java.lang.CharSequence"), MethodDescription("com.example.First", "setText"))
+        first.addInverseBindingAdapter("text", AccessorKey("android.widget.TextView",
+                "java.lang.String"), InverseDescription("com.example.First", "getText",
+                "firstTextChanged"))
+        val second = BindingAdapterStore(mutableListOf(), emptyList(), emptyList(), false)
+        second.addBindingAdapter("text", AccessorKey("android.widget.EditText",
+                "java.lang.CharSequence"), MethodDescription("com.example.Shadowed", "setText",
+                false, false, "com.example.Component"))
+        second.addBindingAdapter("other", AccessorKey("android.view.View", "int"),
+                MethodDescription("com.example.Other", "setOther", false, false,
+                        "com.example.Component"))
+        second.addInverseBindingAdapter("text", AccessorKey("android.widget.TextView",
+                "java.lang.String"), InverseDescription("com.example.Second", "getText",
+                "secondTextChanged"))
+        second.addInverseBindingAdapter("checked", AccessorKey("android.widget.CheckBox",
+                "boolean"), InverseDescription("com.example.Second", "isChecked",
+                "checkedChanged"))
+        val firstFile = tmp.newFile()
+        BindingAdapterStore.toBinary(first).writeTo(firstFile)
+        val secondFile = tmp.newFile()
+        BindingAdapterStore.toBinary(second).writeTo(secondFile)
+        BinaryIntermediateReader.open(firstFile).use { firstReader ->
+            BinaryIntermediateReader.open(secondFile).use { secondReader ->
+                val store = BindingAdapterStore(mutableListOf(), emptyList(),
+                        listOf(BinaryBindingAdapterStore(firstReader),
+                                BinaryBindingAdapterStore(secondReader)), false)
+                assertEquals(setOf("Other"), store.createInstanceAdapters().keys)
+                assertEquals(setOf("firstTextChanged", "checkedChanged"),
+                        store.collectInverseEvents())
+            }
+        }
+    }
+
+    @Test
+    fun collectingDoesNotDecodeAttributes() {
+        GenerationalClassUtil(dir, null).convertToBinary()
+        val util = GenerationalClassUtil(dir, null)
+        val store = loadBinary(util)
+        try {
+            store.collectInverseEvents()
+            store.createInstanceAdapters()
+            store.clear(setOf("com.example.Unrelated"))
+            assertEquals(0, store.mergedAttributeCount)
+            adaptersOf(store, "text")
+            assertEquals(1, store.mergedAttributeCount)
+        } finally {
+            util.releaseBinaryIntermediates()
+        }
+    }
+
+    /**
+     * Load-time benchmark against the Gson path: an app module with [LIBRARIES] library stores of
+     * [LIBRARY_ATTRIBUTES] attributes each, of which it only uses a few. Both paths run
+     * [RUNS] times in turns and the fastest run of each is compared.
+     */
+    @Test
+    fun binaryLoadIsFasterThanGson() {
+        val jsonDir = tmp.newFolder()
+        val binaryDir = tmp.newFolder()
+        repeat(LIBRARIES) {
+            val library = createLibraryStore(it)
+            writeJson(jsonDir, "com.example.lib$it", library)
+            writeJson(binaryDir, "com.example.lib$it", library)
+        }
+        assertEquals(LIBRARIES, GenerationalClassUtil(binaryDir, null).convertToBinary())
+
+        var gsonNanos = Long.MAX_VALUE
+        var binaryNanos = Long.MAX_VALUE
+        var gsonResult: List<Any>? = null
+        var binaryResult: List<Any>? = null
+        repeat(RUNS) {
+            var start = System.nanoTime()
+            val fromGson = BindingAdapterStore(mutableListOf(),
+                    GenerationalClassUtil(jsonDir, null).load(ExtensionFilter.SETTER_STORE_JSON,
+                            BindingAdapterStore::class.java), emptyList(), false)
+            gsonResult = useInAppModule(fromGson)
+            gsonNanos = minOf(gsonNanos, System.nanoTime() - start)
+
+            start = System.nanoTime()
+            val util = GenerationalClassUtil(binaryDir, null)
+            val fromBinary = loadBinary(util)
+            binaryResult = useInAppModule(fromBinary)
+            util.releaseBinaryIntermediates()
+            binaryNanos = minOf(binaryNanos, System.nanoTime() - start)
+            // the inverse adapters of attr0 come from every library, so only attr0 is decoded to
+            // find out which of them is kept
+            assertEquals(USED_ATTRIBUTES.size + 1, fromBinary.mergedAttributeCount)
+        }
+        assertEquals(gsonResult, binaryResult)
+        assertTrue("binary ${binaryNanos / 1000} us, gson ${gsonNanos / 1000} us",
+                binaryNanos < gsonNanos)
+    }
+
+    /**
+     * What a module does with the store of its dependencies: SetterStore collects the inverse
+     * events, ComponentWriter the instance adapters, and the layouts look up a few attributes.
+     */
+    private fun useInAppModule(store: BindingAdapterStore): List<Any> {
+        val result = ArrayList<Any>()
+        result.add(store.collectInverseEvents().toSortedSet())
+        result.add(store.createInstanceAdapters().toSortedMap())
+        USED_ATTRIBUTES.forEach { result.add(adaptersOf(store, it)) }
+        return result
+    }
+
+    private fun writeJson(dir: File, pkg: String, store: BindingAdapterStore) {
+        GenerationalClassUtil(dir, dir, writesLegacyIntermediates = true)
+                .write(pkg, ExtensionFilter.SETTER_STORE_JSON, store)
+    }
+
+    private fun loadGson() = BindingAdapterStore(mutableListOf(),
+            GenerationalClassUtil(dir, null).load(ExtensionFilter.SETTER_STORE_JSON,
+                    BindingAdapterStore::class.java), emptyList(), false)
+
+    private fun loadBinary(util: GenerationalClassUtil) = BindingAdapterStore(mutableListOf(),
+            emptyList(), util.loadBinary(ExtensionFilter.SETTER_STORE_BINARY)
+                    .map { BinaryBindingAdapterStore(it) }, false)
+
+    private fun bytesOf(writer: BinaryIntermediateWriter): ByteArray {
+        val file = tmp.newFile()
+        writer.writeTo(file)
+        return file.readBytes()
+    }
+
+    private fun adaptersOf(store: BindingAdapterStore, attribute: String):
+            List<Pair<AccessorKey, MethodDescription>> {
+        val result = ArrayList<Pair<AccessorKey, MethodDescription>>()
+        store.forEachAdapterMethod(attribute) { key, desc -> result.add(key to desc) }
+        return result
+    }
+
+    private fun inverseAdaptersOf(store: BindingAdapterStore, attribute: String):
+            List<Pair<AccessorKey, InverseDescription>> {
+        val result = ArrayList<Pair<AccessorKey, InverseDescription>>()
+        store.forEachInverseAdapterMethod(attribute) { key, desc -> result.add(key to desc) }
+        return result
+    }
+
+    companion object {
+        private const val LIBRARIES = 200
+        private const val LIBRARY_ATTRIBUTES = 100
+        private const val RUNS = 5
+        private val USED_ATTRIBUTES = listOf("attr1", "attr2", "attr3")
+        private val ATTRIBUTES = listOf("text", "visibility", "checked", "unknown")
+        private val TO_STRING = InverseMethodDescription(true, "java.lang.String", "toString",
+                arrayOf("int"), "com.example.Converters")
+        private val FROM_STRING = InverseMethodDescription(true, "int", "fromString",
+                arrayOf("java.lang.String"), "com.example.Converters")
+
+        private fun createStore(): BindingAdapterStore {
+            val store = BindingAdapterStore(mutableListOf(), emptyList(), emptyList(), false)
+            store.addBindingAdapter("text", AccessorKey("android.widget.TextView",
+                    "java.lang.String"), MethodDescription("com.example.Adapters", "setText"))
+            store.addBindingAdapter("text", AccessorKey("android.widget.EditText",
+                    "java.lang.CharSequence"), MethodDescription("com.example.InstanceAdapters",
+                    "setText", true, false, "com.example.Component"))
+            store.addBindingAdapter("visibility", AccessorKey("android.view.View", "boolean"),
+                    MethodDescription("com.example.Adapters", "setVisible"))
+            store.addInverseBindingAdapter("text", AccessorKey("android.widget.TextView",
+                    "java.lang.String"), InverseDescription("com.example.Adapters", "getText",
+                    "textChanged"))
+            store.addInverseBindingAdapter("checked", AccessorKey("android.widget.CheckBox",
+                    "boolean"), InverseDescription("com.example.InstanceAdapters", "isChecked",
+                    false, false, null, "checkedChanged"))
+            store.addInverseBindingMethod("rating", "android.widget.RatingBar",
+                    InverseDescription("android.widget.RatingBar", "getRating", "ratingChanged"))
+            store.addRenamedMethod("text", "android.widget.TextView",
+                    MethodDescription("android.widget.TextView", "setTextValue"))
+            store.addConversionMethod("int", "java.lang.String",
+                    MethodDescription("com.example.Converters", "toString"))
+            store.addMultiValueAdapter(MultiValueAdapterKey("android.widget.ImageView",
+                    arrayOf("url", "placeholder"), arrayOf("java.lang.String", "int"), false),
+                    MethodDescription("com.example.Adapters", "loadImage"))
+            store.addUntaggableType(arrayOf("android.widget.Untaggable"),
+                    "com.example.Adapters")
+            store.addInverseMethod(TO_STRING, FROM_STRING)
+            return store
+        }
+
+        private fun createLibraryStore(library: Int): BindingAdapterStore {
+            val store = BindingAdapterStore(mutableListOf(), emptyList(), emptyList(), false)
+            val adapters = "com.example.lib$library.Adapters"
+            repeat(LIBRARY_ATTRIBUTES) {
+                store.addBindingAdapter("attr$it", AccessorKey("com.example.lib$library.View",
+                        "java.lang.String"), MethodDescription(adapters, "setAttr$it"))
+                store.addBindingAdapter("attr$it", AccessorKey("android.view.View", "int"),
+                        MethodDescription(adapters, "setAttr$it"))
+            }
+            store.addBindingAdapter("lib$library", AccessorKey("android.view.View",
+                    "java.lang.String"), MethodDescription("com.example.lib$library.Instance",
+                    "setValue", false, false, "com.example.Component"))
+            store.addInverseBindingAdapter("attr0", AccessorKey("com.example.lib$library.View",
+                    "java.lang.String"), InverseDescription(adapters, "getAttr0",
+                    "attr0Changed$library"))
+            return store
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.databinding.tool.store
+
+import android.databinding.tool.Context
+import android.databinding.tool.LibTypes
+import android.databinding.tool.reflection.ImportBag
+import android.databinding.tool.reflection.ModelClass
+import android.databinding.tool.reflection.SdkUtil
+import android.databinding.tool.reflection.annotation.AnnotationAnalyzer
+import android.databinding.tool.util.GenerationalClassUtil
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeNotNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.net.URI
+import javax.annotation.processing.AbstractProcessor
+import javax.annotation.processing.ProcessingEnvironment
+import javax.annotation.processing.RoundEnvironment
+import javax.lang.model.SourceVersion
+import javax.lang.model.element.TypeElement
+import javax.lang.model.util.ElementFilter
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.ToolProvider
+
+/**
+ * Resolves setters that need one of 500 conversion methods, once with the conversions resolved
+ * for each lookup, as they were before the conversion cache, and once with the cache.
+ */
+class ConversionLookupBenchmarkTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    @Test
+    fun cachedConversionsAreFaster() {
+        runProcessor { env ->
+            val analyzer = AnnotationAnalyzer(env, LibTypes(false))
+            Context.initForTests(analyzer, SdkUtil(null, 14))
+            val store = SetterStore.create(analyzer, GenerationalClassUtil(tmp.newFolder(), null))
+            ElementFilter.methodsIn(
+                    env.elementUtils.getTypeElement("test.Conversions").enclosedElements)
+                    .forEach { store.addConversionMethod(it) }
+            val thread = analyzer.findClass("java.lang.Thread", null)!!
+            val values = List(CONVERSIONS) { analyzer.findClass("test.Value$it", null)!! }
+
+            val uncached = ArrayList<String>()
+            val cached = ArrayList<String>()
+            var uncachedNanos = Long.MAX_VALUE
+            var cachedNanos = Long.MAX_VALUE
+            // the first round warms up
+            for (round in 0..ROUNDS) {
+                uncached.clear()
+                val uncachedStart = System.nanoTime()
+                values.forEach {
+                    // drops every memoized lookup, including the resolved conversions
+                    store.clear(emptySet())
+                    uncached.add(setName(store, thread, it))
+                }
+                val uncachedTime = System.nanoTime() - uncachedStart
+
+                cached.clear()
+                store.clear(emptySet())
+                val cachedStart = System.nanoTime()
+                values.forEach { cached.add(setName(store, thread, it)) }
+                val cachedTime = System.nanoTime() - cachedStart
+                if (round > 0) {
+                    uncachedNanos = minOf(uncachedNanos, uncachedTime)
+                    cachedNanos = minOf(cachedNanos, cachedTime)
+                }
+            }
+            assertEquals(uncached, cached)
+            cached.forEachIndexed { index, call ->
+                assertEquals("view.setName(test.Conversions.convert$index(value))", call)
+            }
+            assertTrue("cached: ${cachedNanos / 1000} us, " +
+                    "resolved per lookup: ${uncachedNanos / 1000} us for $CONVERSIONS setters",
+                    cachedNanos < uncachedNanos)
+        }
+    }
+
+    private fun setName(store: SetterStore, view: ModelClass, value: ModelClass): String {
+        val call = store.getSetterCall("name", view, value, ImportBag.EMPTY)
+        return call.toJava("component", "view", "oldValue", "value")
+    }
+
+    private fun runProcessor(body: (ProcessingEnvironment) -> Unit) {
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        assumeNotNull(compiler)
+        var ran = false
+        val processor = object : AbstractProcessor() {
+            override fun getSupportedAnnotationTypes() = setOf("*")
+
+            override fun getSupportedSourceVersion(): SourceVersion = SourceVersion.latest()
+
+            override fun process(annotations: Set<TypeElement>,
+                    roundEnv: RoundEnvironment): Boolean {
+                if (!roundEnv.processingOver()) {
+                    body(processingEnv)
+                    ran = true
+                }
+                return false
+            }
+        }
+        val source = object : SimpleJavaFileObject(URI.create("string:///test/Conversions.java"),
+                JavaFileObject.Kind.SOURCE) {
+            override fun getCharContent(ignoreEncodingErrors: Boolean) = CONVERSIONS_SOURCE
+        }
+        val task = compiler.getTask(null, null, null, listOf("-proc:only"), null,
+                listOf(source))
+        task.setProcessors(listOf(processor))
+        task.call()
+        assertTrue(ran)
+    }
+
+    companion object {
+        private const val CONVERSIONS = 500
+        private const val ROUNDS = 5
+
+        /** One value class per conversion, each converted to a String by a method of its own. */
+        private val CONVERSIONS_SOURCE = buildString {
+            append("package test;\n\npublic class Conversions {\n")
+            for (i in 0 until CONVERSIONS) {
+                append("    public static String convert$i(Value$i value) {\n")
+                append("        return null;\n")
+                append("    }\n")
+            }
+            append("}\n")
+            for (i in 0 until CONVERSIONS) {
+                append("\nclass Value$i {\n}\n")
+            }
+        }
+    }
+}
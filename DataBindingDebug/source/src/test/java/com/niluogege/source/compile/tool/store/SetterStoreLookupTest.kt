@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.databinding.tool.store
+
+import android.databinding.tool.Context
+import android.databinding.tool.LibTypes
+import android.databinding.tool.reflection.ImportBag
+import android.databinding.tool.reflection.SdkUtil
+import android.databinding.tool.reflection.annotation.AnnotationAnalyzer
+import android.databinding.tool.util.GenerationalClassUtil
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeNotNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.net.URI
+import javax.annotation.processing.AbstractProcessor
+import javax.annotation.processing.ProcessingEnvironment
+import javax.annotation.processing.RoundEnvironment
+import javax.lang.model.SourceVersion
+import javax.lang.model.element.TypeElement
+import javax.lang.model.util.ElementFilter
+import javax.tools.JavaFileObject
+import javax.tools.SimpleJavaFileObject
+import javax.tools.ToolProvider
+
+/**
+ * Checks that the memoized lookups of [SetterStore] are dropped when the adapters change.
+ * Uses java.lang.Thread as the view, so that the lookups resolve against real classes.
+ */
+class SetterStoreLookupTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    @Test
+    fun setterCallsFollowAdapterChanges() {
+        val descriptions = ArrayList<String>()
+        runProcessor { env ->
+            val analyzer = AnnotationAnalyzer(env, LibTypes(false))
+            Context.initForTests(analyzer, SdkUtil(null, 14))
+            val store = SetterStore.create(analyzer, GenerationalClassUtil(tmp.newFolder(), null))
+            val thread = analyzer.findClass("java.lang.Thread", null)
+            val string = analyzer.findClass("java.lang.String", null)
+            val lookup = { store.getSetterCall("name", thread, string, ImportBag.EMPTY) }
+
+            val viewSetter = lookup()
+            assertTrue(viewSetter is SetterStore.ModelMethodSetter)
+            assertSame(viewSetter, lookup())
+            descriptions.add(viewSetter.description)
+
+            val adapter = ElementFilter.methodsIn(
+                    env.elementUtils.getTypeElement("test.Adapters").enclosedElements)
+                    .single { it.simpleName.contentEquals("setName") }
+            store.addBindingAdapter(env, "android:name", adapter, false)
+            val adapterSetter = lookup()
+            assertTrue(adapterSetter is SetterStore.AdapterSetter)
+            assertSame(adapterSetter, lookup())
+            descriptions.add(adapterSetter.description)
+
+            store.clear(setOf("test.Adapters"))
+            descriptions.add(lookup().description)
+        }
+        assertEquals(listOf("java.lang.Thread.setName(java.lang.String)",
+                "test.Adapters.setName", "java.lang.Thread.setName(java.lang.String)"),
+                descriptions)
+    }
+
+    private fun runProcessor(body: (ProcessingEnvironment) -> Unit) {
+        val compiler = ToolProvider.getSystemJavaCompiler()
+        assumeNotNull(compiler)
+        var ran = false
+        val processor = object : AbstractProcessor() {
+            override fun getSupportedAnnotationTypes() = setOf("*")
+
+            override fun getSupportedSourceVersion(): SourceVersion = SourceVersion.latest()
+
+            override fun process(annotations: Set<TypeElement>,
+                    roundEnv: RoundEnvironment): Boolean {
+                if (!roundEnv.processingOver()) {
+                    body(processingEnv)
+                    ran = true
+                }
+                return false
+            }
+        }
+        val source = object : SimpleJavaFileObject(URI.create("string:///test/Adapters.java"),
+                JavaFileObject.Kind.SOURCE) {
+            override fun getCharContent(ignoreEncodingErrors: Boolean) = ADAPTERS
+        }
+        val task = compiler.getTask(null, null, null, listOf("-proc:only"), null,
+                listOf(source))
+        task.setProcessors(listOf(processor))
+        task.call()
+        assertTrue(ran)
+    }
+
+    companion object {
+        private const val ADAPTERS = """
+            package test;
+
+            public class Adapters {
+                public static void setName(Thread view, String name) {
+                    view.setName("adapted " + name);
+                }
+            }
+        """
+    }
+}
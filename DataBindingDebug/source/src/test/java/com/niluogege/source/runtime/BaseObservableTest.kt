@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import androidx.databinding.Observable
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+class BaseObservableTest {
+    private val observable = BaseObservable()
+    private val notified = ArrayList<Int>()
+
+    @Before
+    fun listen() {
+        observable.addOnPropertyChangedCallback(object : Observable.OnPropertyChangedCallback() {
+            override fun onPropertyChanged(sender: Observable, propertyId: Int) {
+                synchronized(notified) {
+                    notified.add(propertyId)
+                }
+            }
+        })
+    }
+
+    @Test
+    fun notifiesRightAwayWithoutBatch() {
+        observable.notifyPropertyChanged(3)
+        observable.notifyPropertyChanged(3)
+        assertEquals(listOf(3, 3), notified)
+    }
+
+    @Test
+    fun batchSendsEachIdOnce() {
+        observable.beginBatch()
+        observable.notifyPropertyChanged(5)
+        observable.notifyPropertyChanged(2)
+        observable.notifyPropertyChanged(5)
+        assertEquals(emptyList<Int>(), notified)
+        observable.endBatch()
+        assertEquals(listOf(2, 5), notified)
+    }
+
+    @Test
+    fun notifyChangeReplacesBatchedIds() {
+        observable.beginBatch()
+        observable.notifyPropertyChanged(4)
+        observable.notifyChange()
+        observable.notifyPropertyChanged(7)
+        observable.endBatch()
+        assertEquals(listOf(0), notified)
+    }
+
+    @Test
+    fun onlyOutermostBatchNotifies() {
+        observable.beginBatch()
+        observable.notifyPropertyChanged(1)
+        observable.beginBatch()
+        observable.notifyPropertyChanged(2)
+        observable.endBatch()
+        assertEquals(emptyList<Int>(), notified)
+        observable.endBatch()
+        assertEquals(listOf(1, 2), notified)
+    }
+
+    @Test
+    fun emptyBatchNotifiesNothing() {
+        observable.beginBatch()
+        observable.endBatch()
+        observable.notifyPropertyChanged(1)
+        assertEquals(listOf(1), notified)
+    }
+
+    @Test
+    fun collectsNotificationsFromOtherThreads() {
+        observable.beginBatch()
+        val threads = List(4) {
+            Thread {
+                repeat(1000) { id -> observable.notifyPropertyChanged(id % 10 + 1) }
+            }
+        }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+        assertEquals(emptyList<Int>(), notified)
+        observable.endBatch()
+        assertEquals((1..10).toList(), notified)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun endWithoutBegin() {
+        observable.endBatch()
+    }
+}
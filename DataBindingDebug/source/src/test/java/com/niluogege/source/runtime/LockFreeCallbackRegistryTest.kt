@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import androidx.databinding.CallbackRegistry
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicLong
+
+class LockFreeCallbackRegistryTest {
+    private val calls = ArrayList<String>()
+
+    private val notifier = object : CallbackRegistry.NotifierCallback<Callback, Any?, Any?>() {
+        override fun onNotifyCallback(callback: Callback, sender: Any?, arg: Int, arg2: Any?) {
+            callback.run(arg)
+        }
+    }
+
+    private open inner class Callback(val name: String) {
+        open fun run(arg: Int) {
+            calls.add("$name:$arg")
+        }
+    }
+
+    @Test
+    fun isACallbackRegistry() {
+        val registry: CallbackRegistry<Callback, Any?, Any?> = LockFreeCallbackRegistry(notifier)
+        registry.add(Callback("a"))
+        registry.notifyCallbacks(null, 1, null)
+        assertEquals(listOf("a:1"), calls)
+        assertTrue(MapChangeRegistry() is LockFreeCallbackRegistry<*, *, *>)
+    }
+
+    @Test
+    fun addIsIgnoredForRegisteredCallback() {
+        val registry = LockFreeCallbackRegistry(notifier)
+        val a = Callback("a")
+        registry.add(a)
+        registry.add(a)
+        registry.notifyCallbacks(null, 1, null)
+        assertEquals(listOf("a:1"), calls)
+    }
+
+    @Test
+    fun callbackAddedDuringNotifyIsCalledNextTime() {
+        val registry = LockFreeCallbackRegistry(notifier)
+        val late = Callback("late")
+        registry.add(object : Callback("a") {
+            override fun run(arg: Int) {
+                super.run(arg)
+                registry.add(late)
+            }
+        })
+        registry.notifyCallbacks(null, 1, null)
+        assertEquals(listOf("a:1"), calls)
+        registry.notifyCallbacks(null, 2, null)
+        assertEquals(listOf("a:1", "a:2", "late:2"), calls)
+    }
+
+    @Test
+    fun callbackRemovedDuringNotifyIsSkipped() {
+        val registry = LockFreeCallbackRegistry(notifier)
+        val b = Callback("b")
+        val c = Callback("c")
+        registry.add(object : Callback("a") {
+            override fun run(arg: Int) {
+                super.run(arg)
+                registry.remove(b)
+            }
+        })
+        registry.add(b)
+        registry.add(c)
+        registry.notifyCallbacks(null, 1, null)
+        assertEquals(listOf("a:1", "c:1"), calls)
+        assertEquals(2, registry.copyCallbacks().size)
+    }
+
+    @Test
+    fun removingItselfDuringNotifyKeepsOthers() {
+        val registry = LockFreeCallbackRegistry(notifier)
+        registry.add(object : Callback("a") {
+            override fun run(arg: Int) {
+                super.run(arg)
+                registry.remove(this)
+            }
+        })
+        registry.add(Callback("b"))
+        registry.notifyCallbacks(null, 1, null)
+        registry.notifyCallbacks(null, 2, null)
+        assertEquals(listOf("a:1", "b:1", "b:2"), calls)
+    }
+
+    @Test
+    fun cloneSharesCallbacksButNotLaterChanges() {
+        val registry = LockFreeCallbackRegistry(notifier)
+        registry.add(Callback("a"))
+        val clone = registry.clone()
+        clone.add(Callback("b"))
+        registry.notifyCallbacks(null, 1, null)
+        assertEquals(listOf("a:1"), calls)
+        calls.clear()
+        clone.notifyCallbacks(null, 2, null)
+        assertEquals(listOf("a:2", "b:2"), calls)
+        clone.clear()
+        assertTrue(clone.isEmpty)
+        assertEquals(1, registry.copyCallbacks().size)
+    }
+
+    @Test
+    fun notifyFromSeveralThreads() {
+        val threads = 4
+        val iterations = 200_000
+        val registry = LockFreeCallbackRegistry(COUNTING)
+        val counters = List(4) { AtomicLong() }
+        counters.forEach { registry.add(it) }
+        val start = CountDownLatch(1)
+        val workers = List(threads) {
+            Thread {
+                start.await()
+                repeat(iterations) {
+                    registry.notifyCallbacks(null, 0, null)
+                }
+            }
+        }
+        workers.forEach { it.start() }
+        start.countDown()
+        workers.forEach { it.join() }
+        counters.forEach {
+            assertEquals(threads.toLong() * iterations, it.get())
+        }
+    }
+
+    companion object {
+        private val COUNTING = object : CallbackRegistry.NotifierCallback<AtomicLong, Any?, Any?>() {
+            override fun onNotifyCallback(callback: AtomicLong, sender: Any?, arg: Int,
+                    arg2: Any?) {
+                callback.incrementAndGet()
+            }
+        }
+    }
+}
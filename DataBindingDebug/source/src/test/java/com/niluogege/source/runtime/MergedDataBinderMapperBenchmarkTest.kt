@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import android.view.View
+import androidx.databinding.DataBindingComponent
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Starts a [MergedDataBinderMapper] with 200 module mappers, like an app with 200 modules, and
+ * compares the first lookup of every layout, which scans the mappers, with the lookups after
+ * it, which are answered by the index.
+ */
+class MergedDataBinderMapperBenchmarkTest {
+
+    /**
+     * A module mapper that knows one layout and one BR id. It is loaded once per module by its
+     * own class loader, because the merged mapper keeps only one mapper per class, so it must
+     * not use anything private to the test.
+     */
+    class ModuleMapper(private val tag: String, private val layoutId: Int,
+            private val brId: Int, private val brName: String) : DataBinderMapper() {
+        override fun getDataBinder(bindingComponent: DataBindingComponent?, view: View?,
+                layoutId: Int): ViewDataBinding? = null
+
+        override fun getDataBinder(bindingComponent: DataBindingComponent?, view: Array<View>?,
+                layoutId: Int): ViewDataBinding? = null
+
+        override fun getLayoutId(tag: String?) = if (tag == this.tag) layoutId else 0
+
+        override fun convertBrIdToString(id: Int) = if (id == brId) brName else null
+    }
+
+    /** Defines [ModuleMapper] again, so that each module gets a class of its own. */
+    private class ModuleClassLoader(parent: ClassLoader) : ClassLoader(parent) {
+        override fun loadClass(name: String, resolve: Boolean): Class<*> {
+            if (name != ModuleMapper::class.java.name) {
+                return super.loadClass(name, resolve)
+            }
+            synchronized(getClassLoadingLock(name)) {
+                return findLoadedClass(name) ?: defineClass(name, MAPPER_BYTES, 0,
+                        MAPPER_BYTES.size)
+            }
+        }
+    }
+
+    @Test
+    fun indexedLookupsAreFasterThanFirstScan() {
+        val modules = createModuleMappers()
+        assertEquals(MODULES, modules.map { it.javaClass }.toSet().size)
+
+        var startupNanos = Long.MAX_VALUE
+        var scanNanos = Long.MAX_VALUE
+        var indexedNanos = Long.MAX_VALUE
+        for (round in 0..ROUNDS) {
+            val start = System.nanoTime()
+            val merged = MergedDataBinderMapper()
+            modules.forEach { merged.addMapper(it) }
+            val added = System.nanoTime()
+            lookUpAll(merged)
+            val scanned = System.nanoTime()
+            lookUpAll(merged)
+            val indexed = System.nanoTime()
+            // the first round warms up
+            if (round > 0) {
+                startupNanos = minOf(startupNanos, scanned - start)
+                scanNanos = minOf(scanNanos, scanned - added)
+                indexedNanos = minOf(indexedNanos, indexed - scanned)
+            }
+        }
+        assertTrue("startup: ${startupNanos / 1000} us, first lookups: ${scanNanos / 1000} us, " +
+                "indexed lookups: ${indexedNanos / 1000} us", indexedNanos < scanNanos)
+    }
+
+    private fun lookUpAll(merged: MergedDataBinderMapper) {
+        for (module in 0 until MODULES) {
+            assertEquals(LAYOUT_ID_BASE + module, merged.getLayoutId(tagOf(module)))
+            assertEquals("var$module", merged.convertBrIdToString(module + 1))
+        }
+    }
+
+    private fun createModuleMappers(): List<DataBinderMapper> = List(MODULES) { module ->
+        val loader = ModuleClassLoader(javaClass.classLoader!!)
+        val int = Int::class.javaPrimitiveType
+        loader.loadClass(ModuleMapper::class.java.name)
+                .getConstructor(String::class.java, int, int, String::class.java)
+                .newInstance(tagOf(module), LAYOUT_ID_BASE + module, module + 1, "var$module")
+                as DataBinderMapper
+    }
+
+    companion object {
+        private const val MODULES = 200
+        private const val LAYOUT_ID_BASE = 0x7f0b0000
+        private const val ROUNDS = 10
+
+        private val MAPPER_BYTES: ByteArray by lazy {
+            val resource = ModuleMapper::class.java.name.replace('.', '/') + ".class"
+            MergedDataBinderMapperBenchmarkTest::class.java.classLoader!!
+                    .getResourceAsStream(resource)!!.use { it.readBytes() }
+        }
+
+        private fun tagOf(module: Int) = "layout/module${module}_0"
+    }
+}
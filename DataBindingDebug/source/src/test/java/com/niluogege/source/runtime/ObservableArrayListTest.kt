@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import androidx.databinding.ObservableList
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+/**
+ * Transactions that only replace elements track the original values in a SparseArray, which
+ * needs the Android runtime; those are covered by ObservableArrayListTransactionTest in
+ * androidTest.
+ */
+class ObservableArrayListTest {
+    private val list = ObservableArrayList<String>()
+    private val changes = ArrayList<String>()
+
+    @Before
+    fun listen() {
+        list.addOnListChangedCallback(
+                object : ObservableList.OnListChangedCallback<ObservableList<String>>() {
+                    override fun onChanged(sender: ObservableList<String>) {
+                        changes.add("changed")
+                    }
+
+                    override fun onItemRangeChanged(sender: ObservableList<String>,
+                            positionStart: Int, itemCount: Int) {
+                        changes.add("changed $positionStart+$itemCount")
+                    }
+
+                    override fun onItemRangeInserted(sender: ObservableList<String>,
+                            positionStart: Int, itemCount: Int) {
+                        changes.add("inserted $positionStart+$itemCount")
+                    }
+
+                    override fun onItemRangeMoved(sender: ObservableList<String>,
+                            fromPosition: Int, toPosition: Int, itemCount: Int) {
+                        changes.add("moved $fromPosition->$toPosition+$itemCount")
+                    }
+
+                    override fun onItemRangeRemoved(sender: ObservableList<String>,
+                            positionStart: Int, itemCount: Int) {
+                        changes.add("removed $positionStart+$itemCount")
+                    }
+                })
+    }
+
+    private fun fill(count: Int) {
+        repeat(count) { list.add("item$it") }
+        changes.clear()
+    }
+
+    @Test
+    fun changesOutsideTransactionAreSentRightAway() {
+        list.add("a")
+        list.add("b")
+        list.removeAt(0)
+        assertEquals(listOf("inserted 0+1", "inserted 1+1", "removed 0+1"), changes)
+    }
+
+    @Test
+    fun appendsAreMerged() {
+        fill(2)
+        list.beginTransaction()
+        list.add("a")
+        list.add("b")
+        list.addAll(listOf("c", "d"))
+        assertEquals(emptyList<String>(), changes)
+        list.commitTransaction()
+        assertEquals(listOf("inserted 2+4"), changes)
+    }
+
+    @Test
+    fun insertsInsideInsertedRangeAreMerged() {
+        list.beginTransaction()
+        list.add("a")
+        list.add("c")
+        list.add(1, "b")
+        list.add(0, "start")
+        list.commitTransaction()
+        assertEquals(listOf("inserted 0+4"), changes)
+        assertEquals(listOf("start", "a", "b", "c"), list)
+    }
+
+    @Test
+    fun removesAtSameIndexAreMerged() {
+        fill(10)
+        list.beginTransaction()
+        list.removeAt(2)
+        list.removeAt(2)
+        list.removeAt(2)
+        list.commitTransaction()
+        assertEquals(listOf("removed 2+3"), changes)
+    }
+
+    @Test
+    fun removesWalkingBackwardsAreMerged() {
+        fill(10)
+        list.beginTransaction()
+        list.removeAt(6)
+        list.removeAt(5)
+        list.removeAt(4)
+        list.commitTransaction()
+        assertEquals(listOf("removed 4+3"), changes)
+    }
+
+    @Test
+    fun removingInsertedElementsCancelsOut() {
+        fill(3)
+        list.beginTransaction()
+        list.add("a")
+        list.add("b")
+        list.remove("a")
+        list.remove("b")
+        list.commitTransaction()
+        assertEquals(emptyList<String>(), changes)
+    }
+
+    @Test
+    fun setOfInsertedElementIsNotReported() {
+        fill(3)
+        list.beginTransaction()
+        list.add("a")
+        list[3] = "b"
+        list.commitTransaction()
+        assertEquals(listOf("inserted 3+1"), changes)
+    }
+
+    @Test
+    fun adjacentSetsAfterStructuralChangeAreMerged() {
+        fill(10)
+        list.beginTransaction()
+        list.removeAt(9)
+        list[1] = "x"
+        list[2] = "y"
+        list[0] = "z"
+        list.commitTransaction()
+        assertEquals(listOf("removed 9+1", "changed 0+3"), changes)
+    }
+
+    @Test
+    fun distinctChangesKeepTheirOrder() {
+        fill(10)
+        list.beginTransaction()
+        list.removeAt(8)
+        list.add(0, "a")
+        list.removeAt(5)
+        list.commitTransaction()
+        assertEquals(listOf("removed 8+1", "inserted 0+1", "removed 5+1"), changes)
+    }
+
+    @Test
+    fun nestedTransactionsNotifyOnOutermostCommit() {
+        list.beginTransaction()
+        list.add("a")
+        list.beginTransaction()
+        list.add("b")
+        list.commitTransaction()
+        assertEquals(emptyList<String>(), changes)
+        list.commitTransaction()
+        assertEquals(listOf("inserted 0+2"), changes)
+    }
+
+    @Test
+    fun tooManyChangesAreSentAsOneChange() {
+        fill(400)
+        list.beginTransaction()
+        // none of these removals touch the previous one
+        for (index in 0 until 65 * 4 step 4) {
+            list.removeAt(index)
+        }
+        list.commitTransaction()
+        assertEquals(listOf("changed"), changes)
+        assertEquals(335, list.size)
+    }
+
+    @Test
+    fun transactionsAreIndependent() {
+        fill(400)
+        list.beginTransaction()
+        for (index in 0 until 65 * 4 step 4) {
+            list.removeAt(index)
+        }
+        list.commitTransaction()
+        changes.clear()
+        list.beginTransaction()
+        list.add("a")
+        list.commitTransaction()
+        assertEquals(listOf("inserted 335+1"), changes)
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun commitWithoutBegin() {
+        list.commitTransaction()
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.niluogege.source.runtime
+
+import androidx.databinding.ObservableMap
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+class ObservableHashMapTest {
+    /**
+     * All keys land in the same probe sequence, so removing one leaves a tombstone in front of
+     * the others.
+     */
+    private data class Colliding(val id: Int) {
+        override fun hashCode() = 0
+    }
+
+    private val changes = ArrayList<Any?>()
+
+    private val callback =
+            object : ObservableMap.OnMapChangedCallback<ObservableMap<Any?, Any?>, Any?, Any?>() {
+                override fun onMapChanged(sender: ObservableMap<Any?, Any?>, key: Any?) {
+                    changes.add(key)
+                }
+            }
+
+    @Test
+    fun lookupProbesPastTombstones() {
+        val map = ObservableHashMap<Colliding, Int>()
+        repeat(5) { map[Colliding(it)] = it }
+        map.remove(Colliding(1))
+        map.remove(Colliding(3))
+        assertEquals(3, map.size)
+        assertEquals(0, map[Colliding(0)])
+        assertEquals(2, map[Colliding(2)])
+        assertEquals(4, map[Colliding(4)])
+        assertNull(map[Colliding(1)])
+        assertFalse(map.containsKey(Colliding(3)))
+    }
+
+    @Test
+    fun insertReusesTombstoneWithoutDuplicatingKey() {
+        val map = ObservableHashMap<Colliding, Int>()
+        repeat(4) { map[Colliding(it)] = it }
+        map.remove(Colliding(0))
+        // the key after the tombstone must be updated, not inserted a second time
+        assertEquals(3, map.put(Colliding(3), 30))
+        assertEquals(3, map.size)
+        map[Colliding(0)] = 10
+        assertEquals(4, map.size)
+        assertEquals(mapOf(Colliding(0) to 10, Colliding(1) to 1, Colliding(2) to 2,
+                Colliding(3) to 30), HashMap(map))
+    }
+
+    @Test
+    fun churnKeepsMatchingHashMap() {
+        val random = Random(8)
+        val map = ObservableHashMap<Any?, Int>()
+        val expected = HashMap<Any?, Int>()
+        repeat(50_000) {
+            val key: Any? = when (random.nextInt(10)) {
+                0 -> null
+                1 -> Colliding(random.nextInt(16))
+                else -> random.nextInt(64)
+            }
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, it), map.put(key, it))
+            } else {
+                assertEquals(expected.remove(key), map.remove(key))
+            }
+            assertEquals(expected.size, map.size)
+        }
+        assertEquals(expected, HashMap(map))
+        expected.keys.forEach { assertTrue(map.containsKey(it)) }
+    }
+
+    @Test
+    fun iteratorRemoveLeavesOthersReachable() {
+        val map = ObservableHashMap<Colliding, Int>()
+        repeat(6) { map[Colliding(it)] = it }
+        val iterator = map.keys.iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next().id % 2 == 0) {
+                iterator.remove()
+            }
+        }
+        assertEquals(setOf(Colliding(1), Colliding(3), Colliding(5)), map.keys.toSet())
+        assertEquals(5, map[Colliding(5)])
+    }
+
+    @Test
+    fun emptiedMapCanBeRefilled() {
+        val map = ObservableHashMap<Colliding, Int>()
+        repeat(100) { map[Colliding(it)] = it }
+        repeat(100) { map.remove(Colliding(it)) }
+        assertTrue(map.isEmpty())
+        repeat(3) { map[Colliding(it)] = it }
+        assertEquals(3, map.size)
+        assertEquals(2, map[Colliding(2)])
+    }
+
+    @Test
+    fun bulkOperationsNotifyOnce() {
+        val map = ObservableHashMap<Any?, Any?>()
+        map.addOnMapChangedCallback(callback)
+        map.putAll(mapOf("a" to 1, "b" to 2, "c" to 3))
+        map["d"] = 4
+        map.removeAll(listOf("a", "b"))
+        map.removeAll(listOf("c"))
+        map.removeAll(listOf("missing"))
+        map.clear()
+        assertEquals(listOf(null, "d", null, "c", null), changes)
+    }
+}